@@ -0,0 +1,69 @@
+package de.probst.ba.jmh;
+
+import de.probst.ba.core.media.database.DataInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares plain and compressed chunk bitmaps with a million
+ * chunks, where a remote peer has completed half of the data
+ * and the local peer downloads the other half sequentially.
+ * <p>
+ * Run with: gradle jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DataInfoBitmapBenchmark {
+
+    private static final int CHUNK_COUNT = 1000000;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private DataInfo remote;
+    private DataInfo local;
+
+    @Setup
+    public void setup() {
+        DataInfo empty = DataInfo.generate(0,
+                                           CHUNK_COUNT * 1024L,
+                                           Optional.empty(),
+                                           Optional.empty(),
+                                           "Benchmark hash",
+                                           CHUNK_COUNT,
+                                           String::valueOf).withCompressedChunks(compressed);
+        remote = empty.withChunks(IntStream.range(0, CHUNK_COUNT / 2));
+        local = empty.withChunks(IntStream.range(CHUNK_COUNT / 4, CHUNK_COUNT * 3 / 4).filter(i -> i % 1000 != 0));
+    }
+
+    @Benchmark
+    public DataInfo union() {
+        return remote.union(local);
+    }
+
+    @Benchmark
+    public DataInfo subtract() {
+        return remote.subtract(local);
+    }
+
+    @Benchmark
+    public int subtractCompletedChunkCount() {
+        return remote.subtract(local).getCompletedChunkCount();
+    }
+
+    @Benchmark
+    public long duplicateCompletedSize() {
+        return remote.duplicate().getCompletedSize();
+    }
+}
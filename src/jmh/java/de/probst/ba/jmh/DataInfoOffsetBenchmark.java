@@ -0,0 +1,107 @@
+package de.probst.ba.jmh;
+
+import de.probst.ba.core.media.database.DataInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the indexed chunk arithmetic of data info with
+ * the linear scans which were used before.
+ * <p>
+ * Run with: gradle jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DataInfoOffsetBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int chunkCount;
+
+    private DataInfo dataInfo;
+    private int[] completedChunks;
+    private long[] completedOffsets;
+    private int position;
+
+    private static int linearTotalChunkIndex(DataInfo dataInfo, long offset) {
+        int[] completedChunks = dataInfo.getCompletedChunks().toArray();
+        int chunkIndex = completedChunks[0];
+        for (int i = 0; i < completedChunks.length; i++, chunkIndex = completedChunks[i]) {
+            if ((offset -= dataInfo.getChunkSize(chunkIndex)) < 0) {
+                break;
+            }
+        }
+        return chunkIndex;
+    }
+
+    private static long linearRelativeOffset(DataInfo dataInfo, int totalChunkIndex) {
+        return dataInfo.getCompletedChunks()
+                       .filter(chunkIndex -> chunkIndex < totalChunkIndex)
+                       .mapToLong(dataInfo::getChunkSize)
+                       .sum();
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        DataInfo empty = DataInfo.generate(0,
+                                           chunkCount * 8192L,
+                                           Optional.empty(),
+                                           Optional.empty(),
+                                           "Benchmark hash",
+                                           chunkCount,
+                                           String::valueOf);
+        dataInfo = empty.withChunks(random.ints(chunkCount / 2, 0, chunkCount)).withChunk(chunkCount - 1);
+        completedChunks = dataInfo.getCompletedChunks().toArray();
+        completedOffsets = new long[completedChunks.length];
+        for (int i = 0; i < completedChunks.length; i++) {
+            completedOffsets[i] = dataInfo.getRelativeOffset(completedChunks[i]);
+        }
+    }
+
+    private int next() {
+        if (++position >= completedChunks.length) {
+            position = 0;
+        }
+        return position;
+    }
+
+    @Benchmark
+    public int indexedTotalChunkIndex() {
+        return dataInfo.getTotalChunkIndex(completedOffsets[next()], false);
+    }
+
+    @Benchmark
+    public int linearTotalChunkIndex() {
+        return linearTotalChunkIndex(dataInfo, completedOffsets[next()]);
+    }
+
+    @Benchmark
+    public long indexedRelativeOffset() {
+        return dataInfo.getRelativeOffset(completedChunks[next()]);
+    }
+
+    @Benchmark
+    public long linearRelativeOffset() {
+        return linearRelativeOffset(dataInfo, completedChunks[next()]);
+    }
+
+    @Benchmark
+    public long indexedWrite() {
+        // The calculations of a database channel per buffer
+        int i = next();
+        long position = completedOffsets[i];
+        int chunkIndex = dataInfo.getTotalChunkIndex(position, false);
+        return dataInfo.getTotalOffset(chunkIndex) + position - dataInfo.getRelativeOffset(chunkIndex);
+    }
+}
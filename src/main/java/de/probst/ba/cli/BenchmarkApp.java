@@ -15,7 +15,6 @@ import de.probst.ba.cli.args.SuperSeederBandwidthArgs;
 import de.probst.ba.core.distribution.algorithms.Algorithms;
 import de.probst.ba.core.media.database.DataBase;
 import de.probst.ba.core.media.database.DataInfo;
-import de.probst.ba.core.media.database.databases.DataBases;
 import de.probst.ba.core.net.peer.Leecher;
 import de.probst.ba.core.net.peer.Peer;
 import de.probst.ba.core.net.peer.PeerId;
@@ -122,8 +121,8 @@ public class BenchmarkApp extends ArgsApp {
         // Init the count down latch
         completionCountDownLatch = dataInfoCompletionHandler.getCountDownLatch();
 
-        // The benchmark always uses the fake data base
-        Supplier<DataBase> dataBaseSupplier = DataBases::fakeDataBase;
+        // The benchmark uses the fake data base, unless the peers share real data in memory
+        Supplier<DataBase> dataBaseSupplier = dataInfoGeneratorArgs.getDataBaseSupplier();
 
         // Setup all seeders
         logger.info(">>> [ Setup SuperSeeders ]");
@@ -38,6 +38,7 @@ public final class HttpStreamServerApp {
                                                                       Optional.of("black.mp4"),
                                                                       Optional.empty(),
                                                                       1,
+                                                                      DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
                                                                       fileChannel);
 
             fileChannel.position(0);
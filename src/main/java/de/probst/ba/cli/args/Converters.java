@@ -3,6 +3,9 @@ package de.probst.ba.cli.args;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.converters.BaseConverter;
 import de.probst.ba.core.distribution.algorithms.Algorithms;
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
+import de.probst.ba.core.media.database.databases.file.FileDataBaseDurability;
+import de.probst.ba.core.media.database.databases.file.FileDataBasePreallocation;
 import de.probst.ba.core.net.peer.peers.Peers;
 
 import java.net.InetAddress;
@@ -49,6 +52,55 @@ public final class Converters {
         }
     }
 
+    public static class ChunkHashAlgorithmConverter extends BaseConverter<ChunkHashAlgorithm> {
+
+        public ChunkHashAlgorithmConverter(String optionName) {
+            super(optionName);
+        }
+
+        @Override
+        public ChunkHashAlgorithm convert(String value) {
+            try {
+                return ChunkHashAlgorithm.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(getErrorString(value, Arrays.toString(ChunkHashAlgorithm.values())));
+            }
+        }
+    }
+
+    public static class DurabilityConverter extends BaseConverter<FileDataBaseDurability> {
+
+        public DurabilityConverter(String optionName) {
+            super(optionName);
+        }
+
+        @Override
+        public FileDataBaseDurability convert(String value) {
+            try {
+                return FileDataBaseDurability.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(getErrorString(value, Arrays.toString(FileDataBaseDurability.values())));
+            }
+        }
+    }
+
+    public static class PreallocationConverter extends BaseConverter<FileDataBasePreallocation> {
+
+        public PreallocationConverter(String optionName) {
+            super(optionName);
+        }
+
+        @Override
+        public FileDataBasePreallocation convert(String value) {
+            try {
+                return FileDataBasePreallocation.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(getErrorString(value,
+                                                            Arrays.toString(FileDataBasePreallocation.values())));
+            }
+        }
+    }
+
     public static class HostNameConverter extends BaseConverter<InetAddress> {
 
         public HostNameConverter(String optionName) {
@@ -2,7 +2,10 @@ package de.probst.ba.cli.args;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
+import de.probst.ba.core.media.database.DataBase;
 import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.media.database.databases.memory.SharedMemoryStore;
 import de.probst.ba.core.net.peer.Peer;
 import de.probst.ba.core.util.collections.Tuple;
 import de.probst.ba.core.util.collections.Tuple2;
@@ -13,9 +16,12 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -46,6 +52,11 @@ public final class DataInfoGeneratorArgs implements Args {
                required = true)
     public Long size;
 
+    @Parameter(names = {"-sm", "--shared-memory"},
+               description = "Generate random data with verifiable chunk hashes " +
+                             "and store it in memory shared by all peers")
+    public Boolean sharedMemory = false;
+
     public long partitionSize;
 
     public long chunkSize;
@@ -60,9 +71,63 @@ public final class DataInfoGeneratorArgs implements Args {
                                  String::valueOf).full();
     }
 
-    public List<Tuple2<DataInfo, Supplier<ReadableByteChannel>>> generateDataInfo() {
+    /**
+     * @param partition
+     * @param partitionSize
+     * @return A channel of the data, which the same partition always gets.
+     */
+    private static ReadableByteChannel generateSharedMemoryData(int partition, long partitionSize) {
+        byte[] data = new byte[(int) partitionSize];
+        new Random(partition).nextBytes(data);
+        return Channels.newChannel(new ByteArrayInputStream(data));
+    }
+
+    private Tuple2<DataInfo, Supplier<ReadableByteChannel>> generateSharedMemoryDataInfo(int partition,
+                                                                                       long partitionSize)
+            throws IOException {
+        try {
+            DataInfo dataInfo = DataInfo.fromChannel(partition,
+                                                     partitionSize,
+                                                     Optional.of("Generated data info"),
+                                                     Optional.empty(),
+                                                     chunkCount,
+                                                     DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                     generateSharedMemoryData(partition, partitionSize));
+
+            // The data is generated again on demand, so it is
+            // not kept alive for every partition meanwhile
+            return Tuple.of(dataInfo, () -> generateSharedMemoryData(partition, partitionSize));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return A supplier of data bases for the peers, which fits the generated data info.
+     */
+    public Supplier<DataBase> getDataBaseSupplier() {
+        if (sharedMemory) {
+            SharedMemoryStore sharedMemoryStore = new SharedMemoryStore();
+            return () -> DataBases.sharedMemoryDataBase(sharedMemoryStore);
+        } else {
+            return DataBases::fakeDataBase;
+        }
+    }
+
+    public List<Tuple2<DataInfo, Supplier<ReadableByteChannel>>> generateDataInfo() throws IOException {
         long lastPartitionSize = size - partitionSize * (partitions - 1);
 
+        if (sharedMemory) {
+            List<Tuple2<DataInfo, Supplier<ReadableByteChannel>>> dataInfo = new ArrayList<>(partitions);
+            for (int partition = 0; partition < partitions; partition++) {
+                dataInfo.add(generateSharedMemoryDataInfo(partition,
+                                                          partition < partitions - 1 ?
+                                                          partitionSize :
+                                                          lastPartitionSize));
+            }
+            return dataInfo;
+        }
+
         Function<DataInfo, Supplier<ReadableByteChannel>> channelGenerator =
                 dataInfo -> () -> Channels.newChannel(new ByteArrayInputStream(new byte[(int) dataInfo.getSize()]));
 
@@ -104,12 +169,20 @@ public final class DataInfoGeneratorArgs implements Args {
         }
         chunkSize = partitionSize / chunkCount;
 
+        long lastPartitionSize = size - partitionSize * (partitions - 1);
+        if (sharedMemory && lastPartitionSize > Integer.MAX_VALUE) {
+            System.out.println("Invalid: partitionSize (" + lastPartitionSize + ") > " + Integer.MAX_VALUE +
+                               " with shared memory");
+            return false;
+        }
+
         logger.info(">>> [ DataInfo Generator Config ]");
         logger.info(">>> Size:              " + size);
         logger.info(">>> Partitions:        " + partitions);
         logger.info(">>> Partition size:    " + partitionSize);
         logger.info(">>> Chunk count:       " + chunkCount);
         logger.info(">>> Chunk size:        " + chunkSize);
+        logger.info(">>> Shared memory:     " + sharedMemory);
 
         return true;
     }
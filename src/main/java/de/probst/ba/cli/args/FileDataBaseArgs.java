@@ -5,11 +5,17 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.converters.FileConverter;
 import de.probst.ba.core.media.database.DataBase;
 import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.media.database.databases.file.FileDataBaseDurability;
+import de.probst.ba.core.media.database.databases.file.FileDataBasePreallocation;
+import de.probst.ba.core.util.io.IOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by chrisprobst on 11.10.14.
@@ -23,8 +29,64 @@ public final class FileDataBaseArgs implements Args {
                converter = FileConverter.class)
     public File dataBaseDirectory = new File("./db");
 
+    @Parameter(names = {"-sd", "--shard-directory"},
+               description = "An additional directory to store database records, the hashes are spread over " +
+                             "all directories (Can be repeated)",
+               converter = FileConverter.class)
+    public List<File> shardDirectories = new ArrayList<>();
+
+    @Parameter(names = {"-mm", "--memory-mapped"},
+               description = "Map the database files into memory instead of reading and writing them")
+    public Boolean memoryMapped = false;
+
+    @Parameter(names = {"-ca", "--content-addressed"},
+               description = "Store the chunks by chunk hash, so data info with identical chunks share them " +
+                             "(Ignores memory mapped and preallocation)")
+    public Boolean contentAddressed = false;
+
+    @Parameter(names = {"-du", "--durability"},
+               description = "When written chunks are forced to disk, per chunk, in periodic groups or by the OS",
+               converter = Converters.DurabilityConverter.class)
+    public FileDataBaseDurability durability = FileDataBaseDurability.CHUNK;
+
+    @Parameter(names = {"-pa", "--preallocation"},
+               description = "How the files of new hashes are reserved, not at all, sparse or filled with zeros " +
+                             "(Ignored if memory mapped)",
+               converter = Converters.PreallocationConverter.class)
+    public FileDataBasePreallocation preallocation = FileDataBasePreallocation.NONE;
+
+    @Parameter(names = {"-cs", "--cache-size"},
+               description = "The size of the memory cache for recently read chunks in bytes, 0 disables the cache (" +
+                             Validators.CacheSizeValidator.MSG + ")",
+               validateValueWith = Validators.CacheSizeValidator.class)
+    public Long cacheSize = 0L;
+
+    private DataBase getDataBase(Path directory) throws IOException {
+        if (contentAddressed) {
+            return DataBases.chunkStoreDataBase(false, directory, durability);
+        }
+        return memoryMapped ?
+               DataBases.mappedFileDataBase(false, directory, durability) :
+               DataBases.fileDataBase(false, directory, durability, preallocation);
+    }
+
     public DataBase getDataBase() throws IOException {
-        return DataBases.fileDataBase(dataBaseDirectory.toPath());
+        DataBase dataBase;
+        if (shardDirectories.isEmpty()) {
+            dataBase = getDataBase(dataBaseDirectory.toPath());
+        } else {
+            List<DataBase> shards = new ArrayList<>();
+            try {
+                shards.add(getDataBase(dataBaseDirectory.toPath()));
+                for (File shardDirectory : shardDirectories) {
+                    shards.add(getDataBase(shardDirectory.toPath()));
+                }
+            } catch (IOException e) {
+                throw IOUtil.closeAllAndGetException(shards, e);
+            }
+            dataBase = DataBases.shardedDataBase(shards);
+        }
+        return cacheSize > 0 ? DataBases.cachedDataBase(dataBase, cacheSize) : dataBase;
     }
 
     @Override
@@ -40,8 +102,30 @@ public final class FileDataBaseArgs implements Args {
             return false;
         }
 
+        List<File> absoluteShardDirectories = new ArrayList<>();
+        for (File shardDirectory : shardDirectories) {
+            shardDirectory = shardDirectory.toPath().toAbsolutePath().normalize().toFile();
+            if (!shardDirectory.mkdirs() && !shardDirectory.exists()) {
+                System.out.println("The shard directory " + shardDirectory + " could not be created");
+                return false;
+            }
+
+            if (!shardDirectory.isDirectory()) {
+                System.out.println("The shard directory " + shardDirectory + " is not a directory");
+                return false;
+            }
+            absoluteShardDirectories.add(shardDirectory);
+        }
+        shardDirectories = absoluteShardDirectories;
+
         logger.info(">>> [ File DataBase Config ]");
         logger.info(">>> DataBase directory:    " + dataBaseDirectory);
+        logger.info(">>> Shard directories:     " + shardDirectories);
+        logger.info(">>> Memory mapped:         " + memoryMapped);
+        logger.info(">>> Content addressed:     " + contentAddressed);
+        logger.info(">>> Durability:            " + durability);
+        logger.info(">>> Preallocation:         " + preallocation);
+        logger.info(">>> Cache size:            " + cacheSize);
 
         return true;
     }
@@ -3,6 +3,7 @@ package de.probst.ba.cli.args;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.converters.FileConverter;
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
 import de.probst.ba.core.media.database.DataInfo;
 import de.probst.ba.core.net.httpserver.httpservers.netty.NettyHttpServerHandler;
 import org.slf4j.Logger;
@@ -17,6 +18,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Created by chrisprobst on 11.10.14.
@@ -35,6 +37,19 @@ public final class FileDataInfoGeneratorArgs implements Args {
                validateValueWith = Validators.ChunkCountValidator.class)
     public Integer chunkCount = 1;
 
+    @Parameter(names = {"-cha", "--chunk-hash-algorithm"},
+               description = "The algorithm of the chunk hashes, checksums are faster but only safe in trusted networks",
+               converter = Converters.ChunkHashAlgorithmConverter.class)
+    public ChunkHashAlgorithm chunkHashAlgorithm = DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM;
+
+    @Parameter(names = {"-mh", "--merkle-hash"},
+               description = "Use the merkle root of the chunk hashes as hash and announce without chunk hashes")
+    public Boolean merkleHash = false;
+
+    @Parameter(names = {"-cch", "--compressed-chunks"},
+               description = "Store the completed chunks compressed, recommended for high chunk counts")
+    public Boolean compressedChunks = false;
+
     @Parameter(names = {"-df", "--data-file"},
                description = "The data file to generate the data info from",
                converter = FileConverter.class,
@@ -59,12 +74,17 @@ public final class FileDataInfoGeneratorArgs implements Args {
             descriptionObject.put(NettyHttpServerHandler.TOTAL_SIZE_KEY, fileChannel.size());
             descriptionObject.put(NettyHttpServerHandler.PARTITIONS_KEY, partitions);
 
-            return DataInfo.fromPartitionedChannel(partitions,
-                                                   size,
-                                                   Optional.of(dataFile.getName()),
-                                                   Optional.of(descriptionObject),
-                                                   chunkCount,
-                                                   fileChannel);
+            List<DataInfo> dataInfo = DataInfo.fromPartitionedFileChannel(partitions,
+                                                                          size,
+                                                                          Optional.of(dataFile.getName()),
+                                                                          Optional.of(descriptionObject),
+                                                                          chunkCount,
+                                                                          chunkHashAlgorithm,
+                                                                          fileChannel);
+            return dataInfo.stream()
+                           .map(d -> merkleHash ? d.withMerkleHash() : d)
+                           .map(d -> d.withCompressedChunks(compressedChunks))
+                           .collect(Collectors.toList());
         }
     }
 
@@ -81,6 +101,11 @@ public final class FileDataInfoGeneratorArgs implements Args {
             return false;
         }
 
+        if (!chunkHashAlgorithm.isSupported()) {
+            System.out.println("The chunk hash algorithm (" + chunkHashAlgorithm + ") is not supported by this JVM");
+            return false;
+        }
+
         size = dataFile.length();
         if (partitions > size) {
             System.out.println("Invalid: partitions (" + partitions + ") > size (" + size + ")");
@@ -101,6 +126,9 @@ public final class FileDataInfoGeneratorArgs implements Args {
         logger.info(">>> Partition size:    " + partitionSize);
         logger.info(">>> Chunk count:       " + chunkCount);
         logger.info(">>> Chunk size:        " + chunkSize);
+        logger.info(">>> Chunk hash:        " + chunkHashAlgorithm);
+        logger.info(">>> Merkle hash:       " + merkleHash);
+        logger.info(">>> Compressed chunks: " + compressedChunks);
 
         return true;
     }
@@ -122,4 +122,18 @@ public final class Validators {
             }
         }
     }
+
+    public static class CacheSizeValidator implements IValueValidator<Long> {
+
+        public static final long MIN = 0;
+        public static final long MAX = Long.MAX_VALUE;
+        public static final String MSG = "Must be between " + MIN + " and " + MAX;
+
+        @Override
+        public void validate(String name, Long value) throws ParameterException {
+            if (value < MIN || value > MAX) {
+                throw new ParameterException("Parameter " + name + ": " + MSG + " (found: " + value + ")");
+            }
+        }
+    }
 }
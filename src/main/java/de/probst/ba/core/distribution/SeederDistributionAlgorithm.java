@@ -16,6 +16,20 @@ public interface SeederDistributionAlgorithm extends DistributionAlgorithm {
         return false;
     }
 
+    /**
+     * Returns whether or not the transformed upload data info only
+     * depends on the given data info. In this case the framework
+     * skips the transformation, as long as the data base version
+     * did not change.
+     * <p>
+     * This method is thread-safe.
+     *
+     * @return
+     */
+    default boolean isUploadDataInfoStable() {
+        return false;
+    }
+
     /**
      * This method is called by the framework internally at
      * undefined intervals and can be triggered by network metrics,
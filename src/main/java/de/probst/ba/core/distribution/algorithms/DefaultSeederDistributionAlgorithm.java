@@ -13,6 +13,11 @@ import java.util.Map;
  */
 public final class DefaultSeederDistributionAlgorithm implements SeederDistributionAlgorithm {
 
+    @Override
+    public boolean isUploadDataInfoStable() {
+        return true;
+    }
+
     @Override
     public Map<String, DataInfo> transformUploadDataInfo(Seeder seeder,
                                                          Map<String, DataInfo> dataInfo,
@@ -0,0 +1,257 @@
+package de.probst.ba.core.media.database;
+
+import de.probst.ba.core.util.FunctionThatThrows;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking operations on data base channels on a
+ * dedicated executor, so slow disks do not block the
+ * calling thread, e.g. a netty event loop. Opening the
+ * channels runs on the executor as well, because it takes
+ * the monitor of the data base and might open files.
+ * <p>
+ * Operations on the same channel are not ordered, so the
+ * caller has to wait for the previous operation to complete
+ * before submitting the next one.
+ * <p>
+ * If the executor is bounded and busy, operations are deferred
+ * and handed to the executor as soon as a running operation
+ * completes. Operations never run on the calling thread, so the
+ * callers have to limit their pending operations themselves,
+ * e.g. by suspending reads until their operations completed.
+ */
+public final class AsyncDataBaseIO {
+
+    public static final int DEFAULT_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static AsyncDataBaseIO defaultAsyncDataBaseIO;
+
+    /**
+     * @return The shared instance, which uses daemon threads.
+     */
+    public static synchronized AsyncDataBaseIO getDefault() {
+        if (defaultAsyncDataBaseIO == null) {
+            defaultAsyncDataBaseIO = new AsyncDataBaseIO(DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_CAPACITY);
+        }
+        return defaultAsyncDataBaseIO;
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "database-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final Executor executor;
+
+    // The maximal number of operations, which
+    // are handed to the executor at once
+    private final int capacity;
+
+    // The operations, which wait for the executor
+    private final Queue<Runnable> deferredOperations = new ArrayDeque<>();
+
+    // The number of operations handed to the executor
+    // (Guarded by deferredOperations)
+    private int executedCount;
+
+    private void execute(Runnable operation) {
+        synchronized (deferredOperations) {
+            if (executedCount >= capacity) {
+                deferredOperations.add(operation);
+                return;
+            }
+            executedCount++;
+        }
+
+        try {
+            // Run the deferred operations with the same task,
+            // so a bounded executor never exceeds its capacity
+            executor.execute(() -> {
+                for (Runnable next = operation; next != null; next = nextDeferredOperation()) {
+                    next.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (deferredOperations) {
+                executedCount--;
+            }
+            throw e;
+        }
+    }
+
+    private Runnable nextDeferredOperation() {
+        synchronized (deferredOperations) {
+            Runnable deferredOperation = deferredOperations.poll();
+            if (deferredOperation == null) {
+                executedCount--;
+            }
+            return deferredOperation;
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                // Errors must not escape, otherwise the
+                // executed operation would never be released
+                try {
+                    future.complete(operation.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private AsyncDataBaseIO(Executor executor, int capacity) {
+        Objects.requireNonNull(executor);
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates an instance, which hands every
+     * operation to the given executor at once.
+     *
+     * @param executor
+     */
+    public AsyncDataBaseIO(Executor executor) {
+        this(executor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a bounded executor. If all threads are busy and
+     * the queue is full, the operations are deferred until
+     * the executor catches up.
+     *
+     * @param threadCount
+     * @param queueCapacity
+     */
+    public AsyncDataBaseIO(int threadCount, int queueCapacity) {
+        // The queue can hold all operations, even if the threads
+        // did not return to the executor yet, so it never rejects
+        this(new ThreadPoolExecutor(threadCount,
+                                    threadCount,
+                                    0,
+                                    TimeUnit.MILLISECONDS,
+                                    new ArrayBlockingQueue<>(threadCount + queueCapacity),
+                                    daemonThreadFactory()),
+             threadCount + queueCapacity);
+    }
+
+    /**
+     * @return The number of operations, which
+     * wait for the executor to catch up.
+     */
+    public int getDeferredOperationCount() {
+        synchronized (deferredOperations) {
+            return deferredOperations.size();
+        }
+    }
+
+    /**
+     * Runs the operation with the given channel on the executor.
+     *
+     * @param channel
+     * @param operation
+     * @param <C>
+     * @param <T>
+     * @return A future, which completes with the result
+     * of the operation.
+     */
+    public <C extends Channel, T> CompletableFuture<T> submit(C channel,
+                                                              FunctionThatThrows<C, T, IOException> operation) {
+        Objects.requireNonNull(channel);
+        Objects.requireNonNull(operation);
+        return submit(() -> operation.apply(channel));
+    }
+
+    /**
+     * Runs the operation with the given data base on the executor,
+     * e.g. to combine a lookup with other synchronized queries.
+     *
+     * @param dataBase
+     * @param operation
+     * @param <T>
+     * @return A future, which completes with the result
+     * of the operation.
+     */
+    public <T> CompletableFuture<T> submit(DataBase dataBase,
+                                           FunctionThatThrows<DataBase, T, IOException> operation) {
+        Objects.requireNonNull(dataBase);
+        Objects.requireNonNull(operation);
+        return submit(() -> operation.apply(dataBase));
+    }
+
+    /**
+     * Opens a read channel of the data base on the executor.
+     *
+     * @param dataBase
+     * @param lookupDataInfo
+     * @return A future, which completes with the result
+     * of {@link DataBase#lookup(DataInfo)}.
+     */
+    public CompletableFuture<Optional<DataBaseReadChannel>> lookup(DataBase dataBase, DataInfo lookupDataInfo) {
+        Objects.requireNonNull(dataBase);
+        Objects.requireNonNull(lookupDataInfo);
+        return submit(() -> dataBase.lookup(lookupDataInfo));
+    }
+
+    /**
+     * Opens a write channel of the data base on the executor.
+     *
+     * @param dataBase
+     * @param insertDataInfo
+     * @return A future, which completes with the result
+     * of {@link DataBase#insert(DataInfo)}.
+     */
+    public CompletableFuture<Optional<DataBaseWriteChannel>> insert(DataBase dataBase, DataInfo insertDataInfo) {
+        Objects.requireNonNull(dataBase);
+        Objects.requireNonNull(insertDataInfo);
+        return submit(() -> dataBase.insert(insertDataInfo));
+    }
+
+    /**
+     * Closes the channel on the executor, which
+     * might force the written data to disk.
+     *
+     * @param channel
+     * @return A future, which completes when
+     * the channel is closed.
+     */
+    public CompletableFuture<Void> close(Channel channel) {
+        return submit(channel, c -> {
+            c.close();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,155 @@
+package de.probst.ba.core.media.database;
+
+import java.io.Serializable;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The completed chunks of a data info.
+ * <p>
+ * Bitmaps cache their cardinality, so counting completed chunks
+ * does not scan the bitmap. The set operations are fastest for
+ * bitmaps of the same kind, other bitmaps are converted first.
+ * Bitmaps of different kinds are equal if they have the same chunks.
+ */
+abstract class ChunkBitmap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static ChunkBitmap create(int chunkCount, boolean compressed) {
+        return compressed ? new CompressedChunkBitmap(chunkCount) : new PlainChunkBitmap(chunkCount);
+    }
+
+    static ChunkBitmap fromLongArray(int chunkCount, long[] words, boolean compressed) {
+        return compressed ?
+               new CompressedChunkBitmap(chunkCount, words) :
+               new PlainChunkBitmap(chunkCount, words);
+    }
+
+    /**
+     * Hashes a single non-zero word, so all kinds of
+     * bitmaps calculate the same hash code.
+     *
+     * @param wordIndex
+     * @param word
+     * @return
+     */
+    static int hashWord(int wordIndex, long word) {
+        long mixed = (word ^ wordIndex * 0x9e3779b97f4a7c15L) * 0xbf58476d1ce4e5b9L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    // The number of chunks
+    private final int chunkCount;
+
+    ChunkBitmap(int chunkCount) {
+        if (chunkCount < 0) {
+            throw new IllegalArgumentException("chunkCount < 0");
+        }
+        this.chunkCount = chunkCount;
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @param compressed
+     * @return A copy of the given kind.
+     */
+    ChunkBitmap convert(boolean compressed) {
+        return compressed == isCompressed() ? copy() : fromLongArray(chunkCount, toLongArray(), compressed);
+    }
+
+    /**
+     * @return An empty bitmap of the same kind.
+     */
+    ChunkBitmap emptyCopy() {
+        return create(chunkCount, isCompressed());
+    }
+
+    /**
+     * Sets all given chunks to completed.
+     *
+     * @param indices
+     */
+    void setAll(IntStream indices) {
+        indices.forEach(index -> set(index, true));
+    }
+
+    boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    abstract boolean isCompressed();
+
+    abstract ChunkBitmap copy();
+
+    abstract long[] toLongArray();
+
+    abstract boolean get(int index);
+
+    abstract void set(int index, boolean value);
+
+    /**
+     * Sets all chunks in the range to completed.
+     *
+     * @param fromIndex
+     * @param toIndex
+     */
+    abstract void set(int fromIndex, int toIndex);
+
+    /**
+     * Flips all chunks.
+     */
+    abstract void flip();
+
+    abstract void or(ChunkBitmap other);
+
+    abstract void and(ChunkBitmap other);
+
+    abstract void andNot(ChunkBitmap other);
+
+    abstract int cardinality();
+
+    abstract IntStream stream();
+
+    /**
+     * @param index
+     * @return The number of completed chunks in front of the given index.
+     */
+    abstract int rank(int index);
+
+    /**
+     * @param rank
+     * @return The index of the completed chunk with the given rank.
+     */
+    abstract int select(int rank);
+
+    /**
+     * @param other A bitmap of the same kind.
+     * @return True if both bitmaps have the same chunks, otherwise false.
+     */
+    abstract boolean hasSameChunks(ChunkBitmap other);
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChunkBitmap)) return false;
+
+        ChunkBitmap that = (ChunkBitmap) o;
+
+        if (chunkCount != that.chunkCount) return false;
+        if (cardinality() != that.cardinality()) return false;
+
+        return hasSameChunks(that.isCompressed() == isCompressed() ? that : that.convert(isCompressed()));
+    }
+
+    @Override
+    public abstract int hashCode();
+
+    @Override
+    public String toString() {
+        return stream().mapToObj(String::valueOf).collect(Collectors.joining(", ", "{", "}"));
+    }
+}
@@ -0,0 +1,190 @@
+package de.probst.ba.core.media.database;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Checksum;
+
+/**
+ * The algorithms which can be used to hash chunks.
+ * <p>
+ * Checksums are much faster than digests, but only protect
+ * against transmission errors, so they should only be used
+ * in trusted networks.
+ * <p>
+ * Created hashers are reusable, every call to digest resets
+ * the hasher. Each thread has its own hasher per algorithm.
+ */
+public enum ChunkHashAlgorithm {
+
+    /**
+     * A SHA1 digest, 20 bytes.
+     */
+    SHA1 {
+        @Override
+        public Hasher newHasher() {
+            try {
+                return new DigestHasher(MessageDigest.getInstance("SHA1"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    },
+
+    /**
+     * A CRC32 checksum, 4 bytes.
+     */
+    CRC32 {
+        @Override
+        public Hasher newHasher() {
+            return new ChecksumHasher(new java.util.zip.CRC32());
+        }
+    },
+
+    /**
+     * A CRC32C checksum, 4 bytes, only
+     * available on Java 9 or newer.
+     */
+    CRC32C {
+        @Override
+        public Hasher newHasher() {
+            try {
+                return new ChecksumHasher((Checksum) Class.forName("java.util.zip.CRC32C")
+                                                           .getDeclaredConstructor()
+                                                           .newInstance());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("CRC32C is not supported by this JVM", e);
+            }
+        }
+    };
+
+    /**
+     * Hashes the bytes of a single chunk.
+     */
+    public interface Hasher {
+
+        /**
+         * @return The length of the hash in bytes.
+         */
+        int getLength();
+
+        /**
+         * Consumes all remaining bytes of the buffer.
+         *
+         * @param byteBuffer
+         */
+        void update(ByteBuffer byteBuffer);
+
+        /**
+         * Completes the hash and resets the hasher.
+         *
+         * @return The hash.
+         */
+        byte[] digest();
+    }
+
+    private static final class DigestHasher implements Hasher {
+
+        private final MessageDigest messageDigest;
+
+        private DigestHasher(MessageDigest messageDigest) {
+            this.messageDigest = messageDigest;
+        }
+
+        @Override
+        public int getLength() {
+            return messageDigest.getDigestLength();
+        }
+
+        @Override
+        public void update(ByteBuffer byteBuffer) {
+            messageDigest.update(byteBuffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return messageDigest.digest();
+        }
+    }
+
+    private static final class ChecksumHasher implements Hasher {
+
+        private final Checksum checksum;
+        private byte[] buffer;
+
+        private ChecksumHasher(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public int getLength() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void update(ByteBuffer byteBuffer) {
+            if (byteBuffer.hasArray()) {
+                checksum.update(byteBuffer.array(),
+                                byteBuffer.arrayOffset() + byteBuffer.position(),
+                                byteBuffer.remaining());
+                byteBuffer.position(byteBuffer.limit());
+            } else {
+                // Direct buffers are copied in pieces
+                if (buffer == null) {
+                    buffer = new byte[DataInfo.DEFAULT_HASH_BUFFER_SIZE];
+                }
+                while (byteBuffer.hasRemaining()) {
+                    int length = Math.min(buffer.length, byteBuffer.remaining());
+                    byteBuffer.get(buffer, 0, length);
+                    checksum.update(buffer, 0, length);
+                }
+            }
+        }
+
+        @Override
+        public byte[] digest() {
+            int value = (int) checksum.getValue();
+            checksum.reset();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+
+    // The hasher of each thread
+    private final ThreadLocal<Hasher> threadHashers = ThreadLocal.withInitial(this::newHasher);
+
+    /**
+     * @return A new hasher.
+     */
+    public abstract Hasher newHasher();
+
+    /**
+     * Returns the hasher of the current thread, which avoids
+     * creating a hasher per chunk. A chunk must be hashed
+     * completely before the thread hashes anything else.
+     *
+     * @return The hasher of the current thread.
+     */
+    public Hasher getThreadHasher() {
+        return threadHashers.get();
+    }
+
+    /**
+     * @return The length of a hash in bytes.
+     */
+    public int getLength() {
+        return getThreadHasher().getLength();
+    }
+
+    /**
+     * @return True if this algorithm is supported by this JVM,
+     * otherwise false.
+     */
+    public boolean isSupported() {
+        try {
+            getThreadHasher();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package de.probst.ba.core.media.database;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.Objects;
+
+/**
+ * The hash of a single chunk together with the sibling
+ * hashes which prove that it belongs to a merkle hash.
+ * <p>
+ * Proofs are created by data info which know their chunk
+ * hashes and verified by data info which only know the root.
+ */
+public final class ChunkHashProof implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static byte[] readBytes(DataInput dataInput) throws IOException {
+        int length = dataInput.readUnsignedShort();
+        byte[] bytes = new byte[length];
+        dataInput.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutput dataOutput, byte[] bytes) throws IOException {
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("bytes.length > 0xFFFF");
+        }
+        dataOutput.writeShort(bytes.length);
+        dataOutput.write(bytes);
+    }
+
+    /**
+     * Reads a proof, which was written with write.
+     *
+     * @param dataInput
+     * @return
+     * @throws IOException
+     */
+    public static ChunkHashProof read(DataInput dataInput) throws IOException {
+        Objects.requireNonNull(dataInput);
+        int chunkIndex = dataInput.readInt();
+        byte[] chunkHash = readBytes(dataInput);
+        byte[][] siblings = new byte[dataInput.readUnsignedByte()][];
+        for (int i = 0; i < siblings.length; i++) {
+            siblings[i] = readBytes(dataInput);
+        }
+        return new ChunkHashProof(chunkIndex, chunkHash, siblings);
+    }
+
+    // The index of the proven chunk
+    private final int chunkIndex;
+
+    // The chunk hash
+    private final byte[] chunkHash;
+
+    // The sibling hashes from the chunk up to the root
+    private final byte[][] siblings;
+
+    ChunkHashProof(int chunkIndex, byte[] chunkHash, byte[][] siblings) {
+        Objects.requireNonNull(chunkHash);
+        Objects.requireNonNull(siblings);
+        this.chunkIndex = chunkIndex;
+        this.chunkHash = chunkHash;
+        this.siblings = siblings;
+    }
+
+    byte[] getChunkHashBytes() {
+        return chunkHash;
+    }
+
+    byte[][] getSiblings() {
+        return siblings;
+    }
+
+    /**
+     * Writes this proof in a compact binary form.
+     *
+     * @param dataOutput
+     * @throws IOException
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        Objects.requireNonNull(dataOutput);
+        if (siblings.length > 0xFF) {
+            throw new IOException("siblings.length > 0xFF");
+        }
+
+        dataOutput.writeInt(chunkIndex);
+        writeBytes(dataOutput, chunkHash);
+        dataOutput.writeByte(siblings.length);
+        for (byte[] sibling : siblings) {
+            writeBytes(dataOutput, sibling);
+        }
+    }
+
+    /**
+     * @return The chunk index.
+     */
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    /**
+     * @return The chunk hash.
+     */
+    public String getChunkHash() {
+        return DataInfoDescriptor.hexify(chunkHash, 0, chunkHash.length);
+    }
+
+    /**
+     * @param chunkHash
+     * @return True if the given hash is the proven
+     * chunk hash, otherwise false.
+     */
+    public boolean hasChunkHash(byte[] chunkHash) {
+        Objects.requireNonNull(chunkHash);
+        return MessageDigest.isEqual(this.chunkHash, chunkHash);
+    }
+
+    /**
+     * @return The number of sibling hashes.
+     */
+    public int getDepth() {
+        return siblings.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkHashProof{" +
+               "chunkIndex=" + chunkIndex +
+               ", chunkHash='" + getChunkHash() + '\'' +
+               ", depth=" + getDepth() +
+               '}';
+    }
+}
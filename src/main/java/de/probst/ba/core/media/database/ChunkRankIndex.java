@@ -0,0 +1,88 @@
+package de.probst.ba.core.media.database;
+
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * A rank/select index over a chunk bitmap.
+ * <p>
+ * The index stores the number of completed chunks in front
+ * of every 64 bit word, so rank queries are answered in O(1)
+ * and select queries with a binary search in O(log n).
+ */
+final class ChunkRankIndex {
+
+    // The bitmap words
+    private final long[] words;
+
+    // The number of set bits in front of each word
+    private final int[] ranks;
+
+    // The total number of set bits
+    private final int cardinality;
+
+    ChunkRankIndex(BitSet chunks) {
+        Objects.requireNonNull(chunks);
+        words = chunks.toLongArray();
+        ranks = new int[words.length];
+
+        int accumulator = 0;
+        for (int i = 0; i < words.length; i++) {
+            ranks[i] = accumulator;
+            accumulator += Long.bitCount(words[i]);
+        }
+        cardinality = accumulator;
+    }
+
+    /**
+     * @return The number of set bits.
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @param index
+     * @return The number of set bits in front of the given index.
+     */
+    int rank(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index < 0");
+        }
+
+        int word = index >>> 6;
+        if (word >= words.length) {
+            return cardinality;
+        }
+        return ranks[word] + Long.bitCount(words[word] & ((1L << index) - 1));
+    }
+
+    /**
+     * @param rank
+     * @return The index of the set bit with the given rank.
+     */
+    int select(int rank) {
+        if (rank < 0 || rank >= cardinality) {
+            throw new IndexOutOfBoundsException("rank < 0 || rank >= cardinality");
+        }
+
+        // Find the last word which starts at or before the rank
+        int low = 0, high = ranks.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (ranks[middle] <= rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int word = low;
+
+        // Drop the lower bits of the word
+        long bits = words[word];
+        for (int i = ranks[word]; i < rank; i++) {
+            bits &= bits - 1;
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
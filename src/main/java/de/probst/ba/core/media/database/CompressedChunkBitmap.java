@@ -0,0 +1,769 @@
+package de.probst.ba.core.media.database;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * A compressed chunk bitmap in the style of roaring bitmaps.
+ * <p>
+ * The chunks are split into blocks of 65536 chunks. Every block
+ * is stored as sorted array, as plain bitmap or as runs of completed
+ * chunks, whichever is the smallest. A completed block is a single
+ * run. Blocks are immutable, so copies share them and only the
+ * modified blocks are replaced.
+ */
+final class CompressedChunkBitmap extends ChunkBitmap {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int BLOCK_WORDS = BLOCK_SIZE / Long.SIZE;
+    private static final int MAX_ARRAY_CARDINALITY = BLOCK_WORDS * Long.BYTES / Character.BYTES;
+
+    private static int nextSetBit(long[] words, int fromIndex) {
+        int u = fromIndex >>> 6;
+        if (u >= words.length) {
+            return -1;
+        }
+
+        long word = words[u] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (u << 6) + Long.numberOfTrailingZeros(word);
+            } else if (++u == words.length) {
+                return -1;
+            }
+            word = words[u];
+        }
+    }
+
+    private static int nextClearBit(long[] words, int fromIndex) {
+        int u = fromIndex >>> 6;
+        if (u >= words.length) {
+            return words.length << 6;
+        }
+
+        long word = ~words[u] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (u << 6) + Long.numberOfTrailingZeros(word);
+            } else if (++u == words.length) {
+                return words.length << 6;
+            }
+            word = ~words[u];
+        }
+    }
+
+    private static void setRange(long[] words, int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+
+        int first = fromIndex >>> 6, last = (toIndex - 1) >>> 6;
+        long firstMask = -1L << fromIndex, lastMask = -1L >>> -toIndex;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+        } else {
+            words[first] |= firstMask;
+            Arrays.fill(words, first + 1, last, -1L);
+            words[last] |= lastMask;
+        }
+    }
+
+    /**
+     * Creates the smallest block for the given words.
+     *
+     * @param words
+     * @return The block or null, if the words are empty.
+     */
+    private static Block optimize(long[] words) {
+        int cardinality = 0, runCount = 0;
+        long carry = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+            runCount += Long.bitCount(word & ~(word << 1 | carry));
+            carry = word >>> 63;
+        }
+
+        if (cardinality == 0) {
+            return null;
+        } else if (runCount * 2 * Character.BYTES < Math.min(cardinality * Character.BYTES,
+                                                             BLOCK_WORDS * Long.BYTES)) {
+            return RunBlock.of(words, runCount);
+        } else if (cardinality <= MAX_ARRAY_CARDINALITY) {
+            return ArrayBlock.of(words, cardinality);
+        } else {
+            return new BitmapBlock(words, cardinality);
+        }
+    }
+
+    private enum Operation {
+        OR, AND, AND_NOT;
+
+        boolean apply(boolean a, boolean b) {
+            switch (this) {
+                case OR:
+                    return a || b;
+                case AND:
+                    return a && b;
+                default:
+                    return a && !b;
+            }
+        }
+    }
+
+    /**
+     * Combines two blocks of the given length.
+     *
+     * @param a
+     * @param b
+     * @param operation
+     * @param length
+     * @return The combined block or null, if empty.
+     */
+    private static Block combine(Block a, Block b, Operation operation, int length) {
+        switch (operation) {
+            case OR:
+                if (a == null || b != null && b.cardinality() == length) return b;
+                if (b == null || a.cardinality() == length) return a;
+                break;
+            case AND:
+                if (a == null || b == null) return null;
+                if (a.cardinality() == length) return b;
+                if (b.cardinality() == length) return a;
+                if (a instanceof ArrayBlock) return ((ArrayBlock) a).filter(b, true);
+                if (b instanceof ArrayBlock) return ((ArrayBlock) b).filter(a, true);
+                break;
+            case AND_NOT:
+                if (a == null || b == null) return a;
+                if (b.cardinality() == length) return null;
+                if (a instanceof ArrayBlock) return ((ArrayBlock) a).filter(b, false);
+                break;
+        }
+
+        if (a instanceof RunBlock && b instanceof RunBlock) {
+            return ((RunBlock) a).combine((RunBlock) b, operation);
+        }
+
+        // Combine word by word
+        long[] words = a.toWords(), otherWords = b.toWords();
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            switch (operation) {
+                case OR:
+                    words[i] |= otherWords[i];
+                    break;
+                case AND:
+                    words[i] &= otherWords[i];
+                    break;
+                case AND_NOT:
+                    words[i] &= ~otherWords[i];
+                    break;
+            }
+        }
+        return optimize(words);
+    }
+
+    /**
+     * The immutable chunks of a single block.
+     */
+    private static abstract class Block implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        abstract int cardinality();
+
+        abstract boolean contains(int value);
+
+        abstract void toWords(long[] words);
+
+        abstract IntStream stream();
+
+        abstract int rank(int value);
+
+        abstract int select(int rank);
+
+        long[] toWords() {
+            long[] words = new long[BLOCK_WORDS];
+            toWords(words);
+            return words;
+        }
+    }
+
+    /**
+     * A sorted array of chunks, used for sparse blocks.
+     */
+    private static final class ArrayBlock extends Block {
+
+        private static final long serialVersionUID = 1L;
+
+        static ArrayBlock of(long[] words, int cardinality) {
+            char[] values = new char[cardinality];
+            int j = 0;
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    values[j++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayBlock(values);
+        }
+
+        private final char[] values;
+
+        ArrayBlock(char[] values) {
+            this.values = values;
+        }
+
+        /**
+         * @param value
+         * @param add
+         * @return A block with the value added or removed.
+         */
+        Block with(int value, boolean add) {
+            int index = Arrays.binarySearch(values, (char) value);
+            if (add) {
+                int insert = -index - 1;
+                char[] newValues = new char[values.length + 1];
+                System.arraycopy(values, 0, newValues, 0, insert);
+                newValues[insert] = (char) value;
+                System.arraycopy(values, insert, newValues, insert + 1, values.length - insert);
+                return new ArrayBlock(newValues);
+            } else if (values.length == 1) {
+                return null;
+            } else {
+                char[] newValues = new char[values.length - 1];
+                System.arraycopy(values, 0, newValues, 0, index);
+                System.arraycopy(values, index + 1, newValues, index, newValues.length - index);
+                return new ArrayBlock(newValues);
+            }
+        }
+
+        /**
+         * @param other
+         * @param keep
+         * @return A block with all values which are (not) contained in the other block.
+         */
+        Block filter(Block other, boolean keep) {
+            char[] newValues = new char[values.length];
+            int j = 0;
+            for (char value : values) {
+                if (other.contains(value) == keep) {
+                    newValues[j++] = value;
+                }
+            }
+            return j == 0 ? null : j == values.length ? this : new ArrayBlock(Arrays.copyOf(newValues, j));
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, (char) value) >= 0;
+        }
+
+        @Override
+        void toWords(long[] words) {
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+
+        @Override
+        IntStream stream() {
+            return IntStream.range(0, values.length).map(i -> values[i]);
+        }
+
+        @Override
+        int rank(int value) {
+            int index = Arrays.binarySearch(values, (char) value);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        @Override
+        int select(int rank) {
+            return values[rank];
+        }
+    }
+
+    /**
+     * A plain bitmap, used for dense blocks.
+     */
+    private static final class BitmapBlock extends Block {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapBlock(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        void toWords(long[] words) {
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                words[i] |= this.words[i];
+            }
+        }
+
+        @Override
+        IntStream stream() {
+            return BitSet.valueOf(words).stream();
+        }
+
+        @Override
+        int rank(int value) {
+            int word = value >>> 6, rank = 0;
+            for (int i = 0; i < word; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            return rank + Long.bitCount(words[word] & ((1L << value) - 1));
+        }
+
+        @Override
+        int select(int rank) {
+            for (int i = 0; ; i++) {
+                int count = Long.bitCount(words[i]);
+                if (rank < count) {
+                    long word = words[i];
+                    for (int j = 0; j < rank; j++) {
+                        word &= word - 1;
+                    }
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                rank -= count;
+            }
+        }
+    }
+
+    /**
+     * Runs of chunks, used for blocks with few gaps.
+     */
+    private static final class RunBlock extends Block {
+
+        private static final long serialVersionUID = 1L;
+
+        static RunBlock of(long[] words, int runCount) {
+            char[] runs = new char[runCount * 2];
+            int j = 0;
+            for (int start = nextSetBit(words, 0); start >= 0; ) {
+                int end = nextClearBit(words, start);
+                runs[j++] = (char) start;
+                runs[j++] = (char) (end - start - 1);
+                start = nextSetBit(words, end);
+            }
+            return new RunBlock(runs);
+        }
+
+        static RunBlock full(int length) {
+            return new RunBlock(new char[]{0, (char) (length - 1)});
+        }
+
+        // The k-th start or end (exclusive) of the runs
+        private static int bound(char[] runs, int k) {
+            return (k & 1) == 0 ? runs[k] : runs[k - 1] + runs[k] + 1;
+        }
+
+        // Pairs of run starts and run lengths minus one
+        private final char[] runs;
+
+        private final int cardinality;
+
+        RunBlock(char[] runs) {
+            this.runs = runs;
+
+            int cardinality = 0;
+            for (int i = 1; i < runs.length; i += 2) {
+                cardinality += runs[i] + 1;
+            }
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int value) {
+            // Find the last run which starts at or before the value
+            int low = 0, high = runs.length / 2 - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (runs[middle * 2] <= value) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            int start = runs[low * 2];
+            return value >= start && value <= start + runs[low * 2 + 1];
+        }
+
+        @Override
+        void toWords(long[] words) {
+            for (int i = 0; i < runs.length; i += 2) {
+                setRange(words, runs[i], runs[i] + runs[i + 1] + 1);
+            }
+        }
+
+        @Override
+        IntStream stream() {
+            return IntStream.range(0, runs.length / 2)
+                            .flatMap(i -> IntStream.rangeClosed(runs[i * 2], runs[i * 2] + runs[i * 2 + 1]));
+        }
+
+        /**
+         * Combines the runs by sweeping over the starts and ends of both.
+         *
+         * @param other
+         * @param operation
+         * @return The combined block or null, if empty.
+         */
+        Block combine(RunBlock other, Operation operation) {
+            char[] newRuns = new char[runs.length + other.runs.length];
+            int runCount = 0, cardinality = 0, start = 0, i = 0, j = 0;
+            boolean inA = false, inB = false, in = false;
+            while (i < runs.length || j < other.runs.length) {
+                int position = Math.min(i < runs.length ? bound(runs, i) : Integer.MAX_VALUE,
+                                        j < other.runs.length ? bound(other.runs, j) : Integer.MAX_VALUE);
+                if (i < runs.length && bound(runs, i) == position) {
+                    inA = !inA;
+                    i++;
+                }
+                if (j < other.runs.length && bound(other.runs, j) == position) {
+                    inB = !inB;
+                    j++;
+                }
+
+                boolean now = operation.apply(inA, inB);
+                if (now && !in) {
+                    start = position;
+                } else if (!now && in) {
+                    newRuns[runCount * 2] = (char) start;
+                    newRuns[runCount * 2 + 1] = (char) (position - start - 1);
+                    cardinality += position - start;
+                    runCount++;
+                }
+                in = now;
+            }
+
+            if (runCount == 0) {
+                return null;
+            }
+
+            RunBlock block = new RunBlock(Arrays.copyOf(newRuns, runCount * 2));
+            if (runCount * 2 * Character.BYTES < Math.min(cardinality * Character.BYTES, BLOCK_WORDS * Long.BYTES)) {
+                return block;
+            } else if (cardinality <= MAX_ARRAY_CARDINALITY) {
+                return new ArrayBlock(block.toValues());
+            } else {
+                return new BitmapBlock(block.toWords(), cardinality);
+            }
+        }
+
+        char[] toValues() {
+            char[] values = new char[cardinality];
+            int j = 0;
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int value = runs[i]; value <= runs[i] + runs[i + 1]; value++) {
+                    values[j++] = (char) value;
+                }
+            }
+            return values;
+        }
+
+        @Override
+        int rank(int value) {
+            int rank = 0;
+            for (int i = 0; i < runs.length && runs[i] < value; i += 2) {
+                rank += Math.min(value - runs[i], runs[i + 1] + 1);
+            }
+            return rank;
+        }
+
+        @Override
+        int select(int rank) {
+            for (int i = 0; ; i += 2) {
+                if (rank <= runs[i + 1]) {
+                    return runs[i] + rank;
+                }
+                rank -= runs[i + 1] + 1;
+            }
+        }
+    }
+
+    // The blocks
+    // (Null if a block has no completed chunks)
+    private final Block[] blocks;
+
+    // The number of completed chunks
+    private int cardinality;
+
+    // The number of completed chunks in front of each block,
+    // calculated lazily
+    private transient volatile int[] blockRanks;
+
+    private int[] getBlockRanks() {
+        int[] blockRanks = this.blockRanks;
+        if (blockRanks == null) {
+            blockRanks = new int[blocks.length];
+            int accumulator = 0;
+            for (int i = 0; i < blocks.length; i++) {
+                blockRanks[i] = accumulator;
+                accumulator += blocks[i] != null ? blocks[i].cardinality() : 0;
+            }
+            this.blockRanks = blockRanks;
+        }
+        return blockRanks;
+    }
+
+    private int getBlockLength(int block) {
+        return Math.min(BLOCK_SIZE, getChunkCount() - (block << BLOCK_BITS));
+    }
+
+    private void replaceBlock(int block, Block replacement) {
+        Block old = blocks[block];
+        cardinality += (replacement != null ? replacement.cardinality() : 0) - (old != null ? old.cardinality() : 0);
+        blocks[block] = replacement;
+        blockRanks = null;
+    }
+
+    private CompressedChunkBitmap(CompressedChunkBitmap other) {
+        super(other.getChunkCount());
+        blocks = other.blocks.clone();
+        cardinality = other.cardinality;
+    }
+
+    CompressedChunkBitmap(int chunkCount) {
+        super(chunkCount);
+        blocks = new Block[(chunkCount + BLOCK_MASK) >>> BLOCK_BITS];
+    }
+
+    CompressedChunkBitmap(int chunkCount, long[] words) {
+        this(chunkCount);
+        for (int i = 0; i < blocks.length; i++) {
+            int from = i * BLOCK_WORDS;
+            if (from < words.length) {
+                replaceBlock(i, optimize(Arrays.copyOfRange(words, from, from + BLOCK_WORDS)));
+            }
+        }
+    }
+
+    @Override
+    boolean isCompressed() {
+        return true;
+    }
+
+    @Override
+    ChunkBitmap copy() {
+        return new CompressedChunkBitmap(this);
+    }
+
+    @Override
+    long[] toLongArray() {
+        long[] words = new long[(getChunkCount() + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] != null) {
+                int from = i * BLOCK_WORDS;
+                System.arraycopy(blocks[i].toWords(), 0, words, from, Math.min(BLOCK_WORDS, words.length - from));
+            }
+        }
+        return words;
+    }
+
+    @Override
+    boolean get(int index) {
+        Block block = blocks[index >>> BLOCK_BITS];
+        return block != null && block.contains(index & BLOCK_MASK);
+    }
+
+    @Override
+    void set(int index, boolean value) {
+        int i = index >>> BLOCK_BITS, v = index & BLOCK_MASK;
+        Block block = blocks[i];
+        if ((block != null && block.contains(v)) == value) {
+            return;
+        }
+
+        if (block == null) {
+            replaceBlock(i, new ArrayBlock(new char[]{(char) v}));
+        } else if (block instanceof ArrayBlock && (!value || block.cardinality() < MAX_ARRAY_CARDINALITY)) {
+            replaceBlock(i, ((ArrayBlock) block).with(v, value));
+        } else {
+            long[] words = block.toWords();
+            words[v >>> 6] ^= 1L << v;
+            replaceBlock(i, optimize(words));
+        }
+    }
+
+    @Override
+    void set(int fromIndex, int toIndex) {
+        while (fromIndex < toIndex) {
+            int i = fromIndex >>> BLOCK_BITS;
+            int blockStart = i << BLOCK_BITS, blockLength = getBlockLength(i);
+            int end = Math.min(toIndex, blockStart + blockLength);
+
+            if (fromIndex == blockStart && end == blockStart + blockLength) {
+                replaceBlock(i, RunBlock.full(blockLength));
+            } else {
+                long[] words = blocks[i] != null ? blocks[i].toWords() : new long[BLOCK_WORDS];
+                setRange(words, fromIndex - blockStart, end - blockStart);
+                replaceBlock(i, optimize(words));
+            }
+            fromIndex = end;
+        }
+    }
+
+    @Override
+    void setAll(IntStream indices) {
+        int[] sorted = indices.sorted().toArray();
+        for (int j = 0; j < sorted.length; ) {
+            int i = sorted[j] >>> BLOCK_BITS;
+            long[] words = blocks[i] != null ? blocks[i].toWords() : new long[BLOCK_WORDS];
+            for (; j < sorted.length && sorted[j] >>> BLOCK_BITS == i; j++) {
+                int v = sorted[j] & BLOCK_MASK;
+                words[v >>> 6] |= 1L << v;
+            }
+            replaceBlock(i, optimize(words));
+        }
+    }
+
+    @Override
+    void flip() {
+        for (int i = 0; i < blocks.length; i++) {
+            int blockLength = getBlockLength(i);
+            if (blocks[i] == null) {
+                replaceBlock(i, RunBlock.full(blockLength));
+            } else if (blocks[i].cardinality() == blockLength) {
+                replaceBlock(i, null);
+            } else {
+                long[] mask = new long[BLOCK_WORDS], words = blocks[i].toWords();
+                setRange(mask, 0, blockLength);
+                for (int j = 0; j < BLOCK_WORDS; j++) {
+                    words[j] ^= mask[j];
+                }
+                replaceBlock(i, optimize(words));
+            }
+        }
+    }
+
+    private void combine(ChunkBitmap other, Operation operation) {
+        if (other.getChunkCount() != getChunkCount()) {
+            throw new IllegalArgumentException("other.getChunkCount() != getChunkCount()");
+        }
+
+        CompressedChunkBitmap that = (CompressedChunkBitmap) (other instanceof CompressedChunkBitmap ?
+                                                              other :
+                                                              other.convert(true));
+        for (int i = 0; i < blocks.length; i++) {
+            replaceBlock(i, combine(blocks[i], that.blocks[i], operation, getBlockLength(i)));
+        }
+    }
+
+    @Override
+    void or(ChunkBitmap other) {
+        combine(other, Operation.OR);
+    }
+
+    @Override
+    void and(ChunkBitmap other) {
+        combine(other, Operation.AND);
+    }
+
+    @Override
+    void andNot(ChunkBitmap other) {
+        combine(other, Operation.AND_NOT);
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    IntStream stream() {
+        return IntStream.range(0, blocks.length)
+                        .filter(i -> blocks[i] != null)
+                        .flatMap(i -> blocks[i].stream().map(v -> (i << BLOCK_BITS) + v));
+    }
+
+    @Override
+    int rank(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index < 0");
+        }
+
+        int i = index >>> BLOCK_BITS;
+        if (i >= blocks.length) {
+            return cardinality;
+        }
+        return getBlockRanks()[i] + (blocks[i] != null ? blocks[i].rank(index & BLOCK_MASK) : 0);
+    }
+
+    @Override
+    int select(int rank) {
+        if (rank < 0 || rank >= cardinality) {
+            throw new IndexOutOfBoundsException("rank < 0 || rank >= cardinality");
+        }
+
+        // Find the last block which starts at or before the rank
+        int[] blockRanks = getBlockRanks();
+        int low = 0, high = blockRanks.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blockRanks[middle] <= rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return (low << BLOCK_BITS) + blocks[low].select(rank - blockRanks[low]);
+    }
+
+    @Override
+    boolean hasSameChunks(ChunkBitmap other) {
+        Block[] otherBlocks = ((CompressedChunkBitmap) other).blocks;
+        for (int i = 0; i < blocks.length; i++) {
+            Block a = blocks[i], b = otherBlocks[i];
+            if (a == b) continue;
+            if (a == null || b == null) return false;
+            if (a.cardinality() != b.cardinality()) return false;
+            if (!Arrays.equals(a.toWords(), b.toWords())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] != null) {
+                long[] words = blocks[i].toWords();
+                for (int j = 0; j < BLOCK_WORDS; j++) {
+                    if (words[j] != 0) {
+                        result += hashWord(i * BLOCK_WORDS + j, words[j]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -12,9 +12,11 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.TreeMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -31,6 +33,13 @@ public interface DataBase extends Closeable {
      */
     Map<String, DataInfo> getDataInfo();
 
+    /**
+     * @return The version of the data info snapshot, which
+     * is incremented every time the non-empty data info
+     * of this data base change.
+     */
+    long getVersion();
+
     /**
      * @return A snapshot of all existing
      * non-empty data info in this data base plus data
@@ -44,6 +53,41 @@ public interface DataBase extends Closeable {
      */
     DataInfo get(String hash);
 
+    /**
+     * Returns a proof for the hash of the given chunk, which
+     * can be passed on to peers, which only know the merkle hash.
+     *
+     * @param hash
+     * @param chunkIndex
+     * @return The proof or empty, if the chunk hash
+     * of the given chunk is unknown.
+     */
+    default Optional<ChunkHashProof> getChunkHashProof(String hash, int chunkIndex) {
+        DataInfo dataInfo = get(hash);
+        if (dataInfo == null || !dataInfo.hasMerkleHash() || !dataInfo.hasChunkHashes() ||
+            chunkIndex < 0 || chunkIndex >= dataInfo.getChunkCount()) {
+            return Optional.empty();
+        }
+        return Optional.of(dataInfo.getChunkHashProof(chunkIndex));
+    }
+
+    /**
+     * @param name
+     * @return A snapshot of all existing non-empty data
+     * info with the given name, sorted by their id.
+     */
+    default NavigableMap<Long, DataInfo> getPartitions(String name) {
+        Objects.requireNonNull(name);
+        return getDataInfo().values()
+                            .stream()
+                            .filter(dataInfo -> dataInfo.getName().isPresent() &&
+                                                dataInfo.getName().get().equals(name))
+                            .collect(Collectors.toMap(DataInfo::getId,
+                                                      dataInfo -> dataInfo,
+                                                      (a, b) -> b,
+                                                      TreeMap::new));
+    }
+
     /**
      * Tries to open a database channel for reading by
      * searching for the exact same data info.
@@ -86,6 +130,30 @@ public interface DataBase extends Closeable {
      */
     Optional<DataBaseWriteChannel> insert(DataInfo dataInfo) throws IOException;
 
+    /**
+     * @return True if this data base can complete chunks, which
+     * are already stored under other data info, otherwise false.
+     */
+    default boolean supportsDeduplication() {
+        return false;
+    }
+
+    /**
+     * Completes the missing chunks of the given data info, which
+     * are already stored under another data info with identical
+     * chunk hashes, without transferring them again.
+     * <p>
+     * Chunks, which are locked for writing, are skipped.
+     *
+     * @param dataInfo
+     * @return The completed chunks, which might be empty.
+     * @throws IOException
+     */
+    default DataInfo deduplicate(DataInfo dataInfo) throws IOException {
+        Objects.requireNonNull(dataInfo);
+        return dataInfo.empty();
+    }
+
     /**
      * Tries to open database channels for reading by
      * searching for the exact same data info.
@@ -235,6 +303,49 @@ public interface DataBase extends Closeable {
         return lookupMany(inOrderDataInfo).map(dataInfo -> new CumulativeDataBaseReadChannel(this, dataInfo));
     }
 
+    /**
+     * Tries to open a cumulative database channel for reading by
+     * searching for the partitions with the given name, which fulfill
+     * the predicate. The first coherent partitions are then used to
+     * open the channel.
+     * <p>
+     * Unlike {@link #findIncremental(Predicate)}, the partitions are
+     * not searched and sorted, so every next partition is found in
+     * logarithmic time.
+     * <p>
+     * The chunks affected by this search are locked for reading,
+     * so that no modifications can happen, while reading
+     * in parallel is allowed.
+     *
+     * @param name
+     * @param predicate
+     * @return The channel or empty, if one of the
+     * specified chunks is locked for writing.
+     * @throws IOException If an exception occurs or there is no partition
+     *                     which fulfills the predicate.
+     */
+    default Optional<DataBaseReadChannel> findIncremental(String name, Predicate<DataInfo> predicate)
+            throws IOException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(predicate);
+
+        // Find the first partition
+        NavigableMap<Long, DataInfo> partitions = getPartitions(name);
+        DataInfo partition = partitions.values().stream().filter(predicate).findFirst().orElse(null);
+        if (partition == null) {
+            throw new DataLookupException();
+        }
+
+        // Collect all in-order partitions
+        List<DataInfo> inOrderDataInfo = new ArrayList<>();
+        do {
+            inOrderDataInfo.add(partition);
+            partition = partitions.get(partition.getId() + 1);
+        } while (partition != null && predicate.test(partition));
+
+        return lookupMany(inOrderDataInfo).map(dataInfo -> new CumulativeDataBaseReadChannel(this, dataInfo));
+    }
+
     /**
      * Tries to open a database channel for writing and
      * copies as much bytes from the readable byte channel
@@ -1,13 +1,148 @@
 package de.probst.ba.core.media.database;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Created by chrisprobst on 08.10.14.
  */
 public interface DataBaseReadChannel extends DataBaseChannel, ScatteringByteChannel {
 
+    // The maximal size of the buffer of transfers, which copy
+    int DEFAULT_TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @return True if this channel can hand out slices
+     * of the stored data, otherwise false.
+     */
+    default boolean supportsSlices() {
+        return false;
+    }
+
+    /**
+     * Reads up to the given number of bytes. If this channel
+     * supports slices, the bytes are not copied and a slice
+     * never spans more than one chunk, otherwise the bytes
+     * are read into a new buffer.
+     * <p>
+     * The returned buffer is only valid as long as
+     * this channel is open.
+     *
+     * @param maxLength
+     * @return A read-only slice of the stored data
+     * or empty, if this channel is completed.
+     * @throws IOException
+     */
+    default Optional<ByteBuffer> readSlice(int maxLength) throws IOException {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxLength <= 0");
+        }
+
+        int length = (int) Math.min(maxLength, remaining());
+        if (length == 0) {
+            return Optional.empty();
+        }
+
+        ByteBuffer slice = ByteBuffer.allocate(length);
+        if (read(slice) == -1) {
+            return Optional.empty();
+        }
+        slice.flip();
+        return Optional.of(slice.asReadOnlyBuffer());
+    }
+
+    /**
+     * @return True if this channel can transfer the stored
+     * data directly into other channels, otherwise false.
+     */
+    default boolean supportsTransfer() {
+        return false;
+    }
+
+    /**
+     * Transfers up to the given number of bytes, starting at the
+     * given position, directly into the target channel. If this
+     * channel supports transfers, the bytes are not copied through
+     * user space, otherwise they are read into a buffer first.
+     * A transfer never spans more than one chunk and the position
+     * of this channel is not modified.
+     *
+     * @param position
+     * @param count
+     * @param target
+     * @return The number of transferred bytes.
+     * @throws IOException
+     */
+    default long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        Objects.requireNonNull(target);
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        if (position >= size() || count == 0) {
+            return 0;
+        }
+
+        // Positional reads never span chunks
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, DEFAULT_TRANSFER_BUFFER_SIZE));
+        int read = read(buffer, position);
+        if (read <= 0) {
+            return 0;
+        }
+        buffer.flip();
+        return target.write(buffer);
+    }
+
+    /**
+     * Reads bytes, starting at the given position, without using
+     * or modifying the position of this channel. Positional reads
+     * share no cursor, so multiple threads can read the same channel
+     * concurrently. A positional read never spans more than one chunk.
+     *
+     * @param dst
+     * @param position
+     * @return The number of read bytes or -1, if the
+     * position is not before the end of this channel.
+     * @throws IOException
+     */
+    int read(ByteBuffer dst, long position) throws IOException;
+
+    /**
+     * Reads bytes, starting at the given position, into the buffers
+     * in order, until all buffers are full or the end of this channel
+     * is reached. The position of this channel is not used or modified.
+     *
+     * @param dsts
+     * @param position
+     * @return The number of read bytes or -1, if the
+     * position is not before the end of this channel.
+     * @throws IOException
+     */
+    default long read(ByteBuffer[] dsts, long position) throws IOException {
+        Objects.requireNonNull(dsts);
+        long totalRead = 0;
+        for (ByteBuffer dst : dsts) {
+            while (dst.hasRemaining()) {
+                int read = read(dst, position + totalRead);
+                if (read == -1) {
+                    return totalRead > 0 ? totalRead : -1;
+                } else if (read == 0) {
+                    return totalRead;
+                }
+                totalRead += read;
+            }
+        }
+        return totalRead;
+    }
+
     @Override
     DataBaseReadChannel position(long position) throws IOException;
 }
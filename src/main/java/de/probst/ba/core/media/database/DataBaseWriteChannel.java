@@ -11,6 +11,28 @@ public interface DataBaseWriteChannel extends DataBaseChannel, GatheringByteChan
 
     Optional<DataInfo> getMergedDataInfo();
 
+    /**
+     * Returns the chunks which were written completely,
+     * but did not match their chunk hash and therefore
+     * were not merged into the database.
+     *
+     * @return The rejected chunks or empty, if all chunks
+     * were verified or the channel is not closed yet.
+     */
+    Optional<DataInfo> getRejectedDataInfo();
+
+    /**
+     * Adds a proven chunk hash, which is used to verify
+     * the chunk if this channel does not know the chunk hashes.
+     * Every chunk of a merkle hash without chunk hashes must be
+     * proven before it is written, otherwise it is rejected.
+     *
+     * @param chunkHashProof
+     * @return True if the proof is valid for a chunk of this
+     * channel, otherwise false.
+     */
+    boolean addChunkHashProof(ChunkHashProof chunkHashProof);
+
     @Override
     DataBaseWriteChannel position(long position) throws IOException;
 }
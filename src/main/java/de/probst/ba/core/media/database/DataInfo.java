@@ -4,21 +4,22 @@ import de.probst.ba.core.util.collections.Tuple;
 import de.probst.ba.core.util.collections.Tuple2;
 import de.probst.ba.core.util.io.LimitedReadableByteChannel;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Collections;
-import java.util.Formatter;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -31,7 +32,10 @@ import java.util.stream.IntStream;
  */
 public final class DataInfo implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
     public static final String DEFAULT_HASH_ALGORITHM = "SHA1";
+    public static final ChunkHashAlgorithm DEFAULT_CHUNK_HASH_ALGORITHM = ChunkHashAlgorithm.SHA1;
     public static final int DEFAULT_HASH_BUFFER_SIZE = 65535;
 
     public static Tuple2<Long, Long> calculatePartitionSizes(long size, int partitions) {
@@ -56,6 +60,7 @@ public final class DataInfo implements Serializable {
                                                         Optional<String> name,
                                                         Optional<Object> description,
                                                         int chunkCount,
+                                                        ChunkHashAlgorithm chunkHashAlgorithm,
                                                         ReadableByteChannel readableByteChannel)
             throws IOException, NoSuchAlgorithmException {
 
@@ -77,33 +82,144 @@ public final class DataInfo implements Serializable {
                                      name,
                                      description,
                                      chunkCount,
+                                     chunkHashAlgorithm,
                                      new LimitedReadableByteChannel(readableByteChannel, actualPartitionSize, false)));
         }
         return dataInfo;
     }
 
+    /**
+     * Hashes all partitions of the file channel in parallel.
+     * <p>
+     * The chunks are read with positional reads, so every chunk
+     * of every partition is hashed as a separate fork/join task.
+     * The result is the same as of {@link #fromPartitionedChannel}.
+     *
+     * @param partitions
+     * @param size
+     * @param name
+     * @param description
+     * @param chunkCount
+     * @param chunkHashAlgorithm
+     * @param fileChannel
+     * @return
+     * @throws IOException
+     * @throws NoSuchAlgorithmException
+     */
+    public static List<DataInfo> fromPartitionedFileChannel(int partitions,
+                                                            long size,
+                                                            Optional<String> name,
+                                                            Optional<Object> description,
+                                                            int chunkCount,
+                                                            ChunkHashAlgorithm chunkHashAlgorithm,
+                                                            FileChannel fileChannel)
+            throws IOException, NoSuchAlgorithmException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(description);
+        Objects.requireNonNull(chunkHashAlgorithm);
+        Objects.requireNonNull(fileChannel);
+
+        // Calculate partition sizes
+        Tuple2<Long, Long> partitionSizes = calculatePartitionSizes(size, partitions);
+        long partitionSize = partitionSizes.first();
+        long lastPartitionSize = partitionSizes.second();
+
+        if (chunkCount > partitionSize) {
+            throw new IllegalArgumentException("chunkCount > partitionSize");
+        }
+
+        // Calculate chunk sizes of the usual and the last partition
+        Tuple2<Long, Long> chunkSizes = calculatePartitionSizes(partitionSize, chunkCount);
+        Tuple2<Long, Long> lastChunkSizes = calculatePartitionSizes(lastPartitionSize, chunkCount);
+
+        // All chunk hashes are packed into these arrays
+        int chunkHashLength = chunkHashAlgorithm.getLength();
+        byte[][] packedChunkHashes = new byte[partitions][chunkCount * chunkHashLength];
+
+        // Every worker thread gets its own buffer
+        ThreadLocal<ByteBuffer> byteBuffers =
+                ThreadLocal.withInitial(() -> ByteBuffer.allocate(DEFAULT_HASH_BUFFER_SIZE));
+
+        try {
+            IntStream.range(0, partitions).parallel().forEach(partition -> {
+                Tuple2<Long, Long> actualChunkSizes = partition < partitions - 1 ? chunkSizes : lastChunkSizes;
+
+                IntStream.range(0, chunkCount).parallel().forEach(chunkIndex -> {
+                    long position = partition * partitionSize + chunkIndex * actualChunkSizes.first();
+                    long actualChunkSize = chunkIndex < chunkCount - 1 ?
+                                           actualChunkSizes.first() :
+                                           actualChunkSizes.second();
+
+                    try {
+                        ChunkHashAlgorithm.Hasher chunkHasher = chunkHashAlgorithm.getThreadHasher();
+                        ByteBuffer byteBuffer = byteBuffers.get();
+
+                        // Read in the actual chunk
+                        long completed = 0;
+                        while (completed < actualChunkSize) {
+                            // Set buffer size
+                            byteBuffer.clear()
+                                      .limit((int) Math.min(byteBuffer.capacity(), actualChunkSize - completed));
+
+                            // Read the data into memory
+                            int read = fileChannel.read(byteBuffer, position + completed);
+                            if (read < 0) {
+                                throw new EOFException();
+                            }
+                            byteBuffer.flip();
+
+                            // Update the hash
+                            chunkHasher.update(byteBuffer);
+
+                            completed += read;
+                        }
+
+                        // Pack chunk hash
+                        System.arraycopy(chunkHasher.digest(),
+                                         0,
+                                         packedChunkHashes[partition],
+                                         chunkIndex * chunkHashLength,
+                                         chunkHashLength);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Create a data info for each part
+        List<DataInfo> dataInfo = new ArrayList<>(partitions);
+        for (int id = 0; id < partitions; id++) {
+            dataInfo.add(fromPackedChunkHashes(id,
+                                               id < partitions - 1 ? partitionSize : lastPartitionSize,
+                                               name,
+                                               description,
+                                               chunkHashAlgorithm,
+                                               chunkHashLength,
+                                               packedChunkHashes[id]));
+        }
+        return dataInfo;
+    }
+
     public static DataInfo fromChannel(long id,
                                        long size,
                                        Optional<String> name,
                                        Optional<Object> description,
                                        int chunkCount,
+                                       ChunkHashAlgorithm chunkHashAlgorithm,
                                        ReadableByteChannel readableByteChannel)
             throws NoSuchAlgorithmException, IOException {
 
-        // A little helper function
-        Function<byte[], String> hexify = byteArray -> {
-            Formatter formatter = new Formatter();
-            for (byte b : byteArray) {
-                formatter.format("%02x", b);
-            }
-            return formatter.toString();
-        };
-
-        // All chunk hashes are stored here
-        List<String> chunkHashes = new ArrayList<>(chunkCount);
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(description);
+        Objects.requireNonNull(chunkHashAlgorithm);
 
-        // Init hash
-        MessageDigest hashDigest = MessageDigest.getInstance(DEFAULT_HASH_ALGORITHM);
+        // All chunk hashes are packed into this array
+        ChunkHashAlgorithm.Hasher chunkHasher = chunkHashAlgorithm.getThreadHasher();
+        int chunkHashLength = chunkHasher.getLength();
+        byte[] packedChunkHashes = new byte[chunkCount * chunkHashLength];
 
         // Setup vars
         ByteBuffer byteBuffer = ByteBuffer.allocate(DEFAULT_HASH_BUFFER_SIZE);
@@ -114,9 +230,6 @@ public final class DataInfo implements Serializable {
         long lastChunkSize = chunkSizes.second();
 
         for (int i = 0; i < chunkCount; i++) {
-            // Init chunk hash
-            MessageDigest chunkHashDigest = MessageDigest.getInstance(DEFAULT_HASH_ALGORITHM);
-
             // Calc the actual chunk size
             long actualChunkSize = i < chunkCount - 1 ? chunkSize : lastChunkSize;
 
@@ -133,23 +246,53 @@ public final class DataInfo implements Serializable {
                 }
                 byteBuffer.flip();
 
-                // Update the hashes
-                hashDigest.update(byteBuffer);
-                byteBuffer.rewind();
-                chunkHashDigest.update(byteBuffer);
+                // Update the hash
+                chunkHasher.update(byteBuffer);
 
                 completed += read;
             }
 
-            // Hexify chunk hash
-            chunkHashes.add(hexify.apply(chunkHashDigest.digest()));
+            // Pack chunk hash
+            System.arraycopy(chunkHasher.digest(), 0, packedChunkHashes, i * chunkHashLength, chunkHashLength);
         }
 
+        return fromPackedChunkHashes(id,
+                                     size,
+                                     name,
+                                     description,
+                                     chunkHashAlgorithm,
+                                     chunkHashLength,
+                                     packedChunkHashes);
+    }
+
+    /**
+     * Creates a completed data info whose hash is the hash
+     * of all chunk hashes. This way the chunks can be hashed
+     * independently and the data is only read once.
+     */
+    private static DataInfo fromPackedChunkHashes(long id,
+                                                  long size,
+                                                  Optional<String> name,
+                                                  Optional<Object> description,
+                                                  ChunkHashAlgorithm chunkHashAlgorithm,
+                                                  int chunkHashLength,
+                                                  byte[] packedChunkHashes) throws NoSuchAlgorithmException {
         // Hexify hash
-        String hash = hexify.apply(hashDigest.digest());
+        byte[] hashBytes = MessageDigest.getInstance(DEFAULT_HASH_ALGORITHM).digest(packedChunkHashes);
+        String hash = DataInfoDescriptor.hexify(hashBytes, 0, hashBytes.length);
 
         // Create a new data info
-        return new DataInfo(id, size, name, description, hash, chunkHashes).full();
+        DataInfoDescriptor descriptor = DataInfoDescriptor.intern(new DataInfoDescriptor(id,
+                                                                                         size,
+                                                                                         name.orElse(null),
+                                                                                         description.orElse(null),
+                                                                                         hash,
+                                                                                         chunkHashAlgorithm,
+                                                                                         chunkHashLength,
+                                                                                         packedChunkHashes));
+        return new DataInfo(descriptor,
+                            ChunkBitmap.create(packedChunkHashes.length / chunkHashLength, false),
+                            false).full();
     }
 
     public static DataInfo generate(long id,
@@ -167,40 +310,58 @@ public final class DataInfo implements Serializable {
                             IntStream.range(0, chunkCount).mapToObj(chunkCreator).collect(Collectors.toList()));
     }
 
-    // The id of this data info
-    private final long id;
-
-    // The total size
-    private final long size;
-
-    // Human readable name of this data
-    private final String name;
-
-    // Human readable description of this data
-    private final Object description;
+    /**
+     * Reads a data info, which was written with write.
+     *
+     * @param dataInput
+     * @return
+     * @throws IOException If the data info cannot be decoded.
+     */
+    public static DataInfo read(DataInput dataInput) throws IOException {
+        Objects.requireNonNull(dataInput);
+        DataInfoDescriptor descriptor = DataInfoDescriptor.read(dataInput);
+        boolean fromProducer = dataInput.readBoolean();
+        boolean compressed = dataInput.readBoolean();
 
-    // The unique hash
-    private final String hash;
+        int wordCount = dataInput.readInt();
+        if (wordCount < 0 || wordCount > (descriptor.getChunkCount() + 63) / 64) {
+            throw new IOException("wordCount < 0 || wordCount > (descriptor.getChunkCount() + 63) / 64");
+        }
 
-    // The unique chunk hashes
-    private final List<String> chunkHashes;
+        long[] words = new long[wordCount];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = dataInput.readLong();
+        }
+        if (BitSet.valueOf(words).length() > descriptor.getChunkCount()) {
+            throw new IOException("BitSet.valueOf(words).length() > descriptor.getChunkCount()");
+        }
 
-    // The usual chunk size
-    // (Calculated with size and chunkCount)
-    private final long chunkSize;
+        return new DataInfo(descriptor,
+                            ChunkBitmap.fromLongArray(descriptor.getChunkCount(), words, compressed),
+                            fromProducer);
+    }
 
-    // The size of the last chunk
-    // (Premature optimization, i know)
-    private final long lastChunkSize;
+    // The shared immutable part
+    private final DataInfoDescriptor descriptor;
 
     // Here we store whether or not
     // a chunk is completed
-    private final BitSet chunks;
+    private final ChunkBitmap chunks;
 
     // Tells whether or not this data info
     // came from a producer
     private final boolean fromProducer;
 
+    // The cached hash code, calculated lazily
+    // because copies modify their chunks after creation
+    private transient int hashCode;
+
+    private DataInfo(DataInfoDescriptor descriptor, ChunkBitmap chunks, boolean fromProducer) {
+        this.descriptor = descriptor;
+        this.chunks = chunks;
+        this.fromProducer = fromProducer;
+    }
+
     public DataInfo(long id,
                     long size,
                     Optional<String> name,
@@ -219,36 +380,36 @@ public final class DataInfo implements Serializable {
                     boolean fromProducer) {
         Objects.requireNonNull(name);
         Objects.requireNonNull(description);
-        Objects.requireNonNull(hash);
-        Objects.requireNonNull(chunkHashes);
-        chunkHashes.stream().forEach(Objects::requireNonNull);
-
-        if (size < 0) {
-            throw new IllegalArgumentException("size < 0");
-        }
-
-        if (chunkHashes.size() == 0) {
-            throw new IllegalArgumentException("chunkHashes.size() == 0");
-        }
 
-        if (chunkHashes.size() > size) {
-            throw new IllegalArgumentException("chunkHashes.size() > size");
-        }
-
-        this.id = id;
-        this.size = size;
-        this.name = name.orElse(null);
-        this.description = description.orElse(null);
-        this.hash = hash;
-        this.chunkHashes = Collections.unmodifiableList(new ArrayList<>(chunkHashes));
+        descriptor = DataInfoDescriptor.intern(new DataInfoDescriptor(id,
+                                                                      size,
+                                                                      name.orElse(null),
+                                                                      description.orElse(null),
+                                                                      hash,
+                                                                      DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                                      chunkHashes));
+        chunks = ChunkBitmap.create(chunkHashes.size(), false);
         this.fromProducer = fromProducer;
-        chunks = new BitSet(chunkHashes.size());
+    }
 
-        // Calculate the chunk sizes
-        // Calculate chunk sizes
-        Tuple2<Long, Long> chunkSizes = calculatePartitionSizes(size, chunkHashes.size());
-        chunkSize = chunkSizes.first();
-        lastChunkSize = chunkSizes.second();
+    /**
+     * Writes this data info in an explicit binary form, which
+     * does not depend on java serialization of this class.
+     *
+     * @param dataOutput
+     * @throws IOException
+     */
+    public void write(DataOutput dataOutput) throws IOException {
+        Objects.requireNonNull(dataOutput);
+        descriptor.write(dataOutput);
+        dataOutput.writeBoolean(fromProducer);
+        dataOutput.writeBoolean(chunks.isCompressed());
+
+        long[] words = chunks.toLongArray();
+        dataOutput.writeInt(words.length);
+        for (long word : words) {
+            dataOutput.writeLong(word);
+        }
     }
 
     /**
@@ -263,15 +424,7 @@ public final class DataInfo implements Serializable {
      * @return
      */
     public DataInfo fromProducer(boolean fromProducer) {
-        DataInfo copy = new DataInfo(getId(),
-                                     getSize(),
-                                     getName(),
-                                     getDescription(),
-                                     getHash(),
-                                     getChunkHashes(),
-                                     fromProducer);
-        copy.chunks.or(chunks);
-        return copy;
+        return new DataInfo(descriptor, chunks.copy(), fromProducer);
     }
 
     /**
@@ -282,7 +435,7 @@ public final class DataInfo implements Serializable {
      */
     public DataInfo flip() {
         DataInfo dataInfo = duplicate();
-        dataInfo.chunks.flip(0, dataInfo.getChunkCount());
+        dataInfo.chunks.flip();
         return dataInfo;
     }
 
@@ -292,9 +445,7 @@ public final class DataInfo implements Serializable {
      * @return
      */
     public DataInfo duplicate() {
-        DataInfo dataInfo = empty();
-        dataInfo.chunks.or(chunks);
-        return dataInfo;
+        return new DataInfo(descriptor, chunks.copy(), false);
     }
 
     /**
@@ -305,7 +456,7 @@ public final class DataInfo implements Serializable {
      */
     public DataInfo full() {
         DataInfo dataInfo = empty();
-        dataInfo.chunks.set(0, dataInfo.getChunkCount(), true);
+        dataInfo.chunks.set(0, dataInfo.getChunkCount());
         return dataInfo;
     }
 
@@ -316,7 +467,7 @@ public final class DataInfo implements Serializable {
      * @return
      */
     public DataInfo empty() {
-        return new DataInfo(getId(), getSize(), getName(), getDescription(), getHash(), getChunkHashes());
+        return new DataInfo(descriptor, chunks.emptyCopy(), false);
     }
 
     /**
@@ -357,7 +508,7 @@ public final class DataInfo implements Serializable {
     public DataInfo withChunks(IntStream indexStream) {
         Objects.requireNonNull(indexStream);
         DataInfo copy = duplicate();
-        indexStream.forEach(copy.chunks::set);
+        copy.chunks.setAll(indexStream);
         return copy;
     }
 
@@ -377,9 +528,7 @@ public final class DataInfo implements Serializable {
      */
     public DataInfo randomize() {
         DataInfo dataInfo = empty();
-        for (int i = 0; i < dataInfo.getChunkCount(); i++) {
-            dataInfo.chunks.set(i, Math.random() >= 0.5);
-        }
+        dataInfo.chunks.setAll(IntStream.range(0, dataInfo.getChunkCount()).filter(i -> Math.random() >= 0.5));
         return dataInfo;
     }
 
@@ -399,6 +548,27 @@ public final class DataInfo implements Serializable {
         return empty().withChunk(completedChunks[chunkIndex]);
     }
 
+    /**
+     * @return True if the chunks are stored
+     * compressed, otherwise false.
+     */
+    public boolean hasCompressedChunks() {
+        return chunks.isCompressed();
+    }
+
+    /**
+     * Creates a copy which stores the chunks compressed or not.
+     * Compressed chunks need much less memory and are combined
+     * faster if there are many chunks in long runs, for instance
+     * completed or sequentially downloaded data.
+     *
+     * @param compressed
+     * @return
+     */
+    public DataInfo withCompressedChunks(boolean compressed) {
+        return new DataInfo(descriptor, chunks.convert(compressed), fromProducer);
+    }
+
     /**
      * Checks whether or the other data info is
      * compatible with this compatible.
@@ -408,8 +578,7 @@ public final class DataInfo implements Serializable {
      */
     public boolean isCompatibleWith(DataInfo other) {
         Objects.requireNonNull(other);
-        return other.getSize() == getSize() && other.getHash().equals(getHash()) && other.getChunkHashes()
-                                                                                         .equals(getChunkHashes());
+        return descriptor.isCompatibleWith(other.descriptor);
     }
 
     /**
@@ -475,49 +644,143 @@ public final class DataInfo implements Serializable {
      * @return The id.
      */
     public long getId() {
-        return id;
+        return descriptor.getId();
     }
 
     /**
      * @return The size.
      */
     public long getSize() {
-        return size;
+        return descriptor.getSize();
     }
 
     /**
      * @return The name.
      */
     public Optional<String> getName() {
-        return Optional.ofNullable(name);
+        return Optional.ofNullable(descriptor.getName());
     }
 
     /**
      * @return The description.
      */
     public Optional<Object> getDescription() {
-        return Optional.ofNullable(description);
+        return Optional.ofNullable(descriptor.getDescription());
     }
 
     /**
      * @return The hash.
      */
     public String getHash() {
-        return hash;
+        return descriptor.getHash();
     }
 
     /**
      * @return The chunk hashes.
      */
     public List<String> getChunkHashes() {
-        return chunkHashes;
+        return descriptor.getChunkHashes();
+    }
+
+    /**
+     * @return True if the hash is a merkle root
+     * over the chunk hashes, otherwise false.
+     */
+    public boolean hasMerkleHash() {
+        return descriptor.hasMerkleHash();
+    }
+
+    /**
+     * @return True if the chunk hashes are known,
+     * otherwise false.
+     */
+    public boolean hasChunkHashes() {
+        return descriptor.hasChunkHashes();
+    }
+
+    /**
+     * Creates a copy whose hash is the merkle root
+     * of the chunk hashes. The copy is not compatible
+     * with this data info.
+     *
+     * @return
+     */
+    public DataInfo withMerkleHash() {
+        return new DataInfo(DataInfoDescriptor.intern(descriptor.withMerkleHash()),
+                            chunks.copy(),
+                            fromProducer);
+    }
+
+    /**
+     * Creates a compatible copy without chunk hashes,
+     * if this data info has a merkle hash. Otherwise
+     * the chunk hashes are kept.
+     *
+     * @return
+     */
+    public DataInfo withoutChunkHashes() {
+        DataInfoDescriptor stripped = descriptor.withoutChunkHashes();
+        if (stripped == descriptor) {
+            return this;
+        }
+        return new DataInfo(stripped, chunks.copy(), fromProducer);
+    }
+
+    /**
+     * Creates a proof for the hash of the given chunk,
+     * which can be verified with the merkle hash only.
+     *
+     * @param chunkIndex
+     * @return
+     */
+    public ChunkHashProof getChunkHashProof(int chunkIndex) {
+        return descriptor.getChunkHashProof(chunkIndex);
+    }
+
+    /**
+     * Checks whether or not the chunk hash
+     * of the proof belongs to the merkle hash.
+     *
+     * @param chunkHashProof
+     * @return
+     */
+    public boolean verifyChunkHashProof(ChunkHashProof chunkHashProof) {
+        return descriptor.verifyChunkHashProof(chunkHashProof);
+    }
+
+    /**
+     * @return True if received chunks can be verified
+     * against the chunk hashes, otherwise false.
+     */
+    public boolean canVerifyChunkHashes() {
+        return descriptor.canVerifyChunkHashes();
+    }
+
+    /**
+     * Checks whether or not the given hash, created
+     * with the chunk hash algorithm, is the hash of
+     * the given chunk.
+     *
+     * @param chunkIndex
+     * @param chunkHash
+     * @return
+     */
+    public boolean verifyChunkHash(int chunkIndex, byte[] chunkHash) {
+        return descriptor.verifyChunkHash(chunkIndex, chunkHash);
+    }
+
+    /**
+     * @return The algorithm of the chunk hashes.
+     */
+    public ChunkHashAlgorithm getChunkHashAlgorithm() {
+        return descriptor.getChunkHashAlgorithm();
     }
 
     /**
      * @return The chunk count.
      */
     public int getChunkCount() {
-        return chunkHashes.size();
+        return descriptor.getChunkCount();
     }
 
     /**
@@ -531,7 +794,7 @@ public final class DataInfo implements Serializable {
         if (chunkIndex < 0 || chunkIndex >= getChunkCount()) {
             throw new IndexOutOfBoundsException("chunkIndex < 0 || chunkIndex >= getChunkCount()");
         }
-        return chunkIndex < getChunkCount() - 1 ? chunkSize : lastChunkSize;
+        return chunkIndex < getChunkCount() - 1 ? descriptor.getChunkSize() : descriptor.getLastChunkSize();
     }
 
     /**
@@ -569,7 +832,17 @@ public final class DataInfo implements Serializable {
      * @return The completed size.
      */
     public long getCompletedSize() {
-        return getCompletedChunks().mapToLong(this::getChunkSize).sum();
+        int completedChunkCount = getCompletedChunkCount();
+        if (completedChunkCount == 0) {
+            return 0;
+        }
+
+        // All chunks except the last one have the same size
+        long completedSize = completedChunkCount * descriptor.getChunkSize();
+        if (chunks.get(getChunkCount() - 1)) {
+            completedSize += descriptor.getLastChunkSize() - descriptor.getChunkSize();
+        }
+        return completedSize;
     }
 
     /**
@@ -577,7 +850,10 @@ public final class DataInfo implements Serializable {
      * @return The total offset according to the total chunk index.
      */
     public long getTotalOffset(int totalChunkIndex) {
-        return IntStream.range(0, totalChunkIndex).mapToLong(this::getChunkSize).sum();
+        if (totalChunkIndex < 0 || totalChunkIndex > getChunkCount()) {
+            throw new IndexOutOfBoundsException("totalChunkIndex < 0 || totalChunkIndex > getChunkCount()");
+        }
+        return totalChunkIndex < getChunkCount() ? totalChunkIndex * descriptor.getChunkSize() : getSize();
     }
 
     /**
@@ -589,13 +865,12 @@ public final class DataInfo implements Serializable {
             throw new IllegalArgumentException("totalChunkIndex < 0");
         } else if (totalChunkIndex >= getChunkCount()) {
             throw new IllegalArgumentException("totalChunkIndex >= getChunkCount()");
-        } else if (!getCompletedChunks().filter(chunkIndex -> chunkIndex == totalChunkIndex).findFirst().isPresent()) {
-            throw new IllegalArgumentException("!getCompletedChunks().filter(chunkIndex -> " +
-                                               "chunkIndex == totalChunkIndex).findFirst().isPresent()");
+        } else if (!chunks.get(totalChunkIndex)) {
+            throw new IllegalArgumentException("!isChunkCompleted(totalChunkIndex)");
         }
-        return getCompletedChunks().filter(chunkIndex -> chunkIndex < totalChunkIndex)
-                                   .mapToLong(this::getChunkSize)
-                                   .sum();
+
+        // The last chunk can never be in front of another chunk
+        return chunks.rank(totalChunkIndex) * descriptor.getChunkSize();
     }
 
     /**
@@ -611,25 +886,13 @@ public final class DataInfo implements Serializable {
             if (offset >= getSize()) {
                 throw new IllegalArgumentException("offset >= getSize()");
             }
-            int chunkIndex;
-            for (chunkIndex = 0; chunkIndex < getChunkCount(); chunkIndex++) {
-                if ((offset -= getChunkSize(chunkIndex)) < 0) {
-                    break;
-                }
-            }
-            return chunkIndex;
+            return (int) Math.min(offset / descriptor.getChunkSize(), getChunkCount() - 1);
         } else {
             if (offset >= getCompletedSize()) {
                 throw new IllegalArgumentException("offset >= getCompletedSize()");
             }
-            int[] completedChunks = getCompletedChunks().toArray();
-            int chunkIndex = completedChunks[0];
-            for (int i = 0; i < completedChunks.length; i++, chunkIndex = completedChunks[i]) {
-                if ((offset -= getChunkSize(chunkIndex)) < 0) {
-                    break;
-                }
-            }
-            return chunkIndex;
+            int rank = (int) Math.min(offset / descriptor.getChunkSize(), getCompletedChunkCount() - 1);
+            return chunks.select(rank);
         }
     }
 
@@ -712,13 +975,13 @@ public final class DataInfo implements Serializable {
     @Override
     public String toString() {
         return "DataInfo{" +
-               "id=" + id +
-               ", size=" + size +
+               "id=" + getId() +
+               ", size=" + getSize() +
                ", name='" + getName() + '\'' +
                ", description=" + getDescription() +
-               ", hash='" + hash + '\'' +
-               ", chunkHashes=" + chunkHashes +
-               ", chunkSize=" + chunkSize +
+               ", hash='" + getHash() + '\'' +
+               ", chunkHashes=" + (hasChunkHashes() ? getChunkHashes() : "stripped") +
+               ", chunkSize=" + descriptor.getChunkSize() +
                ", chunks=" + chunks +
                '}';
     }
@@ -730,27 +993,21 @@ public final class DataInfo implements Serializable {
 
         DataInfo dataInfo = (DataInfo) o;
 
-        if (id != dataInfo.id) return false;
-        if (size != dataInfo.size) return false;
-        if (!chunkHashes.equals(dataInfo.chunkHashes)) return false;
+        if (hashCode() != dataInfo.hashCode()) return false;
         if (!chunks.equals(dataInfo.chunks)) return false;
-        if (description != null ? !description.equals(dataInfo.description) : dataInfo.description != null)
-            return false;
-        if (!hash.equals(dataInfo.hash)) return false;
-        if (name != null ? !name.equals(dataInfo.name) : dataInfo.name != null) return false;
+        if (!descriptor.equals(dataInfo.descriptor)) return false;
 
         return true;
     }
 
     @Override
     public int hashCode() {
-        int result = (int) (id ^ (id >>> 32));
-        result = 31 * result + (int) (size ^ (size >>> 32));
-        result = 31 * result + (name != null ? name.hashCode() : 0);
-        result = 31 * result + (description != null ? description.hashCode() : 0);
-        result = 31 * result + hash.hashCode();
-        result = 31 * result + chunkHashes.hashCode();
-        result = 31 * result + chunks.hashCode();
+        int result = hashCode;
+        if (result == 0) {
+            result = descriptor.hashCode();
+            result = 31 * result + chunks.hashCode();
+            hashCode = result;
+        }
         return result;
     }
 }
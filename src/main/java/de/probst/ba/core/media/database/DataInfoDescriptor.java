@@ -0,0 +1,789 @@
+package de.probst.ba.core.media.database;
+
+import de.probst.ba.core.util.collections.Tuple2;
+import de.probst.ba.core.util.io.IOUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.WeakHashMap;
+
+/**
+ * The immutable part of a data info which is shared
+ * by all data info states describing the same data.
+ * <p>
+ * Descriptors are interned, so equal descriptors are
+ * usually the same instance and copying a data info
+ * only copies the chunk bitmap.
+ * <p>
+ * A fingerprint of the content and the hash code are
+ * precomputed, so comparisons only fall back to a deep
+ * comparison if two distinct instances look the same,
+ * which only happens for descriptors from other JVMs.
+ * <p>
+ * Chunk hashes which are hex encoded digests of the same
+ * length are packed into a single byte array. The string
+ * representation is only a view on these bytes. Arbitrary
+ * chunk hashes, like generated ones, are stored as they are.
+ * <p>
+ * With a merkle hash, the hash is the root of a hash tree over
+ * the chunk hashes. Such descriptors stay compatible if the chunk
+ * hashes are stripped, because single chunk hashes can be proven
+ * against the root on demand.
+ * <p>
+ * Besides java serialization, descriptors have an explicit
+ * binary form, which is used to persist them.
+ */
+final class DataInfoDescriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // The kinds of chunk hashes in the binary form
+    private static final byte STRIPPED_CHUNK_HASHES = 0;
+    private static final byte PACKED_CHUNK_HASHES = 1;
+    private static final byte PLAIN_CHUNK_HASHES = 2;
+
+    // The kinds of descriptions in the binary form
+    private static final byte NO_DESCRIPTION = 0;
+    private static final byte STRING_DESCRIPTION = 1;
+    private static final byte SERIALIZED_DESCRIPTION = 2;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long fingerprint(long fingerprint, long value) {
+        for (int i = 0; i < Long.BYTES; i++, value >>>= 8) {
+            fingerprint = (fingerprint ^ (value & 0xff)) * FNV_PRIME;
+        }
+        return fingerprint;
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static String hexify(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[b >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static int unhexify(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Packs the given chunk hashes, if all of them are lower case
+     * hex strings of the same length.
+     *
+     * @param chunkHashes
+     * @return The packed chunk hashes or null.
+     */
+    private static byte[] pack(List<String> chunkHashes) {
+        int chunkHashLength = chunkHashes.get(0).length() / 2;
+        if (chunkHashLength == 0) {
+            return null;
+        }
+
+        byte[] packedChunkHashes = new byte[chunkHashes.size() * chunkHashLength];
+        int offset = 0;
+        for (String chunkHash : chunkHashes) {
+            if (chunkHash.length() != chunkHashLength * 2) {
+                return null;
+            }
+            for (int i = 0; i < chunkHash.length(); i += 2) {
+                int high = unhexify(chunkHash.charAt(i)), low = unhexify(chunkHash.charAt(i + 1));
+                if (high < 0 || low < 0) {
+                    return null;
+                }
+                packedChunkHashes[offset++] = (byte) (high << 4 | low);
+            }
+        }
+        return packedChunkHashes;
+    }
+
+    private static long fingerprint(long fingerprint, byte[] value) {
+        for (byte b : value) {
+            fingerprint = (fingerprint ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return fingerprint(fingerprint, value.length);
+    }
+
+    private static long fingerprint(long fingerprint, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            fingerprint = (fingerprint ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return fingerprint(fingerprint, value.length());
+    }
+
+    // All known descriptors, weakly referenced
+    private static final Map<DataInfoDescriptor, WeakReference<DataInfoDescriptor>> descriptors =
+            new WeakHashMap<>();
+
+    /**
+     * Returns the canonical instance of the given descriptor.
+     *
+     * @param descriptor
+     * @return
+     */
+    static DataInfoDescriptor intern(DataInfoDescriptor descriptor) {
+        Objects.requireNonNull(descriptor);
+        synchronized (descriptors) {
+            WeakReference<DataInfoDescriptor> reference = descriptors.get(descriptor);
+            DataInfoDescriptor canonical = reference != null ? reference.get() : null;
+            if (canonical == null) {
+                descriptors.put(descriptor, new WeakReference<>(descriptor));
+                canonical = descriptor;
+            }
+            return canonical;
+        }
+    }
+
+    // The id of this data info
+    private final long id;
+
+    // The total size
+    private final long size;
+
+    // Human readable name of this data
+    private final String name;
+
+    // Human readable description of this data
+    private final Object description;
+
+    // The unique hash
+    private final String hash;
+
+    // Whether or not the hash is a merkle root
+    private final boolean merkleHash;
+
+    // The algorithm of the chunk hashes
+    private final ChunkHashAlgorithm chunkHashAlgorithm;
+
+    // The number of chunks
+    private final int chunkCount;
+
+    // The length of a single packed chunk hash
+    private final int chunkHashLength;
+
+    // The unique chunk hashes, packed
+    // (Null if the chunk hashes could not be packed or are stripped)
+    private final byte[] packedChunkHashes;
+
+    // The unique chunk hashes, as they are
+    // (Null if the chunk hashes are packed or stripped)
+    private final List<String> plainChunkHashes;
+
+    // The usual chunk size
+    // (Calculated with size and chunkCount)
+    private final long chunkSize;
+
+    // The size of the last chunk
+    // (Premature optimization, i know)
+    private final long lastChunkSize;
+
+    // A fingerprint of size, hash and chunk hashes
+    private transient long fingerprint;
+
+    // The cached hash code
+    private transient int hashCode;
+
+    // The hash tree, built lazily for merkle hashes
+    private transient MerkleTree merkleTree;
+
+    // The interned copy without chunk hashes, created lazily
+    private transient DataInfoDescriptor strippedDescriptor;
+
+    private void calculateHashes() {
+        long fingerprint = fingerprint(FNV_OFFSET_BASIS, size);
+        fingerprint = fingerprint(fingerprint, hash);
+        fingerprint = fingerprint(fingerprint, chunkHashAlgorithm.ordinal());
+        if (merkleHash) {
+            // The root already covers the chunk hashes
+            fingerprint = fingerprint(fingerprint, chunkCount);
+        } else if (packedChunkHashes != null) {
+            fingerprint = fingerprint(fingerprint, packedChunkHashes);
+        } else {
+            for (String chunkHash : plainChunkHashes) {
+                fingerprint = fingerprint(fingerprint, chunkHash);
+            }
+        }
+        this.fingerprint = fingerprint;
+
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (int) (size ^ (size >>> 32));
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        result = 31 * result + (description != null ? description.hashCode() : 0);
+        result = 31 * result + hash.hashCode();
+        result = 31 * result + (merkleHash ? 1 : 0);
+        result = 31 * result + chunkHashAlgorithm.hashCode();
+        result = 31 * result + (packedChunkHashes != null ?
+                                Arrays.hashCode(packedChunkHashes) :
+                                Objects.hashCode(plainChunkHashes));
+        hashCode = result;
+    }
+
+    DataInfoDescriptor(long id,
+                       long size,
+                       String name,
+                       Object description,
+                       String hash,
+                       ChunkHashAlgorithm chunkHashAlgorithm,
+                       int chunkHashLength,
+                       byte[] packedChunkHashes) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(chunkHashAlgorithm);
+        Objects.requireNonNull(packedChunkHashes);
+
+        if (size < 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+
+        if (chunkHashLength <= 0) {
+            throw new IllegalArgumentException("chunkHashLength <= 0");
+        }
+
+        if (packedChunkHashes.length == 0 || packedChunkHashes.length % chunkHashLength != 0) {
+            throw new IllegalArgumentException(
+                    "packedChunkHashes.length == 0 || packedChunkHashes.length % chunkHashLength != 0");
+        }
+
+        if (packedChunkHashes.length / chunkHashLength > size) {
+            throw new IllegalArgumentException("packedChunkHashes.length / chunkHashLength > size");
+        }
+
+        this.id = id;
+        this.size = size;
+        this.name = name;
+        this.description = description;
+        this.hash = hash;
+        merkleHash = false;
+        this.chunkHashAlgorithm = chunkHashAlgorithm;
+        this.chunkHashLength = chunkHashLength;
+        this.packedChunkHashes = packedChunkHashes.clone();
+        plainChunkHashes = null;
+        chunkCount = packedChunkHashes.length / chunkHashLength;
+
+        // Calculate chunk sizes
+        Tuple2<Long, Long> chunkSizes = DataInfo.calculatePartitionSizes(size, chunkCount);
+        chunkSize = chunkSizes.first();
+        lastChunkSize = chunkSizes.second();
+
+        calculateHashes();
+    }
+
+    DataInfoDescriptor(long id,
+                       long size,
+                       String name,
+                       Object description,
+                       String hash,
+                       ChunkHashAlgorithm chunkHashAlgorithm,
+                       List<String> chunkHashes) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(chunkHashAlgorithm);
+        Objects.requireNonNull(chunkHashes);
+        chunkHashes.stream().forEach(Objects::requireNonNull);
+
+        if (size < 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+
+        if (chunkHashes.size() == 0) {
+            throw new IllegalArgumentException("chunkHashes.size() == 0");
+        }
+
+        if (chunkHashes.size() > size) {
+            throw new IllegalArgumentException("chunkHashes.size() > size");
+        }
+
+        this.id = id;
+        this.size = size;
+        this.name = name;
+        this.description = description;
+        this.hash = hash;
+        merkleHash = false;
+        this.chunkHashAlgorithm = chunkHashAlgorithm;
+        chunkCount = chunkHashes.size();
+        packedChunkHashes = pack(chunkHashes);
+        if (packedChunkHashes != null) {
+            chunkHashLength = packedChunkHashes.length / chunkCount;
+            plainChunkHashes = null;
+        } else {
+            chunkHashLength = 0;
+            plainChunkHashes = Collections.unmodifiableList(new ArrayList<>(chunkHashes));
+        }
+
+        // Calculate chunk sizes
+        Tuple2<Long, Long> chunkSizes = DataInfo.calculatePartitionSizes(size, chunkHashes.size());
+        chunkSize = chunkSizes.first();
+        lastChunkSize = chunkSizes.second();
+
+        calculateHashes();
+    }
+
+    private DataInfoDescriptor(DataInfoDescriptor descriptor,
+                               String hash,
+                               boolean merkleHash,
+                               boolean keepChunkHashes) {
+        id = descriptor.id;
+        size = descriptor.size;
+        name = descriptor.name;
+        description = descriptor.description;
+        this.hash = hash;
+        this.merkleHash = merkleHash;
+        chunkHashAlgorithm = descriptor.chunkHashAlgorithm;
+        chunkCount = descriptor.chunkCount;
+        chunkHashLength = descriptor.chunkHashLength;
+        packedChunkHashes = keepChunkHashes ? descriptor.packedChunkHashes : null;
+        plainChunkHashes = keepChunkHashes ? descriptor.plainChunkHashes : null;
+        chunkSize = descriptor.chunkSize;
+        lastChunkSize = descriptor.lastChunkSize;
+
+        calculateHashes();
+    }
+
+    private DataInfoDescriptor(long id,
+                               long size,
+                               String name,
+                               Object description,
+                               String hash,
+                               boolean merkleHash,
+                               ChunkHashAlgorithm chunkHashAlgorithm,
+                               int chunkCount,
+                               int chunkHashLength,
+                               byte[] packedChunkHashes,
+                               List<String> plainChunkHashes) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(chunkHashAlgorithm);
+
+        if (size < 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+
+        if (chunkCount <= 0 || chunkCount > size) {
+            throw new IllegalArgumentException("chunkCount <= 0 || chunkCount > size");
+        }
+
+        if (packedChunkHashes != null && packedChunkHashes.length != (long) chunkCount * chunkHashLength) {
+            throw new IllegalArgumentException("packedChunkHashes.length != chunkCount * chunkHashLength");
+        }
+
+        if (plainChunkHashes != null && plainChunkHashes.size() != chunkCount) {
+            throw new IllegalArgumentException("plainChunkHashes.size() != chunkCount");
+        }
+
+        this.id = id;
+        this.size = size;
+        this.name = name;
+        this.description = description;
+        this.hash = hash;
+        this.merkleHash = merkleHash;
+        this.chunkHashAlgorithm = chunkHashAlgorithm;
+        this.chunkCount = chunkCount;
+        this.chunkHashLength = chunkHashLength;
+        this.packedChunkHashes = packedChunkHashes;
+        this.plainChunkHashes = plainChunkHashes != null ? Collections.unmodifiableList(plainChunkHashes) : null;
+
+        // Calculate chunk sizes
+        Tuple2<Long, Long> chunkSizes = DataInfo.calculatePartitionSizes(size, chunkCount);
+        chunkSize = chunkSizes.first();
+        lastChunkSize = chunkSizes.second();
+
+        calculateHashes();
+    }
+
+    /**
+     * Reads an interned descriptor, which was written with write.
+     *
+     * @param dataInput
+     * @return
+     * @throws IOException If the descriptor cannot be decoded.
+     */
+    static DataInfoDescriptor read(DataInput dataInput) throws IOException {
+        long id = dataInput.readLong();
+        long size = dataInput.readLong();
+        String name = dataInput.readBoolean() ? dataInput.readUTF() : null;
+
+        Object description;
+        byte descriptionKind = dataInput.readByte();
+        if (descriptionKind == NO_DESCRIPTION) {
+            description = null;
+        } else if (descriptionKind == STRING_DESCRIPTION) {
+            description = dataInput.readUTF();
+        } else if (descriptionKind == SERIALIZED_DESCRIPTION) {
+            byte[] serializedDescription = new byte[dataInput.readInt()];
+            dataInput.readFully(serializedDescription);
+            try {
+                description = IOUtil.deserialize(serializedDescription);
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        } else {
+            throw new IOException("Unknown description kind: " + descriptionKind);
+        }
+
+        String hash = dataInput.readUTF();
+        boolean merkleHash = dataInput.readBoolean();
+        String chunkHashAlgorithmName = dataInput.readUTF();
+        int chunkCount = dataInput.readInt();
+        int chunkHashLength = dataInput.readInt();
+        if (chunkCount <= 0 || chunkHashLength < 0) {
+            throw new IOException("chunkCount <= 0 || chunkHashLength < 0");
+        }
+
+        byte[] packedChunkHashes = null;
+        List<String> plainChunkHashes = null;
+        byte chunkHashesKind = dataInput.readByte();
+        if (chunkHashesKind == PACKED_CHUNK_HASHES) {
+            packedChunkHashes = new byte[Math.multiplyExact(chunkCount, chunkHashLength)];
+            dataInput.readFully(packedChunkHashes);
+        } else if (chunkHashesKind == PLAIN_CHUNK_HASHES) {
+            plainChunkHashes = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                plainChunkHashes.add(dataInput.readUTF());
+            }
+        } else if (chunkHashesKind != STRIPPED_CHUNK_HASHES) {
+            throw new IOException("Unknown chunk hashes kind: " + chunkHashesKind);
+        }
+
+        try {
+            return intern(new DataInfoDescriptor(id,
+                                                 size,
+                                                 name,
+                                                 description,
+                                                 hash,
+                                                 merkleHash,
+                                                 ChunkHashAlgorithm.valueOf(chunkHashAlgorithmName),
+                                                 chunkCount,
+                                                 chunkHashLength,
+                                                 packedChunkHashes,
+                                                 plainChunkHashes));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes this descriptor in its binary form. Descriptions,
+     * which are not strings, are still java serialized.
+     *
+     * @param dataOutput
+     * @throws IOException
+     */
+    void write(DataOutput dataOutput) throws IOException {
+        dataOutput.writeLong(id);
+        dataOutput.writeLong(size);
+        dataOutput.writeBoolean(name != null);
+        if (name != null) {
+            dataOutput.writeUTF(name);
+        }
+
+        if (description == null) {
+            dataOutput.writeByte(NO_DESCRIPTION);
+        } else if (description instanceof String) {
+            dataOutput.writeByte(STRING_DESCRIPTION);
+            dataOutput.writeUTF((String) description);
+        } else {
+            byte[] serializedDescription = IOUtil.serialize(description);
+            dataOutput.writeByte(SERIALIZED_DESCRIPTION);
+            dataOutput.writeInt(serializedDescription.length);
+            dataOutput.write(serializedDescription);
+        }
+
+        dataOutput.writeUTF(hash);
+        dataOutput.writeBoolean(merkleHash);
+        dataOutput.writeUTF(chunkHashAlgorithm.name());
+        dataOutput.writeInt(chunkCount);
+        dataOutput.writeInt(chunkHashLength);
+        if (packedChunkHashes != null) {
+            dataOutput.writeByte(PACKED_CHUNK_HASHES);
+            dataOutput.write(packedChunkHashes);
+        } else if (plainChunkHashes != null) {
+            dataOutput.writeByte(PLAIN_CHUNK_HASHES);
+            for (String chunkHash : plainChunkHashes) {
+                dataOutput.writeUTF(chunkHash);
+            }
+        } else {
+            dataOutput.writeByte(STRIPPED_CHUNK_HASHES);
+        }
+    }
+
+    private MerkleTree getMerkleTree() {
+        if (!merkleHash) {
+            throw new IllegalStateException("!merkleHash");
+        }
+
+        if (!hasChunkHashes()) {
+            throw new IllegalStateException("!hasChunkHashes()");
+        }
+
+        MerkleTree merkleTree = this.merkleTree;
+        if (merkleTree == null) {
+            this.merkleTree = merkleTree = new MerkleTree(packedChunkHashes, chunkHashLength);
+        }
+        return merkleTree;
+    }
+
+    /**
+     * Creates a descriptor whose hash is the merkle
+     * root of the packed chunk hashes.
+     *
+     * @return
+     */
+    DataInfoDescriptor withMerkleHash() {
+        if (merkleHash) {
+            return this;
+        }
+
+        if (packedChunkHashes == null) {
+            throw new IllegalStateException("packedChunkHashes == null");
+        }
+
+        byte[] root = new MerkleTree(packedChunkHashes, chunkHashLength).getRoot();
+        return new DataInfoDescriptor(this, hexify(root, 0, root.length), true, true);
+    }
+
+    /**
+     * Returns the interned descriptor without chunk hashes.
+     * Only descriptors with merkle hashes can be stripped.
+     *
+     * @return
+     */
+    DataInfoDescriptor withoutChunkHashes() {
+        if (!merkleHash || !hasChunkHashes()) {
+            return this;
+        }
+
+        DataInfoDescriptor strippedDescriptor = this.strippedDescriptor;
+        if (strippedDescriptor == null) {
+            this.strippedDescriptor = strippedDescriptor = intern(new DataInfoDescriptor(this, hash, true, false));
+        }
+        return strippedDescriptor;
+    }
+
+    /**
+     * @param chunkIndex
+     * @return A proof for the hash of the given chunk.
+     */
+    ChunkHashProof getChunkHashProof(int chunkIndex) {
+        MerkleTree merkleTree = getMerkleTree();
+        if (chunkIndex < 0 || chunkIndex >= chunkCount) {
+            throw new IndexOutOfBoundsException("chunkIndex < 0 || chunkIndex >= chunkCount");
+        }
+
+        byte[] chunkHash = new byte[chunkHashLength];
+        System.arraycopy(packedChunkHashes, chunkIndex * chunkHashLength, chunkHash, 0, chunkHashLength);
+        return new ChunkHashProof(chunkIndex, chunkHash, merkleTree.getProof(chunkIndex));
+    }
+
+    /**
+     * @param chunkHashProof
+     * @return True if the chunk hash belongs to the merkle hash,
+     * otherwise false.
+     */
+    boolean verifyChunkHashProof(ChunkHashProof chunkHashProof) {
+        Objects.requireNonNull(chunkHashProof);
+        if (!merkleHash) {
+            throw new IllegalStateException("!merkleHash");
+        }
+
+        return chunkHashProof.getChunkHashBytes().length == chunkHashLength &&
+               MerkleTree.verify(pack(Collections.singletonList(hash)),
+                                 chunkHashProof.getChunkHashBytes(),
+                                 chunkHashProof.getChunkIndex(),
+                                 chunkCount,
+                                 chunkHashProof.getSiblings());
+    }
+
+    /**
+     * @return True if the chunk hashes are known and were
+     * created with the chunk hash algorithm, otherwise false.
+     */
+    boolean canVerifyChunkHashes() {
+        return packedChunkHashes != null && chunkHashLength == chunkHashAlgorithm.getLength();
+    }
+
+    /**
+     * @param chunkIndex
+     * @param chunkHash
+     * @return True if the given hash is the hash of the chunk,
+     * otherwise false.
+     */
+    boolean verifyChunkHash(int chunkIndex, byte[] chunkHash) {
+        Objects.requireNonNull(chunkHash);
+        if (!canVerifyChunkHashes()) {
+            throw new IllegalStateException("!canVerifyChunkHashes()");
+        }
+
+        if (chunkIndex < 0 || chunkIndex >= chunkCount) {
+            throw new IndexOutOfBoundsException("chunkIndex < 0 || chunkIndex >= chunkCount");
+        }
+
+        if (chunkHash.length != chunkHashLength) {
+            return false;
+        }
+
+        // Compare with the packed range
+        int offset = chunkIndex * chunkHashLength, difference = 0;
+        for (int i = 0; i < chunkHashLength; i++) {
+            difference |= packedChunkHashes[offset + i] ^ chunkHash[i];
+        }
+        return difference == 0;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        calculateHashes();
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return intern(this);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Object getDescription() {
+        return description;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    ChunkHashAlgorithm getChunkHashAlgorithm() {
+        return chunkHashAlgorithm;
+    }
+
+    boolean hasMerkleHash() {
+        return merkleHash;
+    }
+
+    boolean hasChunkHashes() {
+        return packedChunkHashes != null || plainChunkHashes != null;
+    }
+
+    List<String> getChunkHashes() {
+        if (!hasChunkHashes()) {
+            throw new IllegalStateException("!hasChunkHashes()");
+        }
+        return packedChunkHashes != null ? new HexView() : plainChunkHashes;
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    long getChunkSize() {
+        return chunkSize;
+    }
+
+    long getLastChunkSize() {
+        return lastChunkSize;
+    }
+
+    /**
+     * Checks whether or not the other descriptor
+     * describes the same content.
+     *
+     * @param other
+     * @return
+     */
+    boolean isCompatibleWith(DataInfoDescriptor other) {
+        if (this == other) return true;
+        if (fingerprint != other.fingerprint) return false;
+        if (other.merkleHash != merkleHash) return false;
+        if (other.chunkHashAlgorithm != chunkHashAlgorithm) return false;
+
+        if (merkleHash) {
+            return other.size == size && other.hash.equals(hash) && other.chunkCount == chunkCount;
+        } else {
+            return other.size == size && other.hash.equals(hash) && hasSameChunkHashes(other);
+        }
+    }
+
+    private boolean hasSameChunkHashes(DataInfoDescriptor other) {
+        if (packedChunkHashes != null && other.packedChunkHashes != null) {
+            return Arrays.equals(packedChunkHashes, other.packedChunkHashes);
+        } else if (packedChunkHashes == null && other.packedChunkHashes == null) {
+            return Objects.equals(plainChunkHashes, other.plainChunkHashes);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DataInfoDescriptor that = (DataInfoDescriptor) o;
+
+        if (hashCode != that.hashCode) return false;
+        if (fingerprint != that.fingerprint) return false;
+        if (id != that.id) return false;
+        if (size != that.size) return false;
+        if (merkleHash != that.merkleHash) return false;
+        if (chunkHashAlgorithm != that.chunkHashAlgorithm) return false;
+        if (!hasSameChunkHashes(that)) return false;
+        if (description != null ? !description.equals(that.description) : that.description != null)
+            return false;
+        if (!hash.equals(that.hash)) return false;
+        if (name != null ? !name.equals(that.name) : that.name != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * A hex string view on the packed chunk hashes.
+     */
+    private final class HexView extends AbstractList<String> implements RandomAccess {
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= chunkCount) {
+                throw new IndexOutOfBoundsException("index < 0 || index >= chunkCount");
+            }
+            return hexify(packedChunkHashes, index * chunkHashLength, chunkHashLength);
+        }
+
+        @Override
+        public int size() {
+            return chunkCount;
+        }
+    }
+}
@@ -1,29 +1,179 @@
 package de.probst.ba.core.media.database;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
 
 /**
  * Created by chrisprobst on 07.10.14.
+ * <p>
+ * The locked regions are stored per hash, as per-chunk
+ * reader counts and a writer bitmap, so locking and unlocking
+ * only touches the chunks of the given data info. The hashes
+ * are striped over multiple monitors, so unrelated data info
+ * can be locked without contention.
  */
 public final class DataInfoRegionRWLock {
 
-    private final List<DataInfo> writeResources = new LinkedList<>();
-    private final List<DataInfo> readResources = new LinkedList<>();
+    // The number of stripes, a power of two
+    private static final int STRIPE_COUNT = 16;
 
-    private boolean overlapsAnyInCollection(Collection<DataInfo> dataInfoCollection, DataInfo dataInfo) {
-        return dataInfoCollection.stream().filter(dataInfo::isCompatibleWith).anyMatch(dataInfo::overlaps);
+    private static final class Region {
+
+        // The data info which created this region
+        private final DataInfo dataInfo;
+
+        // The number of readers per chunk
+        private final int[] readers;
+
+        // The chunks locked for writing
+        private final BitSet writers;
+
+        // The locked data info and how often they are locked
+        private final Map<DataInfo, Integer> readLocks = new HashMap<>();
+        private final Map<DataInfo, Integer> writeLocks = new HashMap<>();
+
+        private Region(DataInfo dataInfo) {
+            this.dataInfo = dataInfo;
+            readers = new int[dataInfo.getChunkCount()];
+            writers = new BitSet(dataInfo.getChunkCount());
+        }
+
+        private boolean isUnlocked() {
+            return readLocks.isEmpty() && writeLocks.isEmpty();
+        }
+
+        private boolean tryLockWrite(DataInfo dataInfo) {
+            for (PrimitiveIterator.OfInt it = dataInfo.getCompletedChunks().iterator(); it.hasNext(); ) {
+                int chunkIndex = it.nextInt();
+                if (readers[chunkIndex] != 0 || writers.get(chunkIndex)) {
+                    return false;
+                }
+            }
+            dataInfo.getCompletedChunks().forEach(writers::set);
+            writeLocks.merge(dataInfo, 1, Integer::sum);
+            return true;
+        }
+
+        private boolean tryUnlockWrite(DataInfo dataInfo) {
+            if (!release(writeLocks, dataInfo)) {
+                return false;
+            }
+            dataInfo.getCompletedChunks().forEach(writers::clear);
+            return true;
+        }
+
+        private boolean tryLockRead(DataInfo dataInfo) {
+            for (PrimitiveIterator.OfInt it = dataInfo.getCompletedChunks().iterator(); it.hasNext(); ) {
+                if (writers.get(it.nextInt())) {
+                    return false;
+                }
+            }
+            dataInfo.getCompletedChunks().forEach(chunkIndex -> readers[chunkIndex]++);
+            readLocks.merge(dataInfo, 1, Integer::sum);
+            return true;
+        }
+
+        private boolean tryUnlockRead(DataInfo dataInfo) {
+            if (!release(readLocks, dataInfo)) {
+                return false;
+            }
+            dataInfo.getCompletedChunks().forEach(chunkIndex -> readers[chunkIndex]--);
+            return true;
+        }
+
+        private static boolean release(Map<DataInfo, Integer> locks, DataInfo dataInfo) {
+            Integer count = locks.get(dataInfo);
+            if (count == null) {
+                return false;
+            } else if (count == 1) {
+                locks.remove(dataInfo);
+            } else {
+                locks.put(dataInfo, count - 1);
+            }
+            return true;
+        }
+
+        private static void collect(Map<DataInfo, Integer> locks, List<DataInfo> regions) {
+            locks.forEach((dataInfo, count) -> regions.addAll(Collections.nCopies(count, dataInfo)));
+        }
     }
 
-    public synchronized List<DataInfo> getLockedWriteRegions() {
-        return Collections.unmodifiableList(new ArrayList<>(writeResources));
+    // The regions by hash, striped
+    private final List<Map<String, Region>> stripes = new ArrayList<>(STRIPE_COUNT);
+
+    private Map<String, Region> getStripe(DataInfo dataInfo) {
+        int hashCode = dataInfo.getHash().hashCode();
+        return stripes.get((hashCode ^ (hashCode >>> 16)) & (STRIPE_COUNT - 1));
     }
 
-    public synchronized List<DataInfo> getLockedReadRegions() {
-        return Collections.unmodifiableList(new ArrayList<>(readResources));
+    private Region getRegion(Map<String, Region> stripe, DataInfo dataInfo) {
+        Region region = stripe.computeIfAbsent(dataInfo.getHash(), hash -> new Region(dataInfo));
+        if (!region.dataInfo.isCompatibleWith(dataInfo)) {
+            throw new IllegalArgumentException("!region.dataInfo.isCompatibleWith(dataInfo)");
+        }
+        return region;
+    }
+
+    private List<DataInfo> getLockedRegions(boolean write) {
+        List<DataInfo> regions = new ArrayList<>();
+        for (Map<String, Region> stripe : stripes) {
+            synchronized (stripe) {
+                for (Region region : stripe.values()) {
+                    Region.collect(write ? region.writeLocks : region.readLocks, regions);
+                }
+            }
+        }
+        return Collections.unmodifiableList(regions);
+    }
+
+    private boolean tryLock(DataInfo dataInfo, boolean write) {
+        Objects.requireNonNull(dataInfo);
+        Map<String, Region> stripe = getStripe(dataInfo);
+        synchronized (stripe) {
+            Region region = getRegion(stripe, dataInfo);
+            boolean locked = write ? region.tryLockWrite(dataInfo) : region.tryLockRead(dataInfo);
+            if (!locked && region.isUnlocked()) {
+                stripe.remove(dataInfo.getHash());
+            }
+            return locked;
+        }
+    }
+
+    private boolean tryUnlock(DataInfo dataInfo, boolean write) {
+        Objects.requireNonNull(dataInfo);
+        Map<String, Region> stripe = getStripe(dataInfo);
+        synchronized (stripe) {
+            Region region = stripe.get(dataInfo.getHash());
+            if (region == null) {
+                return false;
+            }
+
+            boolean unlocked = write ? region.tryUnlockWrite(dataInfo) : region.tryUnlockRead(dataInfo);
+            if (region.isUnlocked()) {
+                stripe.remove(dataInfo.getHash());
+            }
+            return unlocked;
+        }
+    }
+
+    public DataInfoRegionRWLock() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes.add(new HashMap<>());
+        }
+    }
+
+    public List<DataInfo> getLockedWriteRegions() {
+        return getLockedRegions(true);
+    }
+
+    public List<DataInfo> getLockedReadRegions() {
+        return getLockedRegions(false);
     }
 
     public void lockWriteResource(DataInfo dataInfo) {
@@ -32,16 +182,12 @@ public final class DataInfoRegionRWLock {
         }
     }
 
-    public synchronized boolean tryLockWriteResource(DataInfo dataInfo) {
-        if (overlapsAnyInCollection(writeResources, dataInfo) || overlapsAnyInCollection(readResources, dataInfo)) {
-            return false;
-        }
-        writeResources.add(dataInfo);
-        return true;
+    public boolean tryLockWriteResource(DataInfo dataInfo) {
+        return tryLock(dataInfo, true);
     }
 
-    public synchronized boolean tryUnlockWriteResource(DataInfo dataInfo) {
-        return writeResources.remove(dataInfo);
+    public boolean tryUnlockWriteResource(DataInfo dataInfo) {
+        return tryUnlock(dataInfo, true);
     }
 
     public void unlockWriteResource(DataInfo dataInfo) {
@@ -56,16 +202,12 @@ public final class DataInfoRegionRWLock {
         }
     }
 
-    public synchronized boolean tryLockReadResource(DataInfo dataInfo) {
-        if (overlapsAnyInCollection(writeResources, dataInfo)) {
-            return false;
-        }
-        readResources.add(dataInfo);
-        return true;
+    public boolean tryLockReadResource(DataInfo dataInfo) {
+        return tryLock(dataInfo, false);
     }
 
-    public synchronized boolean tryUnlockReadResource(DataInfo dataInfo) {
-        return readResources.remove(dataInfo);
+    public boolean tryUnlockReadResource(DataInfo dataInfo) {
+        return tryUnlock(dataInfo, false);
     }
 
     public void unlockReadResource(DataInfo dataInfo) {
@@ -0,0 +1,143 @@
+package de.probst.ba.core.media.database;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A binary hash tree over packed chunk hashes.
+ * <p>
+ * Inner nodes are the digest of a prefix byte and their
+ * children. A node without a sibling is hashed alone, so
+ * the shape of the tree only depends on the number of
+ * leaves and all inner nodes have the same length, no
+ * matter which algorithm was used for the chunk hashes.
+ */
+final class MerkleTree {
+
+    // Separates inner nodes from leaves
+    private static final byte NODE_PREFIX = 1;
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DataInfo.DEFAULT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verifies that the leaf at the given index, together
+     * with the sibling hashes, yields the given root.
+     *
+     * @param root
+     * @param leaf
+     * @param leafIndex
+     * @param leafCount
+     * @param siblings
+     * @return True if the proof is valid, otherwise false.
+     */
+    static boolean verify(byte[] root, byte[] leaf, int leafIndex, int leafCount, byte[][] siblings) {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(leaf);
+        Objects.requireNonNull(siblings);
+
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            return false;
+        }
+
+        MessageDigest digest = newDigest();
+        byte[] node = leaf;
+        int index = leafIndex, count = leafCount, used = 0;
+        while (count > 1) {
+            digest.update(NODE_PREFIX);
+            if ((index ^ 1) < count) {
+                if (used == siblings.length || siblings[used] == null) {
+                    return false;
+                }
+                byte[] sibling = siblings[used++];
+                digest.update((index & 1) == 0 ? node : sibling);
+                digest.update((index & 1) == 0 ? sibling : node);
+            } else {
+                digest.update(node);
+            }
+            node = digest.digest();
+            index >>>= 1;
+            count = (count + 1) >>> 1;
+        }
+        return used == siblings.length && MessageDigest.isEqual(node, root);
+    }
+
+    // The number of leaves
+    private final int leafCount;
+
+    // All levels of the tree, packed, starting with the leaves
+    private final List<byte[]> levels = new ArrayList<>();
+
+    // The length of a single node hash of each level
+    private final List<Integer> hashLengths = new ArrayList<>();
+
+    MerkleTree(byte[] packedLeaves, int leafLength) {
+        Objects.requireNonNull(packedLeaves);
+
+        if (leafLength <= 0) {
+            throw new IllegalArgumentException("leafLength <= 0");
+        }
+
+        if (packedLeaves.length == 0 || packedLeaves.length % leafLength != 0) {
+            throw new IllegalArgumentException("packedLeaves.length == 0 || packedLeaves.length % leafLength != 0");
+        }
+
+        MessageDigest digest = newDigest();
+        int nodeLength = digest.getDigestLength();
+        leafCount = packedLeaves.length / leafLength;
+
+        byte[] level = packedLeaves;
+        int length = leafLength;
+        levels.add(level);
+        hashLengths.add(length);
+        for (int count = leafCount; count > 1; count = (count + 1) >>> 1) {
+            byte[] parents = new byte[((count + 1) >>> 1) * nodeLength];
+            for (int i = 0; i < count; i += 2) {
+                digest.update(NODE_PREFIX);
+                digest.update(level, i * length, i + 1 < count ? length * 2 : length);
+                System.arraycopy(digest.digest(), 0, parents, (i >>> 1) * nodeLength, nodeLength);
+            }
+            levels.add(level = parents);
+            hashLengths.add(length = nodeLength);
+        }
+    }
+
+    /**
+     * @return The root hash.
+     */
+    byte[] getRoot() {
+        return levels.get(levels.size() - 1).clone();
+    }
+
+    /**
+     * @param leafIndex
+     * @return The sibling hashes from the leaf up to the root.
+     */
+    byte[][] getProof(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            throw new IndexOutOfBoundsException("leafIndex < 0 || leafIndex >= leafCount");
+        }
+
+        List<byte[]> siblings = new ArrayList<>(levels.size());
+        int index = leafIndex;
+        for (int i = 0; i < levels.size(); i++) {
+            byte[] level = levels.get(i);
+            int length = hashLengths.get(i), sibling = index ^ 1;
+            if (sibling < level.length / length) {
+                byte[] hash = new byte[length];
+                System.arraycopy(level, sibling * length, hash, 0, length);
+                siblings.add(hash);
+            }
+            index >>>= 1;
+        }
+        return siblings.toArray(new byte[siblings.size()][]);
+    }
+}
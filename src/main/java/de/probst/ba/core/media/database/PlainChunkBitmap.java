@@ -0,0 +1,178 @@
+package de.probst.ba.core.media.database;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * A chunk bitmap backed by a plain bit set.
+ * <p>
+ * The cardinality and the rank index are cached
+ * until the bitmap is modified.
+ */
+final class PlainChunkBitmap extends ChunkBitmap {
+
+    private static final long serialVersionUID = 1L;
+
+    private static BitSet toBitSet(ChunkBitmap chunkBitmap) {
+        return chunkBitmap instanceof PlainChunkBitmap ?
+               ((PlainChunkBitmap) chunkBitmap).chunks :
+               BitSet.valueOf(chunkBitmap.toLongArray());
+    }
+
+    // Here we store whether or not
+    // a chunk is completed
+    private final BitSet chunks;
+
+    // The cached cardinality plus one
+    // (Zero if not counted yet)
+    private transient int cardinality;
+
+    // The rank index, calculated lazily
+    private transient ChunkRankIndex chunkRankIndex;
+
+    private ChunkRankIndex getChunkRankIndex() {
+        ChunkRankIndex chunkRankIndex = this.chunkRankIndex;
+        if (chunkRankIndex == null) {
+            this.chunkRankIndex = chunkRankIndex = new ChunkRankIndex(chunks);
+        }
+        return chunkRankIndex;
+    }
+
+    private void modified() {
+        cardinality = 0;
+        chunkRankIndex = null;
+    }
+
+    private PlainChunkBitmap(int chunkCount, BitSet chunks) {
+        super(chunkCount);
+        this.chunks = chunks;
+    }
+
+    PlainChunkBitmap(int chunkCount) {
+        this(chunkCount, new BitSet(chunkCount));
+    }
+
+    PlainChunkBitmap(int chunkCount, long[] words) {
+        this(chunkCount, BitSet.valueOf(words));
+    }
+
+    @Override
+    boolean isCompressed() {
+        return false;
+    }
+
+    @Override
+    ChunkBitmap copy() {
+        return new PlainChunkBitmap(getChunkCount(), (BitSet) chunks.clone());
+    }
+
+    @Override
+    long[] toLongArray() {
+        return chunks.toLongArray();
+    }
+
+    @Override
+    boolean get(int index) {
+        return chunks.get(index);
+    }
+
+    @Override
+    void set(int index, boolean value) {
+        if (chunks.get(index) != value) {
+            chunks.set(index, value);
+
+            // Keep the cardinality if already counted
+            int cardinality = this.cardinality;
+            modified();
+            if (cardinality != 0) {
+                this.cardinality = cardinality + (value ? 1 : -1);
+            }
+        }
+    }
+
+    @Override
+    void set(int fromIndex, int toIndex) {
+        chunks.set(fromIndex, toIndex);
+        modified();
+    }
+
+    @Override
+    void flip() {
+        chunks.flip(0, getChunkCount());
+        modified();
+    }
+
+    @Override
+    void or(ChunkBitmap other) {
+        chunks.or(toBitSet(other));
+        modified();
+    }
+
+    @Override
+    void and(ChunkBitmap other) {
+        chunks.and(toBitSet(other));
+        modified();
+    }
+
+    @Override
+    void andNot(ChunkBitmap other) {
+        chunks.andNot(toBitSet(other));
+        modified();
+    }
+
+    @Override
+    int cardinality() {
+        ChunkRankIndex chunkRankIndex = this.chunkRankIndex;
+        if (chunkRankIndex != null) {
+            return chunkRankIndex.cardinality();
+        }
+
+        int cardinality = this.cardinality;
+        if (cardinality == 0) {
+            this.cardinality = cardinality = chunks.cardinality() + 1;
+        }
+        return cardinality - 1;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    @Override
+    IntStream stream() {
+        return chunks.stream();
+    }
+
+    @Override
+    int rank(int index) {
+        return getChunkRankIndex().rank(index);
+    }
+
+    @Override
+    int select(int rank) {
+        return getChunkRankIndex().select(rank);
+    }
+
+    @Override
+    boolean hasSameChunks(ChunkBitmap other) {
+        return chunks.equals(((PlainChunkBitmap) other).chunks);
+    }
+
+    @Override
+    public int hashCode() {
+        long[] words = chunks.toLongArray();
+        int result = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != 0) {
+                result += hashWord(i, words[i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return chunks.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package de.probst.ba.core.media.database.databases;
 
+import de.probst.ba.core.media.database.ChunkHashProof;
 import de.probst.ba.core.media.database.DataBase;
 import de.probst.ba.core.media.database.DataBaseReadChannel;
 import de.probst.ba.core.media.database.DataBaseWriteChannel;
@@ -8,35 +9,176 @@ import de.probst.ba.core.media.database.DataInfoRegionRWLock;
 import de.probst.ba.core.media.database.DataInsertException;
 import de.probst.ba.core.media.database.DataLookupException;
 import de.probst.ba.core.net.peer.Seeder;
+import de.probst.ba.core.util.FunctionThatThrows;
 import de.probst.ba.core.util.collections.Tuple;
 import de.probst.ba.core.util.io.IOUtil;
 
 import java.io.IOException;
 import java.nio.channels.Channel;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
  * Created by chrisprobst on 15.08.14.
+ * <p>
+ * The data info are published as immutable, versioned snapshots
+ * through a volatile reference. Modifications copy the snapshot
+ * under the monitor of this data base, while readers never block.
+ * <p>
+ * Every snapshot indexes the named data info by name and id,
+ * so the partitions of a name are found without a scan.
+ * <p>
+ * Merged chunks of a merkle hash without chunk hashes keep
+ * their proven chunk hashes, so they can be passed on.
+ * <p>
+ * Slow work after a merge, like forcing a journal, runs
+ * outside of the monitor, so it never blocks other peers.
  */
 public abstract class AbstractDataBase implements DataBase {
 
-    private final Map<String, DataInfo> dataInfo = new HashMap<>();
+    private static final NavigableMap<Long, DataInfo> EMPTY_PARTITIONS =
+            Collections.unmodifiableNavigableMap(new TreeMap<>());
+
+    private static final class Snapshot {
+
+        // The version of this snapshot
+        private final long version;
+
+        // All data info, including empty ones
+        private final Map<String, DataInfo> dataInfo;
+
+        // All non-empty data info
+        private final Map<String, DataInfo> nonEmptyDataInfo;
+
+        // All named non-empty data info by name and id
+        private final Map<String, NavigableMap<Long, DataInfo>> partitions;
+
+        private Snapshot(long version,
+                         Map<String, DataInfo> dataInfo,
+                         Map<String, DataInfo> nonEmptyDataInfo,
+                         Map<String, NavigableMap<Long, DataInfo>> partitions) {
+            this.version = version;
+            this.dataInfo = dataInfo;
+            this.nonEmptyDataInfo = nonEmptyDataInfo;
+            this.partitions = partitions;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(0,
+                                                      Collections.emptyMap(),
+                                                      Collections.emptyMap(),
+                                                      Collections.emptyMap());
     private final DataInfoRegionRWLock dataInfoRegionRWLock = new DataInfoRegionRWLock();
     private final Map<DataInfo, AbstractDataBaseWriteChannel> writeChannels = new HashMap<>();
     private final Map<DataInfo, AbstractDataBaseReadChannel> readChannels = new HashMap<>();
     private final boolean allowOverwrite;
+
+    // The proven chunk hashes of merged chunks by hash,
+    // only kept if the chunk hashes are unknown
+    private final Map<String, Map<Integer, ChunkHashProof>> chunkHashProofs = new HashMap<>();
+
     private boolean closed;
     private boolean closing;
 
-    synchronized final DataInfo merge(DataInfo mergeDataInfo) {
-        return dataInfo.merge(mergeDataInfo.getHash(), mergeDataInfo, DataInfo::union);
+    private void publish(DataInfo newDataInfo) {
+        Snapshot snapshot = this.snapshot;
+        String hash = newDataInfo.getHash();
+
+        Map<String, DataInfo> dataInfo = new HashMap<>(snapshot.dataInfo);
+        dataInfo.put(hash, newDataInfo);
+
+        // Only a changed non-empty data info creates a new version
+        Map<String, DataInfo> nonEmptyDataInfo = snapshot.nonEmptyDataInfo;
+        Map<String, NavigableMap<Long, DataInfo>> partitions = snapshot.partitions;
+        long version = snapshot.version;
+        if (!newDataInfo.equals(nonEmptyDataInfo.get(hash)) && !newDataInfo.isEmpty()) {
+            nonEmptyDataInfo = new HashMap<>(nonEmptyDataInfo);
+            nonEmptyDataInfo.put(hash, newDataInfo);
+            nonEmptyDataInfo = Collections.unmodifiableMap(nonEmptyDataInfo);
+            version++;
+
+            // Only the partitions with the same name are copied
+            if (newDataInfo.getName().isPresent()) {
+                String name = newDataInfo.getName().get();
+                NavigableMap<Long, DataInfo> namePartitions = new TreeMap<>(partitions.getOrDefault(name,
+                                                                                                    EMPTY_PARTITIONS));
+                namePartitions.put(newDataInfo.getId(), newDataInfo);
+
+                partitions = new HashMap<>(partitions);
+                partitions.put(name, Collections.unmodifiableNavigableMap(namePartitions));
+                partitions = Collections.unmodifiableMap(partitions);
+            }
+        }
+
+        this.snapshot = new Snapshot(version, Collections.unmodifiableMap(dataInfo), nonEmptyDataInfo, partitions);
+    }
+
+    private void keepChunkHashProofs(String hash, Collection<ChunkHashProof> keepChunkHashProofs) {
+        Map<Integer, ChunkHashProof> hashChunkHashProofs = chunkHashProofs.computeIfAbsent(hash, h -> new HashMap<>());
+        for (ChunkHashProof chunkHashProof : keepChunkHashProofs) {
+            hashChunkHashProofs.put(chunkHashProof.getChunkIndex(), chunkHashProof);
+        }
+    }
+
+    private synchronized DataInfo publishMerge(DataInfo mergeDataInfo,
+                                               Collection<ChunkHashProof> mergeChunkHashProofs)
+            throws IOException {
+        DataInfo existingDataInfo = snapshot.dataInfo.get(mergeDataInfo.getHash());
+        DataInfo mergedDataInfo = existingDataInfo != null ?
+                                  existingDataInfo.union(mergeDataInfo) :
+                                  mergeDataInfo;
+
+        // Proofs are only needed, if the chunk hashes are unknown
+        boolean keepChunkHashProofs = !mergeChunkHashProofs.isEmpty() && !mergedDataInfo.hasChunkHashes();
+        if (keepChunkHashProofs) {
+            doMergeChunkHashProofs(mergeDataInfo.getHash(), mergeChunkHashProofs);
+        }
+        doMerge(mergeDataInfo, mergedDataInfo);
+        if (keepChunkHashProofs) {
+            keepChunkHashProofs(mergeDataInfo.getHash(), mergeChunkHashProofs);
+        }
+        publish(mergedDataInfo);
+        return mergedDataInfo;
+    }
+
+    final DataInfo merge(DataInfo mergeDataInfo,
+                         Collection<ChunkHashProof> mergeChunkHashProofs) throws IOException {
+        DataInfo mergedDataInfo = publishMerge(mergeDataInfo, mergeChunkHashProofs);
+        doMerged();
+        return mergedDataInfo;
+    }
+
+    /**
+     * Restores data info, which were merged before this
+     * data base was opened.
+     *
+     * @param restoreDataInfo
+     */
+    protected synchronized final void restore(DataInfo restoreDataInfo) {
+        Objects.requireNonNull(restoreDataInfo);
+        publish(restoreDataInfo);
+    }
+
+    /**
+     * Restores proven chunk hashes, which were merged
+     * before this data base was opened.
+     *
+     * @param hash
+     * @param restoreChunkHashProofs
+     */
+    protected synchronized final void restore(String hash, Collection<ChunkHashProof> restoreChunkHashProofs) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(restoreChunkHashProofs);
+        keepChunkHashProofs(hash, restoreChunkHashProofs);
     }
 
     synchronized final void unregisterChannel(Channel channel, DataInfo channelDataInfo) {
@@ -63,23 +205,71 @@ public abstract class AbstractDataBase implements DataBase {
 
     protected abstract AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException;
 
+    /**
+     * Called before the merged data info is published.
+     * If this method fails, the chunks are not merged.
+     *
+     * @param mergeDataInfo
+     * @param mergedDataInfo
+     * @throws IOException
+     */
+    protected void doMerge(DataInfo mergeDataInfo, DataInfo mergedDataInfo) throws IOException {
+    }
+
+    /**
+     * Called before the chunks, which were proven by the given
+     * proofs, are merged. If this method fails, the chunks
+     * are not merged.
+     *
+     * @param hash
+     * @param mergeChunkHashProofs
+     * @throws IOException
+     */
+    protected void doMergeChunkHashProofs(String hash,
+                                          Collection<ChunkHashProof> mergeChunkHashProofs) throws IOException {
+    }
+
+    /**
+     * Called after merged chunks were published, without holding
+     * the monitor of this data base. If this method fails, the
+     * chunks are merged already, but might not be durable.
+     *
+     * @throws IOException
+     */
+    protected void doMerged() throws IOException {
+    }
+
     protected void doClose() throws IOException {
     }
 
+    /**
+     * Called by deduplicate to find the missing chunks,
+     * which are already stored under other data info.
+     *
+     * @param missingDataInfo
+     * @return The stored chunks of the missing data info.
+     * @throws IOException
+     */
+    protected DataInfo doFindStoredChunks(DataInfo missingDataInfo) throws IOException {
+        return missingDataInfo.empty();
+    }
+
     public AbstractDataBase(boolean allowOverwrite) {
         this.allowOverwrite = allowOverwrite;
     }
 
     @Override
-    public synchronized final Map<String, DataInfo> getDataInfo() {
-        return Collections.unmodifiableMap(dataInfo.entrySet()
-                                                   .stream()
-                                                   .filter(p -> !p.getValue().isEmpty())
-                                                   .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    public final Map<String, DataInfo> getDataInfo() {
+        return snapshot.nonEmptyDataInfo;
     }
 
     @Override
-    public synchronized final Map<String, DataInfo> getEstimatedDataInfo() {
+    public final long getVersion() {
+        return snapshot.version;
+    }
+
+    @Override
+    public final Map<String, DataInfo> getEstimatedDataInfo() {
         // Create a map of all locked write regions
         Map<String, DataInfo> regions = dataInfoRegionRWLock.getLockedWriteRegions()
                                                             .stream()
@@ -104,9 +294,28 @@ public abstract class AbstractDataBase implements DataBase {
     }
 
     @Override
-    public synchronized final DataInfo get(String hash) {
+    public final DataInfo get(String hash) {
         Objects.requireNonNull(hash);
-        return dataInfo.get(hash);
+        return snapshot.dataInfo.get(hash);
+    }
+
+    @Override
+    public synchronized final Optional<ChunkHashProof> getChunkHashProof(String hash, int chunkIndex) {
+        Optional<ChunkHashProof> chunkHashProof = DataBase.super.getChunkHashProof(hash, chunkIndex);
+        if (chunkHashProof.isPresent()) {
+            return chunkHashProof;
+        }
+
+        Map<Integer, ChunkHashProof> hashChunkHashProofs = chunkHashProofs.get(hash);
+        return hashChunkHashProofs != null ?
+               Optional.ofNullable(hashChunkHashProofs.get(chunkIndex)) :
+               Optional.empty();
+    }
+
+    @Override
+    public final NavigableMap<Long, DataInfo> getPartitions(String name) {
+        Objects.requireNonNull(name);
+        return snapshot.partitions.getOrDefault(name, EMPTY_PARTITIONS);
     }
 
 
@@ -114,7 +323,7 @@ public abstract class AbstractDataBase implements DataBase {
     public synchronized final Optional<DataBaseReadChannel> lookup(DataInfo readDataInfo) throws IOException {
         Objects.requireNonNull(readDataInfo);
 
-        DataInfo existingDataInfo = dataInfo.get(readDataInfo.getHash());
+        DataInfo existingDataInfo = snapshot.dataInfo.get(readDataInfo.getHash());
 
         if (existingDataInfo == null) {
             throw new DataLookupException("existingDataInfo == null");
@@ -142,10 +351,10 @@ public abstract class AbstractDataBase implements DataBase {
             throw new DataInsertException("writeDataInfo.isEmpty()");
         }
 
-        DataInfo existingDataInfo = dataInfo.get(writeDataInfo.getHash());
+        DataInfo existingDataInfo = snapshot.dataInfo.get(writeDataInfo.getHash());
         if (existingDataInfo == null) {
             // The write data info does not exist, lets add it!
-            dataInfo.put(writeDataInfo.getHash(), writeDataInfo.empty());
+            publish(writeDataInfo.empty());
             dataInfoRegionRWLock.lockWriteResource(writeDataInfo);
         } else if (existingDataInfo.overlaps(writeDataInfo) && !allowOverwrite) {
             throw new DataInsertException("existingDataInfo.overlaps(writeDataInfo) && !allowOverwrite");
@@ -164,6 +373,185 @@ public abstract class AbstractDataBase implements DataBase {
         }
     }
 
+    /**
+     * Opens a channel for every locked region. If one channel cannot
+     * be opened, the opened channels are closed and the remaining
+     * regions are unlocked again.
+     *
+     * @param lockedDataInfo
+     * @param channels
+     * @param openChannel
+     * @param write
+     * @param <C>
+     * @return The opened channels in the same order.
+     * @throws IOException
+     */
+    private <C extends AbstractDataBaseChannel> List<C> openChannels(
+            List<DataInfo> lockedDataInfo,
+            Map<DataInfo, C> channels,
+            FunctionThatThrows<DataInfo, C, IOException> openChannel,
+            boolean write) throws IOException {
+        List<C> openedChannels = new ArrayList<>(lockedDataInfo.size());
+        try {
+            for (DataInfo dataInfo : lockedDataInfo) {
+                C channel = openChannel.apply(dataInfo);
+                channels.put(dataInfo, channel);
+                openedChannels.add(channel);
+            }
+            return openedChannels;
+        } catch (IOException | RuntimeException e) {
+            unlockRegions(lockedDataInfo.subList(openedChannels.size(), lockedDataInfo.size()), write);
+            throw IOUtil.closeAllAndGetException(openedChannels, e);
+        }
+    }
+
+    /**
+     * Locks the regions of all given data info or none.
+     *
+     * @param dataInfo
+     * @param write
+     * @return The locked data info or empty, if any region is locked already.
+     */
+    private Optional<List<DataInfo>> lockRegions(List<DataInfo> dataInfo, boolean write) {
+        List<DataInfo> lockedDataInfo = new ArrayList<>(dataInfo.size());
+        try {
+            for (DataInfo lockDataInfo : dataInfo) {
+                boolean locked = write ?
+                                 dataInfoRegionRWLock.tryLockWriteResource(lockDataInfo) :
+                                 dataInfoRegionRWLock.tryLockReadResource(lockDataInfo);
+                if (!locked) {
+                    unlockRegions(lockedDataInfo, write);
+                    return Optional.empty();
+                }
+                lockedDataInfo.add(lockDataInfo);
+            }
+            return Optional.of(lockedDataInfo);
+        } catch (RuntimeException e) {
+            // E.g. incompatible data info with the same hash
+            unlockRegions(lockedDataInfo, write);
+            throw e;
+        }
+    }
+
+    private void unlockRegions(List<DataInfo> lockedDataInfo, boolean write) {
+        for (DataInfo dataInfo : lockedDataInfo) {
+            if (write) {
+                dataInfoRegionRWLock.unlockWriteResource(dataInfo);
+            } else {
+                dataInfoRegionRWLock.unlockReadResource(dataInfo);
+            }
+        }
+    }
+
+    /**
+     * Validates all data info first and then locks all regions at
+     * once, so either all channels are opened or none is.
+     */
+    @Override
+    public synchronized final Optional<List<DataBaseReadChannel>> lookupMany(List<DataInfo> lookupDataInfo)
+            throws IOException {
+        Objects.requireNonNull(lookupDataInfo);
+
+        Snapshot snapshot = this.snapshot;
+        for (DataInfo readDataInfo : lookupDataInfo) {
+            Objects.requireNonNull(readDataInfo);
+            DataInfo existingDataInfo = snapshot.dataInfo.get(readDataInfo.getHash());
+            if (existingDataInfo == null) {
+                throw new DataLookupException("existingDataInfo == null");
+            } else if (!existingDataInfo.contains(readDataInfo)) {
+                throw new DataLookupException("!existingDataInfo.contains(readDataInfo)");
+            }
+        }
+
+        Optional<List<DataInfo>> lockedDataInfo = lockRegions(lookupDataInfo, false);
+        if (!lockedDataInfo.isPresent()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ArrayList<>(openChannels(lockedDataInfo.get(),
+                                                        readChannels,
+                                                        this::openReadChannel,
+                                                        false)));
+    }
+
+    /**
+     * Validates all data info first and then locks all regions at
+     * once, so either all channels are opened or none is.
+     */
+    @Override
+    public synchronized final Optional<List<DataBaseWriteChannel>> insertMany(List<DataInfo> dataInfo)
+            throws IOException {
+        Objects.requireNonNull(dataInfo);
+
+        Snapshot snapshot = this.snapshot;
+        for (DataInfo writeDataInfo : dataInfo) {
+            Objects.requireNonNull(writeDataInfo);
+            if (writeDataInfo.isEmpty()) {
+                throw new DataInsertException("writeDataInfo.isEmpty()");
+            }
+
+            DataInfo existingDataInfo = snapshot.dataInfo.get(writeDataInfo.getHash());
+            if (existingDataInfo != null && existingDataInfo.overlaps(writeDataInfo) && !allowOverwrite) {
+                throw new DataInsertException("existingDataInfo.overlaps(writeDataInfo) && !allowOverwrite");
+            }
+        }
+
+        Optional<List<DataInfo>> lockedDataInfo = lockRegions(dataInfo, true);
+        if (!lockedDataInfo.isPresent()) {
+            return Optional.empty();
+        }
+
+        // The data info, which do not exist yet, are added
+        for (DataInfo writeDataInfo : dataInfo) {
+            if (!this.snapshot.dataInfo.containsKey(writeDataInfo.getHash())) {
+                publish(writeDataInfo.empty());
+            }
+        }
+
+        return Optional.of(new ArrayList<>(openChannels(lockedDataInfo.get(),
+                                                        writeChannels,
+                                                        this::openWriteChannel,
+                                                        true)));
+    }
+
+    private synchronized DataInfo mergeStoredChunks(DataInfo dataInfo) throws IOException {
+        if (!supportsDeduplication() || closing || closed) {
+            return dataInfo.empty();
+        }
+
+        DataInfo existingDataInfo = snapshot.dataInfo.get(dataInfo.getHash());
+        if (existingDataInfo != null && !existingDataInfo.isCompatibleWith(dataInfo)) {
+            return dataInfo.empty();
+        }
+
+        DataInfo missingDataInfo = existingDataInfo != null ? dataInfo.subtract(existingDataInfo) : dataInfo;
+        if (missingDataInfo.isEmpty()) {
+            return missingDataInfo;
+        }
+
+        DataInfo storedDataInfo = doFindStoredChunks(missingDataInfo);
+        if (storedDataInfo.isEmpty() || !dataInfoRegionRWLock.tryLockWriteResource(storedDataInfo)) {
+            return dataInfo.empty();
+        }
+
+        try {
+            publishMerge(storedDataInfo, Collections.emptyList());
+            return storedDataInfo;
+        } finally {
+            dataInfoRegionRWLock.unlockWriteResource(storedDataInfo);
+        }
+    }
+
+    @Override
+    public final DataInfo deduplicate(DataInfo dataInfo) throws IOException {
+        Objects.requireNonNull(dataInfo);
+        DataInfo storedDataInfo = mergeStoredChunks(dataInfo);
+        if (!storedDataInfo.isEmpty()) {
+            doMerged();
+        }
+        return storedDataInfo;
+    }
+
     @Override
     public final void close() throws IOException {
         try {
@@ -18,7 +18,9 @@ public abstract class AbstractDataBaseChannel implements DataBaseChannel {
     private final DataInfo dataInfo;
     private final long total;
     private long position;
-    private boolean closed;
+
+    // Volatile, so positional reads can check it without locking
+    private volatile boolean closed;
 
     protected final void checkClosed() throws ClosedChannelException {
         if (closed) {
@@ -57,7 +59,7 @@ public abstract class AbstractDataBaseChannel implements DataBaseChannel {
     }
 
     @Override
-    public synchronized final long size() throws IOException {
+    public final long size() throws IOException {
         checkClosed();
         return total;
     }
@@ -81,7 +83,7 @@ public abstract class AbstractDataBaseChannel implements DataBaseChannel {
     }
 
     @Override
-    public synchronized final boolean isOpen() {
+    public final boolean isOpen() {
         return !closed;
     }
 
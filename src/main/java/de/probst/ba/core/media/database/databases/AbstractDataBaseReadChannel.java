@@ -6,18 +6,88 @@ import de.probst.ba.core.media.database.DataInfo;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Created by chrisprobst on 06.10.14.
  */
 public abstract class AbstractDataBaseReadChannel extends AbstractDataBaseChannel implements DataBaseReadChannel {
 
+    /**
+     * Reads bytes of a single chunk. Positional reads call
+     * this method concurrently, so it must not depend on
+     * any mutable state of this channel.
+     *
+     * @param dst
+     * @param chunkIndex
+     * @param totalChunkOffset
+     * @param relativeChunkOffset
+     * @param chunkSize
+     * @return The number of read bytes or -1, if
+     * the underlying data ends unexpectedly.
+     * @throws IOException
+     */
     protected abstract int doRead(ByteBuffer dst,
                                   int chunkIndex,
                                   long totalChunkOffset,
                                   long relativeChunkOffset,
                                   long chunkSize) throws IOException;
 
+    /**
+     * Reads a slice of a single chunk. By default, the
+     * bytes are read into a new heap buffer.
+     *
+     * @param chunkIndex
+     * @param totalChunkOffset
+     * @param relativeChunkOffset
+     * @param length
+     * @return The read-only slice.
+     * @throws IOException
+     */
+    protected ByteBuffer doReadSlice(int chunkIndex,
+                                     long totalChunkOffset,
+                                     long relativeChunkOffset,
+                                     int length) throws IOException {
+        long chunkSize = getDataInfo().getChunkSize(chunkIndex);
+        ByteBuffer slice = ByteBuffer.allocate(length);
+        while (slice.hasRemaining()) {
+            if (doRead(slice, chunkIndex, totalChunkOffset, relativeChunkOffset + slice.position(), chunkSize) == -1) {
+                throw new EOFException("Unexpected EOF detected");
+            }
+        }
+        slice.flip();
+        return slice.asReadOnlyBuffer();
+    }
+
+    /**
+     * Transfers bytes of a single chunk. By default, the
+     * bytes are read into a heap buffer and written to
+     * the target.
+     *
+     * @param target
+     * @param chunkIndex
+     * @param totalChunkOffset
+     * @param relativeChunkOffset
+     * @param length
+     * @return The number of transferred bytes.
+     * @throws IOException
+     */
+    protected long doTransferTo(WritableByteChannel target,
+                                int chunkIndex,
+                                long totalChunkOffset,
+                                long relativeChunkOffset,
+                                long length) throws IOException {
+        long chunkSize = getDataInfo().getChunkSize(chunkIndex);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, DEFAULT_TRANSFER_BUFFER_SIZE));
+        if (doRead(buffer, chunkIndex, totalChunkOffset, relativeChunkOffset, chunkSize) == -1) {
+            throw new EOFException("Unexpected EOF detected");
+        }
+        buffer.flip();
+        return target.write(buffer);
+    }
+
     @Override
     protected void doClose() throws IOException {
     }
@@ -61,34 +131,108 @@ public abstract class AbstractDataBaseReadChannel extends AbstractDataBaseChanne
     }
 
     @Override
-    public synchronized final int read(ByteBuffer dst) throws IOException {
+    public synchronized final Optional<ByteBuffer> readSlice(int maxLength) throws IOException {
         checkClosed();
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxLength <= 0");
+        }
+
         if (isCompleted()) {
-            return -1;
+            return Optional.empty();
         }
 
-        // Setup byte buffer limit
-        int newLimit = (int) Math.min(dst.remaining(), remaining());
-        if (newLimit <= 0) {
+        long position = position();
+
+        // Calculate state
+        int chunkIndex = getDataInfo().getTotalChunkIndex(position, false);
+        long totalChunkOffset = getDataInfo().getTotalOffset(chunkIndex);
+        long relativeChunkOffset = position - getDataInfo().getRelativeOffset(chunkIndex);
+        long chunkSize = getDataInfo().getChunkSize(chunkIndex);
+
+        // Slices never span chunks
+        int length = (int) Math.min(maxLength, chunkSize - relativeChunkOffset);
+        ByteBuffer slice = doReadSlice(chunkIndex, totalChunkOffset, relativeChunkOffset, length);
+        position(position + slice.remaining());
+        return Optional.of(slice);
+    }
+
+    @Override
+    public synchronized final long transferTo(long position, long count, WritableByteChannel target)
+            throws IOException {
+        Objects.requireNonNull(target);
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        if (position >= size() || count == 0) {
             return 0;
         }
 
-        ByteBuffer copy = (ByteBuffer) dst.duplicate().limit(dst.position() + newLimit);
-        long position = position();
+        // Calculate state
+        int chunkIndex = getDataInfo().getTotalChunkIndex(position, false);
+        long totalChunkOffset = getDataInfo().getTotalOffset(chunkIndex);
+        long relativeChunkOffset = position - getDataInfo().getRelativeOffset(chunkIndex);
+        long chunkSize = getDataInfo().getChunkSize(chunkIndex);
+
+        // Transfers never span chunks
+        long length = Math.min(count, chunkSize - relativeChunkOffset);
+        return doTransferTo(target, chunkIndex, totalChunkOffset, relativeChunkOffset, length);
+    }
 
+    private int readAt(ByteBuffer dst, long position) throws IOException {
         // Calculate state
         int chunkIndex = getDataInfo().getTotalChunkIndex(position, false);
         long totalChunkOffset = getDataInfo().getTotalOffset(chunkIndex);
         long relativeChunkOffset = position - getDataInfo().getRelativeOffset(chunkIndex);
         long chunkSize = getDataInfo().getChunkSize(chunkIndex);
 
-        // Do read and increase counter
+        // Setup byte buffer limit, never read across chunks
+        int newLimit = (int) Math.min(dst.remaining(), chunkSize - relativeChunkOffset);
+        if (newLimit <= 0) {
+            return 0;
+        }
+
+        ByteBuffer copy = (ByteBuffer) dst.duplicate().limit(dst.position() + newLimit);
+
+        // Do read
         int read = doRead(copy, chunkIndex, totalChunkOffset, relativeChunkOffset, chunkSize);
         if (read == -1) {
             throw new EOFException("Unexpected EOF detected");
         }
         dst.position(dst.position() + read);
+        return read;
+    }
+
+    @Override
+    public synchronized final int read(ByteBuffer dst) throws IOException {
+        checkClosed();
+        if (isCompleted()) {
+            return -1;
+        }
+
+        // Increase counter
+        long position = position();
+        int read = readAt(dst, position);
         position(position + read);
         return read;
     }
+
+    @Override
+    public final int read(ByteBuffer dst, long position) throws IOException {
+        Objects.requireNonNull(dst);
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (position >= size()) {
+            return -1;
+        }
+        return readAt(dst, position);
+    }
 }
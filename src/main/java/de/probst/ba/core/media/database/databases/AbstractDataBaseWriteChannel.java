@@ -1,23 +1,119 @@
 package de.probst.ba.core.media.database.databases;
 
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
+import de.probst.ba.core.media.database.ChunkHashProof;
 import de.probst.ba.core.media.database.DataBaseWriteChannel;
 import de.probst.ba.core.media.database.DataInfo;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
  * Created by chrisprobst on 06.10.14.
+ * <p>
+ * Chunks are hashed while they are written, so verifying
+ * them does not require a second pass. Chunks which can be
+ * verified, but fail or were not written sequentially, are
+ * rejected on close and not merged into the database.
  */
 public abstract class AbstractDataBaseWriteChannel extends AbstractDataBaseChannel implements DataBaseWriteChannel {
 
     private DataInfo mergedDataInfo;
 
+    private DataInfo rejectedDataInfo;
+
+    // Hashes the written bytes, null if
+    // the chunks cannot be verified at all
+    private final ChunkHashAlgorithm.Hasher chunkHasher;
+
+    // The proven chunk hashes, used if the
+    // data info does not know the chunk hashes
+    private final Map<Integer, ChunkHashProof> chunkHashProofs = new HashMap<>();
+
+    // The chunks which were hashed completely and verified
+    private final BitSet verifiedChunks = new BitSet();
+
+    // The chunk which is currently hashed (-1 if none)
+    private int hashedChunkIndex = -1;
+
+    // The number of hashed bytes of the current chunk
+    private long hashedChunkSize;
+
+    private void resetChunkHasher() {
+        if (hashedChunkIndex != -1) {
+            chunkHasher.digest();
+            hashedChunkIndex = -1;
+        }
+    }
+
+    private boolean verifyChunk(int chunkIndex, byte[] chunkHash) {
+        if (getDataInfo().canVerifyChunkHashes()) {
+            return getDataInfo().verifyChunkHash(chunkIndex, chunkHash);
+        }
+
+        // Chunks of a merkle hash must be proven
+        ChunkHashProof chunkHashProof = chunkHashProofs.get(chunkIndex);
+        return chunkHashProof != null && chunkHashProof.hasChunkHash(chunkHash);
+    }
+
+    private void beginChunk(int chunkIndex, long relativeChunkOffset) {
+        if (relativeChunkOffset == 0) {
+            // (Re)start hashing the chunk
+            resetChunkHasher();
+            hashedChunkIndex = chunkIndex;
+            hashedChunkSize = 0;
+            verifiedChunks.clear(chunkIndex);
+        } else if (hashedChunkIndex != chunkIndex || hashedChunkSize != relativeChunkOffset) {
+            // Not sequential, the chunk cannot be verified anymore
+            resetChunkHasher();
+            verifiedChunks.clear(chunkIndex);
+        }
+    }
+
+    private void hashChunk(ByteBuffer written, int chunkIndex, long chunkSize) {
+        if (hashedChunkIndex != chunkIndex) {
+            return;
+        }
+
+        hashedChunkSize += written.remaining();
+        chunkHasher.update(written);
+        if (hashedChunkSize == chunkSize) {
+            hashedChunkIndex = -1;
+            if (verifyChunk(chunkIndex, chunkHasher.digest())) {
+                verifiedChunks.set(chunkIndex);
+            }
+        }
+    }
+
     @Override
     protected void doClose() throws IOException {
         if (isCompleted()) {
-            mergedDataInfo = getDataBase().merge(getDataInfo());
+            DataInfo verifiedDataInfo = getDataInfo();
+            if (chunkHasher != null) {
+                verifiedDataInfo = verifiedDataInfo.empty().withChunks(verifiedChunks.stream());
+                DataInfo rejectedDataInfo = getDataInfo().subtract(verifiedDataInfo);
+                if (!rejectedDataInfo.isEmpty()) {
+                    this.rejectedDataInfo = rejectedDataInfo;
+                }
+            }
+
+            if (!verifiedDataInfo.isEmpty()) {
+                // Keep the proofs of the verified chunks, so they can be passed on
+                List<ChunkHashProof> verifiedChunkHashProofs = new ArrayList<>();
+                for (ChunkHashProof chunkHashProof : chunkHashProofs.values()) {
+                    if (verifiedDataInfo.isChunkCompleted(chunkHashProof.getChunkIndex())) {
+                        verifiedChunkHashProofs.add(chunkHashProof);
+                    }
+                }
+                mergedDataInfo = getDataBase().merge(verifiedDataInfo, verifiedChunkHashProofs);
+            }
         }
     }
 
@@ -29,6 +125,9 @@ public abstract class AbstractDataBaseWriteChannel extends AbstractDataBaseChann
 
     public AbstractDataBaseWriteChannel(AbstractDataBase dataBase, DataInfo dataInfo) {
         super(dataBase, dataInfo);
+        chunkHasher = dataInfo.canVerifyChunkHashes() || dataInfo.hasMerkleHash() ?
+                      dataInfo.getChunkHashAlgorithm().newHasher() :
+                      null;
     }
 
     @Override
@@ -36,6 +135,28 @@ public abstract class AbstractDataBaseWriteChannel extends AbstractDataBaseChann
         return Optional.ofNullable(mergedDataInfo);
     }
 
+    @Override
+    public synchronized Optional<DataInfo> getRejectedDataInfo() {
+        return Optional.ofNullable(rejectedDataInfo);
+    }
+
+    @Override
+    public synchronized boolean addChunkHashProof(ChunkHashProof chunkHashProof) {
+        Objects.requireNonNull(chunkHashProof);
+
+        int chunkIndex = chunkHashProof.getChunkIndex();
+        if (!getDataInfo().hasMerkleHash() ||
+            chunkIndex < 0 ||
+            chunkIndex >= getDataInfo().getChunkCount() ||
+            !getDataInfo().isChunkCompleted(chunkIndex) ||
+            !getDataInfo().verifyChunkHashProof(chunkHashProof)) {
+            return false;
+        }
+
+        chunkHashProofs.put(chunkIndex, chunkHashProof);
+        return true;
+    }
+
     @Override
     public synchronized DataBaseWriteChannel position(long position) throws IOException {
         return (DataBaseWriteChannel) super.position(position);
@@ -68,13 +189,6 @@ public abstract class AbstractDataBaseWriteChannel extends AbstractDataBaseChann
             throw new IOException("isCompleted()");
         }
 
-        // Setup byte buffer limit
-        int newLimit = (int) Math.min(src.remaining(), remaining());
-        if (newLimit <= 0) {
-            return 0;
-        }
-
-        ByteBuffer copy = (ByteBuffer) src.duplicate().limit(src.position() + newLimit);
         long position = position();
 
         // Calculate state
@@ -83,8 +197,22 @@ public abstract class AbstractDataBaseWriteChannel extends AbstractDataBaseChann
         long relativeChunkOffset = position - getDataInfo().getRelativeOffset(chunkIndex);
         long chunkSize = getDataInfo().getChunkSize(chunkIndex);
 
+        // Setup byte buffer limit, never write across chunks
+        int newLimit = (int) Math.min(src.remaining(), chunkSize - relativeChunkOffset);
+        if (newLimit <= 0) {
+            return 0;
+        }
+
+        ByteBuffer copy = (ByteBuffer) src.duplicate().limit(src.position() + newLimit);
+        if (chunkHasher != null) {
+            beginChunk(chunkIndex, relativeChunkOffset);
+        }
+
         // Do write and increase counter
         int written = doWrite(copy, chunkIndex, totalChunkOffset, relativeChunkOffset, chunkSize);
+        if (chunkHasher != null && written > 0) {
+            hashChunk((ByteBuffer) src.duplicate().limit(src.position() + written), chunkIndex, chunkSize);
+        }
         src.position(src.position() + written);
         position(position + written);
         return written;
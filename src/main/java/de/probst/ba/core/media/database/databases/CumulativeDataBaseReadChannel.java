@@ -9,10 +9,12 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +24,9 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
 
     private final DataBase dataBase;
     private final List<DataBaseReadChannel> readChannels;
+
+    // The offset of each read channel, followed by the total size
+    private final long[] offsets;
     private int index;
 
     protected final void checkClosed() throws ClosedChannelException {
@@ -30,6 +35,23 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
         }
     }
 
+    /**
+     * @param position
+     * @return The index of the last read channel, which starts at or before the position.
+     */
+    private int getIndex(long position) {
+        int low = 0, high = readChannels.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
     public CumulativeDataBaseReadChannel(DataBase dataBase, Collection<DataBaseReadChannel> readChannels) {
         Objects.requireNonNull(dataBase);
         Objects.requireNonNull(readChannels);
@@ -38,6 +60,16 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
         }
         this.dataBase = dataBase;
         this.readChannels = new ArrayList<>(readChannels);
+
+        // The size of a read channel is the completed size of its data info
+        offsets = new long[this.readChannels.size() + 1];
+        for (int i = 0; i < this.readChannels.size(); i++) {
+            offsets[i + 1] = offsets[i] + this.readChannels.get(i)
+                                                           .getCumulativeDataInfo()
+                                                           .stream()
+                                                           .mapToLong(DataInfo::getCompletedSize)
+                                                           .sum();
+        }
     }
 
     @Override
@@ -64,23 +96,15 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
     }
 
     @Override
-    public synchronized long size() throws IOException {
+    public long size() throws IOException {
         checkClosed();
-        long accumulator = 0;
-        for (DataBaseReadChannel readChannel : readChannels) {
-            accumulator += readChannel.size();
-        }
-        return accumulator;
+        return offsets[readChannels.size()];
     }
 
     @Override
     public synchronized long position() throws IOException {
         checkClosed();
-        long accumulator = 0;
-        for (int i = 0; i < index; i++) {
-            accumulator += readChannels.get(i).position();
-        }
-        return accumulator + readChannels.get(index).position();
+        return offsets[index] + readChannels.get(index).position();
     }
 
     @Override
@@ -92,25 +116,58 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
         }
 
         checkClosed();
-        index = 0;
-        long accumulator = 0;
-        for (DataBaseReadChannel readChannel : readChannels) {
-            long size = readChannel.size();
-
-            if (position < accumulator + size) {
-                position -= accumulator;
-                readChannel.position(position);
-                break;
-            } else {
-                readChannel.position(size);
-                accumulator += size;
-                index++;
+        index = getIndex(position);
+        for (int i = 0; i < readChannels.size(); i++) {
+            DataBaseReadChannel readChannel = readChannels.get(i);
+            if (i < index) {
+                readChannel.position(readChannel.size());
+            } else if (i == index) {
+                readChannel.position(position - offsets[i]);
             }
         }
 
         return this;
     }
 
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        Objects.requireNonNull(dst);
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (position >= size()) {
+            return -1;
+        }
+
+        // Empty read channels are skipped by the binary search
+        int i = getIndex(position);
+        return readChannels.get(i).read(dst, position - offsets[i]);
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return readChannels.stream().allMatch(DataBaseReadChannel::supportsTransfer);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        Objects.requireNonNull(target);
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (position >= size()) {
+            return 0;
+        }
+
+        // Empty read channels are skipped by the binary search
+        int i = getIndex(position);
+        return readChannels.get(i).transferTo(position - offsets[i], count, target);
+    }
+
     @Override
     public synchronized int read(ByteBuffer dst) throws IOException {
         checkClosed();
@@ -127,6 +184,26 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
         return read;
     }
 
+    @Override
+    public boolean supportsSlices() {
+        return readChannels.stream().allMatch(DataBaseReadChannel::supportsSlices);
+    }
+
+    @Override
+    public synchronized Optional<ByteBuffer> readSlice(int maxLength) throws IOException {
+        checkClosed();
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("maxLength <= 0");
+        }
+
+        Optional<ByteBuffer> slice = readChannels.get(index).readSlice(maxLength);
+        if (!slice.isPresent() && index < readChannels.size() - 1) {
+            readChannels.get(++index).position(0);
+            return readSlice(maxLength);
+        }
+        return slice;
+    }
+
     @Override
     public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
         checkClosed();
@@ -157,7 +234,7 @@ public final class CumulativeDataBaseReadChannel implements DataBaseReadChannel
     }
 
     @Override
-    public synchronized boolean isOpen() {
+    public boolean isOpen() {
         return readChannels.stream().allMatch(Channel::isOpen);
     }
 
@@ -1,12 +1,22 @@
 package de.probst.ba.core.media.database.databases;
 
 import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.databases.cached.CachedDataBase;
 import de.probst.ba.core.media.database.databases.fake.FakeDataBase;
+import de.probst.ba.core.media.database.databases.file.ChunkStoreDataBase;
 import de.probst.ba.core.media.database.databases.file.FileDataBase;
+import de.probst.ba.core.media.database.databases.file.FileDataBaseDurability;
+import de.probst.ba.core.media.database.databases.file.FileDataBasePreallocation;
+import de.probst.ba.core.media.database.databases.file.MappedFileDataBase;
 import de.probst.ba.core.media.database.databases.memory.MemoryDataBase;
+import de.probst.ba.core.media.database.databases.memory.PooledMemoryDataBase;
+import de.probst.ba.core.media.database.databases.memory.SharedMemoryDataBase;
+import de.probst.ba.core.media.database.databases.memory.SharedMemoryStore;
+import de.probst.ba.core.media.database.databases.sharded.ShardedDataBase;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Created by chrisprobst on 17.08.14.
@@ -25,6 +35,43 @@ public final class DataBases {
         return new FileDataBase(allowOverwrite, directory);
     }
 
+    public static DataBase fileDataBase(boolean allowOverwrite,
+                                        Path directory,
+                                        FileDataBaseDurability durability) throws IOException {
+        return new FileDataBase(allowOverwrite, directory, durability);
+    }
+
+    public static DataBase fileDataBase(boolean allowOverwrite,
+                                        Path directory,
+                                        FileDataBaseDurability durability,
+                                        FileDataBasePreallocation preallocation) throws IOException {
+        return new FileDataBase(allowOverwrite,
+                                directory,
+                                durability,
+                                FileDataBase.DEFAULT_WRITE_BUFFER_SIZE,
+                                preallocation);
+    }
+
+    public static DataBase chunkStoreDataBase(boolean allowOverwrite,
+                                              Path directory,
+                                              FileDataBaseDurability durability) throws IOException {
+        return new ChunkStoreDataBase(allowOverwrite, directory, durability);
+    }
+
+    public static DataBase mappedFileDataBase(Path directory) throws IOException {
+        return mappedFileDataBase(false, directory);
+    }
+
+    public static DataBase mappedFileDataBase(boolean allowOverwrite, Path directory) throws IOException {
+        return new MappedFileDataBase(allowOverwrite, directory);
+    }
+
+    public static DataBase mappedFileDataBase(boolean allowOverwrite,
+                                              Path directory,
+                                              FileDataBaseDurability durability) throws IOException {
+        return new MappedFileDataBase(allowOverwrite, directory, durability);
+    }
+
     public static DataBase memoryDataBase() {
         return memoryDataBase(false);
     }
@@ -33,6 +80,29 @@ public final class DataBases {
         return new MemoryDataBase(allowOverwrite);
     }
 
+    public static DataBase pooledMemoryDataBase() {
+        return pooledMemoryDataBase(false);
+    }
+
+    public static DataBase pooledMemoryDataBase(boolean allowOverwrite) {
+        return new PooledMemoryDataBase(allowOverwrite);
+    }
+
+    public static DataBase sharedMemoryDataBase(SharedMemoryStore sharedMemoryStore) {
+        return sharedMemoryDataBase(false, sharedMemoryStore);
+    }
+
+    public static DataBase sharedMemoryDataBase(boolean allowOverwrite, SharedMemoryStore sharedMemoryStore) {
+        return new SharedMemoryDataBase(allowOverwrite, sharedMemoryStore);
+    }
+
+    public static DataBase cachedDataBase(DataBase dataBase, long maxCacheSize) {
+        return new CachedDataBase(dataBase, maxCacheSize);
+    }
+
+    public static DataBase shardedDataBase(List<DataBase> dataBases) {
+        return new ShardedDataBase(dataBases);
+    }
 
     public static DataBase fakeDataBase(boolean allowOverwrite) {
         return new FakeDataBase(allowOverwrite);
@@ -0,0 +1,147 @@
+package de.probst.ba.core.media.database.databases.cached;
+
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A data base, which keeps recently read chunks of the
+ * wrapped data base in a size-bounded off-heap cache.
+ * <p>
+ * Misses and all writes are delegated to the wrapped data
+ * base, which stays the source of truth. Inserted chunks are
+ * removed from the cache, so overwritten chunks are never
+ * served from the cache.
+ */
+public final class CachedDataBase implements DataBase {
+
+    private final DataBase dataBase;
+    private final ChunkCache chunkCache;
+
+    public CachedDataBase(DataBase dataBase, long maxCacheSize) {
+        this(dataBase, maxCacheSize, PooledByteBufAllocator.DEFAULT);
+    }
+
+    public CachedDataBase(DataBase dataBase, long maxCacheSize, ByteBufAllocator allocator) {
+        Objects.requireNonNull(dataBase);
+        this.dataBase = dataBase;
+        chunkCache = new ChunkCache(allocator, maxCacheSize);
+    }
+
+    /**
+     * @return The wrapped data base.
+     */
+    public DataBase getDataBase() {
+        return dataBase;
+    }
+
+    /**
+     * @return The maximum size of all cached chunks.
+     */
+    public long getMaxCacheSize() {
+        return chunkCache.getMaxSize();
+    }
+
+    /**
+     * @return The size of all cached chunks.
+     */
+    public long getCacheSize() {
+        return chunkCache.getSize();
+    }
+
+    /**
+     * @return The number of reads, which were served from the cache.
+     */
+    public long getHitCount() {
+        return chunkCache.getHitCount();
+    }
+
+    /**
+     * @return The number of reads, which had to load a chunk.
+     */
+    public long getMissCount() {
+        return chunkCache.getMissCount();
+    }
+
+    @Override
+    public Map<String, DataInfo> getDataInfo() {
+        return dataBase.getDataInfo();
+    }
+
+    @Override
+    public long getVersion() {
+        return dataBase.getVersion();
+    }
+
+    @Override
+    public Map<String, DataInfo> getEstimatedDataInfo() {
+        return dataBase.getEstimatedDataInfo();
+    }
+
+    @Override
+    public DataInfo get(String hash) {
+        return dataBase.get(hash);
+    }
+
+    @Override
+    public Optional<ChunkHashProof> getChunkHashProof(String hash, int chunkIndex) {
+        return dataBase.getChunkHashProof(hash, chunkIndex);
+    }
+
+    @Override
+    public NavigableMap<Long, DataInfo> getPartitions(String name) {
+        return dataBase.getPartitions(name);
+    }
+
+    @Override
+    public Optional<DataBaseReadChannel> lookup(DataInfo lookupDataInfo) throws IOException {
+        Optional<DataBaseReadChannel> readChannel = dataBase.lookup(lookupDataInfo);
+
+        // Cumulative channels are passed through
+        if (readChannel.isPresent() && !readChannel.get().isCumulative()) {
+            return Optional.of(new CachedDataBaseReadChannel(this, chunkCache, readChannel.get()));
+        } else {
+            return readChannel;
+        }
+    }
+
+    @Override
+    public Optional<DataBaseWriteChannel> insert(DataInfo dataInfo) throws IOException {
+        Optional<DataBaseWriteChannel> writeChannel = dataBase.insert(dataInfo);
+
+        // The chunks are locked for writing now, so they can not be cached again until written
+        if (writeChannel.isPresent()) {
+            chunkCache.invalidate(dataInfo);
+        }
+        return writeChannel;
+    }
+
+    @Override
+    public boolean supportsDeduplication() {
+        return dataBase.supportsDeduplication();
+    }
+
+    @Override
+    public DataInfo deduplicate(DataInfo dataInfo) throws IOException {
+        return dataBase.deduplicate(dataInfo);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            dataBase.close();
+        } finally {
+            chunkCache.clear();
+        }
+    }
+}
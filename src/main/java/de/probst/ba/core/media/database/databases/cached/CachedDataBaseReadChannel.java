@@ -0,0 +1,243 @@
+package de.probst.ba.core.media.database.databases.cached;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import io.netty.buffer.ByteBuf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A read channel, which serves cached chunks from memory
+ * and loads missing chunks from the wrapped read channel.
+ */
+public final class CachedDataBaseReadChannel implements DataBaseReadChannel {
+
+    private final DataBase dataBase;
+    private final ChunkCache chunkCache;
+    private final DataBaseReadChannel readChannel;
+    private final DataInfo dataInfo;
+    private long position;
+
+    private void checkClosed() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * @param chunkIndex
+     * @return The retained chunk or null, if the chunk
+     * is too large for the cache.
+     * @throws IOException
+     */
+    private ByteBuf getChunk(int chunkIndex) throws IOException {
+        ByteBuf chunk = chunkCache.get(dataInfo.getHash(), chunkIndex);
+        long chunkSize = dataInfo.getChunkSize(chunkIndex);
+        if (chunk != null || !chunkCache.isCacheable(chunkSize)) {
+            return chunk;
+        }
+
+        // Load the whole chunk
+        ByteBuf loaded = chunkCache.allocate((int) chunkSize);
+        try {
+            ByteBuffer byteBuffer = loaded.nioBuffer(0, (int) chunkSize);
+            long offset = dataInfo.getRelativeOffset(chunkIndex);
+            while (byteBuffer.hasRemaining()) {
+                if (readChannel.read(byteBuffer, offset + byteBuffer.position()) == -1) {
+                    throw new EOFException("Unexpected EOF detected");
+                }
+            }
+            loaded.writerIndex((int) chunkSize);
+        } catch (IOException | RuntimeException e) {
+            loaded.release();
+            throw e;
+        }
+
+        return chunkCache.put(dataInfo.getHash(), chunkIndex, loaded);
+    }
+
+    CachedDataBaseReadChannel(DataBase dataBase, ChunkCache chunkCache, DataBaseReadChannel readChannel) {
+        Objects.requireNonNull(dataBase);
+        Objects.requireNonNull(chunkCache);
+        Objects.requireNonNull(readChannel);
+        this.dataBase = dataBase;
+        this.chunkCache = chunkCache;
+        this.readChannel = readChannel;
+        dataInfo = readChannel.getDataInfo();
+    }
+
+    @Override
+    public DataBase getDataBase() {
+        return dataBase;
+    }
+
+    @Override
+    public DataInfo getDataInfo() {
+        return dataInfo;
+    }
+
+    @Override
+    public boolean isCumulative() {
+        return readChannel.isCumulative();
+    }
+
+    @Override
+    public List<DataInfo> getCumulativeDataInfo() {
+        return readChannel.getCumulativeDataInfo();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return readChannel.size();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public synchronized DataBaseReadChannel position(long position) throws IOException {
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        } else if (position > size()) {
+            throw new IllegalArgumentException("position > size()");
+        }
+        this.position = position;
+        return this;
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return readChannel.supportsTransfer();
+    }
+
+    @Override
+    public synchronized long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        Objects.requireNonNull(target);
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        if (position >= size() || count == 0) {
+            return 0;
+        }
+
+        // Calculate state
+        int chunkIndex = dataInfo.getTotalChunkIndex(position, false);
+        long relativeChunkOffset = position - dataInfo.getRelativeOffset(chunkIndex);
+        long chunkSize = dataInfo.getChunkSize(chunkIndex);
+
+        ByteBuf chunk = getChunk(chunkIndex);
+        if (chunk == null) {
+            return readChannel.transferTo(position, count, target);
+        }
+
+        try {
+            int length = (int) Math.min(count, chunkSize - relativeChunkOffset);
+            return target.write(chunk.nioBuffer((int) relativeChunkOffset, length));
+        } finally {
+            chunk.release();
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        checkClosed();
+        if (isCompleted()) {
+            return -1;
+        }
+
+        int read = read(dst, position);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        Objects.requireNonNull(dst);
+        checkClosed();
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (position >= size()) {
+            return -1;
+        } else if (!dst.hasRemaining()) {
+            return 0;
+        }
+
+        // Calculate state
+        int chunkIndex = dataInfo.getTotalChunkIndex(position, false);
+        long relativeChunkOffset = position - dataInfo.getRelativeOffset(chunkIndex);
+        long chunkSize = dataInfo.getChunkSize(chunkIndex);
+
+        ByteBuf chunk = getChunk(chunkIndex);
+        if (chunk == null) {
+            return readChannel.read(dst, position);
+        }
+
+        try {
+            int read = (int) Math.min(dst.remaining(), chunkSize - relativeChunkOffset);
+            dst.put(chunk.nioBuffer((int) relativeChunkOffset, read));
+            return read;
+        } finally {
+            chunk.release();
+        }
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        checkClosed();
+        long totalRead = 0;
+        for (int i = 0; i < length; i++) {
+            ByteBuffer byteBuffer = dsts[offset + i];
+
+            int read = read(byteBuffer);
+            if (read == -1) {
+                if (totalRead > 0) {
+                    return totalRead;
+                } else {
+                    return -1;
+                }
+            }
+
+            totalRead += read;
+            if (byteBuffer.hasRemaining()) {
+                break;
+            }
+        }
+        return totalRead;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return readChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        readChannel.close();
+    }
+}
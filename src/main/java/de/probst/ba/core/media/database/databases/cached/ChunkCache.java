@@ -0,0 +1,182 @@
+package de.probst.ba.core.media.database.databases.cached;
+
+import de.probst.ba.core.media.database.DataInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+
+/**
+ * A size-bounded cache of chunks in direct buffers.
+ * <p>
+ * The least recently used chunks are evicted first. Cached
+ * buffers are reference counted, so a chunk can be evicted
+ * while readers still copy from it.
+ */
+final class ChunkCache {
+
+    private static final class Key {
+
+        private final String hash;
+        private final int chunkIndex;
+
+        private Key(String hash, int chunkIndex) {
+            this.hash = hash;
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return chunkIndex == key.chunkIndex && hash.equals(key.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * hash.hashCode() + chunkIndex;
+        }
+    }
+
+    private final ByteBufAllocator allocator;
+    private final long maxSize;
+
+    // The cached chunks in access order
+    private final Map<Key, ByteBuf> chunks = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The size of all cached chunks
+    private long size;
+
+    // The cache statistics
+    private long hitCount;
+    private long missCount;
+
+    private void remove(Key key) {
+        ByteBuf chunk = chunks.remove(key);
+        if (chunk != null) {
+            size -= chunk.capacity();
+            chunk.release();
+        }
+    }
+
+    private void evict() {
+        for (Iterator<ByteBuf> it = chunks.values().iterator(); size > maxSize && it.hasNext(); ) {
+            ByteBuf chunk = it.next();
+            it.remove();
+            size -= chunk.capacity();
+            chunk.release();
+        }
+    }
+
+    ChunkCache(ByteBufAllocator allocator, long maxSize) {
+        Objects.requireNonNull(allocator);
+
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+
+        this.allocator = allocator;
+        this.maxSize = maxSize;
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @param chunkSize
+     * @return True if a chunk of the given size fits into this cache,
+     * otherwise false.
+     */
+    boolean isCacheable(long chunkSize) {
+        return chunkSize <= maxSize && chunkSize <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param chunkSize
+     * @return A new buffer for a chunk of the given size.
+     */
+    ByteBuf allocate(int chunkSize) {
+        return allocator.directBuffer(chunkSize, chunkSize);
+    }
+
+    /**
+     * Looks up a chunk and counts the hit or miss.
+     *
+     * @param hash
+     * @param chunkIndex
+     * @return The retained chunk, which must be released
+     * by the caller, or null if the chunk is not cached.
+     */
+    synchronized ByteBuf get(String hash, int chunkIndex) {
+        ByteBuf chunk = chunks.get(new Key(hash, chunkIndex));
+        if (chunk == null) {
+            missCount++;
+            return null;
+        } else {
+            hitCount++;
+            return chunk.retain();
+        }
+    }
+
+    /**
+     * Caches a loaded chunk and evicts the least recently used
+     * chunks, if necessary. The cache takes over the reference
+     * of the given chunk.
+     *
+     * @param hash
+     * @param chunkIndex
+     * @param chunk
+     * @return The retained chunk, which must be released by the caller.
+     */
+    synchronized ByteBuf put(String hash, int chunkIndex, ByteBuf chunk) {
+        Key key = new Key(hash, chunkIndex);
+        remove(key);
+        chunks.put(key, chunk);
+        size += chunk.capacity();
+        evict();
+        return chunk.retain();
+    }
+
+    /**
+     * Removes all completed chunks of the given data info.
+     *
+     * @param dataInfo
+     */
+    synchronized void invalidate(DataInfo dataInfo) {
+        for (PrimitiveIterator.OfInt it = dataInfo.getCompletedChunks().iterator(); it.hasNext(); ) {
+            remove(new Key(dataInfo.getHash(), it.nextInt()));
+        }
+    }
+
+    /**
+     * Removes all chunks.
+     */
+    synchronized void clear() {
+        chunks.values().forEach(ByteBuf::release);
+        chunks.clear();
+        size = 0;
+    }
+}
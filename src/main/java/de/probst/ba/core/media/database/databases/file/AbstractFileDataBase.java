@@ -0,0 +1,238 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.util.collections.Tuple;
+import de.probst.ba.core.util.collections.Tuple2;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A data base which stores the data of each hash in a file
+ * of the same name. The directory is locked while the data
+ * base is open and the data info are recovered from a journal.
+ * <p>
+ * With group commits, the merged chunks are journaled only
+ * after all data files were forced, so the journal never
+ * contains chunks which are not on disk.
+ * <p>
+ * Journal records are appended under the monitor of this data
+ * base, but forced and compacted outside of it, so lookups and
+ * inserts never wait for the disk. Group commits never take the
+ * monitor, they force the data files and the journal under a
+ * commit lock of their own.
+ */
+abstract class AbstractFileDataBase extends AbstractDataBase {
+
+    public static final String LOCK_FILE_NAME = "db.lock";
+
+    // The interval of group commits in milliseconds
+    public static final long GROUP_COMMIT_INTERVAL = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(AbstractFileDataBase.class);
+    private final Path directory;
+    private final FileDataBaseDurability durability;
+    private final FileChannel lockFile;
+    private final FileDataBaseJournal journal;
+
+    // The merges, which are journaled with the next group commit
+    private final List<Tuple2<DataInfo, DataInfo>> pendingMerges = new ArrayList<>();
+
+    // Only one group commit runs at a time
+    private final Object commitLock = new Object();
+
+    // The executor of the group commits
+    private final Optional<ScheduledExecutorService> groupCommitExecutor;
+    private volatile boolean closed;
+
+    private void groupCommit() {
+        try {
+            commit();
+        } catch (IOException e) {
+            logger.warn("Group commit of " + directory + " failed", e);
+        }
+    }
+
+    protected final Path getDirectory() {
+        return directory;
+    }
+
+    protected final Path getDataFile(String hash) {
+        return directory.resolve(hash);
+    }
+
+    /**
+     * Forces all data files. Called by group commits without
+     * holding the monitor of this data base.
+     *
+     * @throws IOException
+     */
+    protected abstract void doForceDataFiles() throws IOException;
+
+    protected abstract void doCloseDataFiles() throws IOException;
+
+    @Override
+    protected void doMerge(DataInfo mergeDataInfo, DataInfo mergedDataInfo) throws IOException {
+        if (durability == FileDataBaseDurability.GROUP) {
+            synchronized (pendingMerges) {
+                pendingMerges.add(Tuple.of(mergeDataInfo, mergedDataInfo));
+            }
+        } else {
+            journal.append(mergeDataInfo, mergedDataInfo);
+        }
+    }
+
+    @Override
+    protected void doMergeChunkHashProofs(String hash,
+                                          Collection<ChunkHashProof> mergeChunkHashProofs) throws IOException {
+        // Proofs are valid without the data, so they never wait for a group commit
+        journal.append(hash, mergeChunkHashProofs);
+    }
+
+    @Override
+    protected void doMerged() throws IOException {
+        if (durability == FileDataBaseDurability.CHUNK) {
+            journal.force();
+        }
+        journal.compactIfNecessary();
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        closed = true;
+        groupCommitExecutor.ifPresent(ScheduledExecutorService::shutdown);
+        try {
+            if (durability == FileDataBaseDurability.GROUP) {
+                commit(true);
+            }
+        } finally {
+            try {
+                doCloseDataFiles();
+            } finally {
+                try {
+                    journal.close();
+                } finally {
+                    lockFile.close();
+                }
+            }
+        }
+    }
+
+    private void commit(boolean closing) throws IOException {
+        synchronized (commitLock) {
+            List<Tuple2<DataInfo, DataInfo>> committedMerges;
+            synchronized (pendingMerges) {
+                if ((closed && !closing) || pendingMerges.isEmpty()) {
+                    return;
+                }
+                committedMerges = new ArrayList<>(pendingMerges);
+                pendingMerges.clear();
+            }
+
+            try {
+                // The data must be durable before it is journaled
+                doForceDataFiles();
+                for (Tuple2<DataInfo, DataInfo> committedMerge : committedMerges) {
+                    journal.append(committedMerge.first(), committedMerge.second());
+                }
+                journal.force();
+            } catch (IOException | RuntimeException e) {
+                // Retry with the next group commit, journaling a merge twice is harmless
+                synchronized (pendingMerges) {
+                    pendingMerges.addAll(0, committedMerges);
+                }
+                throw e;
+            }
+        }
+        journal.compactIfNecessary();
+    }
+
+    AbstractFileDataBase(boolean allowOverwrite,
+                         Path directory,
+                         FileDataBaseDurability durability) throws IOException {
+        super(allowOverwrite);
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(durability);
+
+        // Make sure the directory exists
+        Files.createDirectories(directory);
+
+        // Open lock file
+        lockFile = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.WRITE);
+
+        // Try to lock the file
+        FileLock fileLock = lockFile.tryLock();
+        if (fileLock == null || !fileLock.isValid()) {
+            try {
+                throw new IOException("fileLock == null || !fileLock.isValid()");
+            } finally {
+                lockFile.close();
+            }
+        }
+
+        // Save the database directory
+        this.directory = directory;
+        this.durability = durability;
+
+        // Recover the data info from the journal
+        try {
+            journal = new FileDataBaseJournal(directory);
+        } catch (IOException e) {
+            lockFile.close();
+            throw e;
+        }
+        journal.getDataInfo().forEach(this::restore);
+        journal.getChunkHashProofs().forEach(this::restore);
+
+        // Schedule group commits
+        if (durability == FileDataBaseDurability.GROUP) {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "group-commit-" + directory.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::groupCommit,
+                                            GROUP_COMMIT_INTERVAL,
+                                            GROUP_COMMIT_INTERVAL,
+                                            TimeUnit.MILLISECONDS);
+            groupCommitExecutor = Optional.of(executor);
+        } else {
+            groupCommitExecutor = Optional.empty();
+        }
+    }
+
+    /**
+     * @return The durability of this data base.
+     */
+    public final FileDataBaseDurability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Forces all data files and journals the merged chunks,
+     * which are waiting for the next group commit.
+     *
+     * @throws IOException
+     */
+    public final void commit() throws IOException {
+        commit(false);
+    }
+}
@@ -0,0 +1,320 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.DataInsertException;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A file data base, which stores every chunk in a file named
+ * after the chunk hash, so data info sharing chunk hashes,
+ * e.g. re-partitioned releases of the same content, share
+ * the chunks on disk.
+ * <p>
+ * Only chunks with collision resistant chunk hashes are
+ * content addressed, all other chunks are stored per data info.
+ * The stored chunks are reference counted by the data info,
+ * which completed them. The counts are recovered from the
+ * journal, so they never need to be written.
+ * <p>
+ * Written chunks are staged per data info and chunk index and
+ * only moved into the store, when they are merged. A chunk,
+ * which is already stored, can be completed for another data
+ * info without transferring it again.
+ * <p>
+ * The chunks directory is forced after chunks were moved into
+ * the store and before the merge is journaled durably, so the
+ * journal never references chunk files, whose rename was lost.
+ */
+public final class ChunkStoreDataBase extends AbstractFileDataBase {
+
+    public static final String CHUNKS_DIRECTORY_NAME = "chunks";
+    public static final String STAGING_DIRECTORY_NAME = "staging";
+
+    // The prefix of content addressed chunk keys
+    private static final String CONTENT_KEY_PREFIX = "sha1-";
+
+    /**
+     * @param dataInfo
+     * @param chunkIndex
+     * @return The chunk hash based key of the chunk, if the chunk
+     * hashes are collision resistant, otherwise a key, which is
+     * unique to the data info.
+     */
+    static String getChunkKey(DataInfo dataInfo, int chunkIndex) {
+        if (dataInfo.hasChunkHashes() && dataInfo.getChunkHashAlgorithm() == ChunkHashAlgorithm.SHA1) {
+            return CONTENT_KEY_PREFIX + dataInfo.getChunkHashes().get(chunkIndex);
+        } else {
+            return dataInfo.getHash() + "-" + chunkIndex;
+        }
+    }
+
+    private static boolean isContentKey(String chunkKey) {
+        return chunkKey.startsWith(CONTENT_KEY_PREFIX);
+    }
+
+    private final Path chunksDirectory;
+    private final Path stagingDirectory;
+
+    // The number of completed chunks of all data info by chunk key
+    private final Map<String, Integer> chunkReferences = new HashMap<>();
+
+    // The chunk files moved into the store since the last group commit
+    private final Set<Path> unforcedChunkFiles = new LinkedHashSet<>();
+
+    // Whether chunk files were moved into the store,
+    // since the chunks directory was forced
+    private final AtomicBoolean chunksDirectoryUnforced = new AtomicBoolean();
+    private final Object chunksDirectoryLock = new Object();
+
+    // The staging files, which were verified before they were merged
+    private final Set<Path> verifiedStagingFiles = ConcurrentHashMap.newKeySet();
+
+    private boolean isStagedChunkValid(Path stagingFile, DataInfo dataInfo, int chunkIndex) throws IOException {
+        ChunkHashAlgorithm.Hasher hasher = dataInfo.getChunkHashAlgorithm().newHasher();
+        hasher.update(ByteBuffer.wrap(Files.readAllBytes(stagingFile)));
+        return dataInfo.verifyChunkHash(chunkIndex, hasher.digest());
+    }
+
+    private void verifyStagedChunk(Path stagingFile, DataInfo dataInfo, int chunkIndex) throws IOException {
+        if (!isStagedChunkValid(stagingFile, dataInfo, chunkIndex)) {
+            throw new DataInsertException("!dataInfo.verifyChunkHash(chunkIndex, hasher.digest())");
+        }
+    }
+
+    private void forceChunksDirectory() throws IOException {
+        // Waits for a running force, which might not include the latest moves
+        synchronized (chunksDirectoryLock) {
+            if (chunksDirectoryUnforced.getAndSet(false)) {
+                try {
+                    FileDataBaseJournal.forceDirectory(chunksDirectory);
+                } catch (IOException | RuntimeException e) {
+                    chunksDirectoryUnforced.set(true);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies the staged chunks of the write data info, which
+     * would be shared without being verified while they were
+     * written. Called by the write channels before they merge
+     * and without holding the monitor of this data base.
+     * <p>
+     * Invalid chunks are verified again, when they are merged,
+     * so only chunks, which are actually merged, fail the merge.
+     *
+     * @param writeDataInfo
+     * @throws IOException
+     */
+    void verifyStagedChunks(DataInfo writeDataInfo) throws IOException {
+        if (writeDataInfo.canVerifyChunkHashes()) {
+            return;
+        }
+
+        // The keys are always derived from the data info, which was stored first
+        DataInfo existingDataInfo = get(writeDataInfo.getHash());
+        DataInfo keyDataInfo = existingDataInfo != null ? existingDataInfo : writeDataInfo;
+        for (int chunkIndex : writeDataInfo.getCompletedChunks().toArray()) {
+            if (isContentKey(getChunkKey(keyDataInfo, chunkIndex))) {
+                Path stagingFile = getStagingFile(writeDataInfo.getHash(), chunkIndex);
+                if (isStagedChunkValid(stagingFile, keyDataInfo, chunkIndex)) {
+                    verifiedStagingFiles.add(stagingFile);
+                }
+            }
+        }
+    }
+
+    Path getChunkFile(String chunkKey) {
+        return chunksDirectory.resolve(chunkKey);
+    }
+
+    Path getStagingFile(String hash, int chunkIndex) {
+        return stagingDirectory.resolve(hash + "-" + chunkIndex);
+    }
+
+    /**
+     * Forgets the verified staged chunks of the write data info,
+     * which were not merged, so the staging files can be written
+     * again without being trusted.
+     *
+     * @param writeDataInfo
+     */
+    void forgetVerifiedStagedChunks(DataInfo writeDataInfo) {
+        writeDataInfo.getCompletedChunks()
+                     .forEach(chunkIndex -> verifiedStagingFiles.remove(getStagingFile(writeDataInfo.getHash(),
+                                                                                       chunkIndex)));
+    }
+
+    @Override
+    protected DataInfo doFindStoredChunks(DataInfo missingDataInfo) throws IOException {
+        // The keys are always derived from the data info, which was stored first
+        DataInfo existingDataInfo = get(missingDataInfo.getHash());
+        DataInfo keyDataInfo = existingDataInfo != null ? existingDataInfo : missingDataInfo;
+
+        return missingDataInfo.empty().withChunks(missingDataInfo.getCompletedChunks().filter(chunkIndex -> {
+            String chunkKey = getChunkKey(keyDataInfo, chunkIndex);
+            return isContentKey(chunkKey) && chunkReferences.containsKey(chunkKey);
+        }));
+    }
+
+    @Override
+    protected void doMerge(DataInfo mergeDataInfo, DataInfo mergedDataInfo) throws IOException {
+        DataInfo existingDataInfo = get(mergeDataInfo.getHash());
+        DataInfo newDataInfo = existingDataInfo != null ? mergeDataInfo.subtract(existingDataInfo) : mergeDataInfo;
+
+        // Move the staged chunks into the store, before they are journaled
+        List<String> newChunkKeys = new ArrayList<>();
+        for (int chunkIndex : mergeDataInfo.getCompletedChunks().toArray()) {
+            String chunkKey = getChunkKey(mergedDataInfo, chunkIndex);
+            Path stagingFile = getStagingFile(mergeDataInfo.getHash(), chunkIndex);
+            boolean verified = verifiedStagingFiles.remove(stagingFile);
+            if (isContentKey(chunkKey) && chunkReferences.containsKey(chunkKey)) {
+                // The same content is already stored
+                Files.deleteIfExists(stagingFile);
+            } else {
+                // Unverified chunks must never be shared
+                // (Only if the data info was stored since the chunks were verified)
+                if (isContentKey(chunkKey) && !mergeDataInfo.canVerifyChunkHashes() && !verified) {
+                    verifyStagedChunk(stagingFile, mergedDataInfo, chunkIndex);
+                }
+
+                Path chunkFile = getChunkFile(chunkKey);
+                Files.move(stagingFile, chunkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (getDurability() != FileDataBaseDurability.OS) {
+                    chunksDirectoryUnforced.set(true);
+                }
+                if (getDurability() == FileDataBaseDurability.GROUP) {
+                    synchronized (unforcedChunkFiles) {
+                        unforcedChunkFiles.add(chunkFile);
+                    }
+                }
+            }
+
+            if (newDataInfo.isChunkCompleted(chunkIndex)) {
+                newChunkKeys.add(chunkKey);
+            }
+        }
+
+        super.doMerge(mergeDataInfo, mergedDataInfo);
+        for (String chunkKey : newChunkKeys) {
+            chunkReferences.merge(chunkKey, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    protected void doForceDataFiles() throws IOException {
+        List<Path> forcedChunkFiles;
+        synchronized (unforcedChunkFiles) {
+            forcedChunkFiles = new ArrayList<>(unforcedChunkFiles);
+            unforcedChunkFiles.clear();
+        }
+
+        try {
+            for (Path chunkFile : forcedChunkFiles) {
+                try (FileChannel fileChannel = FileChannel.open(chunkFile, StandardOpenOption.WRITE)) {
+                    fileChannel.force(false);
+                }
+            }
+            forceChunksDirectory();
+        } catch (IOException | RuntimeException e) {
+            synchronized (unforcedChunkFiles) {
+                unforcedChunkFiles.addAll(forcedChunkFiles);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doMerged() throws IOException {
+        // The renames must be durable before the journal is forced
+        if (getDurability() == FileDataBaseDurability.CHUNK) {
+            forceChunksDirectory();
+        }
+        super.doMerged();
+    }
+
+    @Override
+    protected void doCloseDataFiles() throws IOException {
+        // The chunk files are opened by the channels only
+    }
+
+    public ChunkStoreDataBase(boolean allowOverwrite, Path directory) throws IOException {
+        this(allowOverwrite, directory, FileDataBaseDurability.CHUNK);
+    }
+
+    public ChunkStoreDataBase(boolean allowOverwrite,
+                              Path directory,
+                              FileDataBaseDurability durability) throws IOException {
+        super(allowOverwrite, directory, durability);
+        chunksDirectory = Files.createDirectories(directory.resolve(CHUNKS_DIRECTORY_NAME));
+        stagingDirectory = Files.createDirectories(directory.resolve(STAGING_DIRECTORY_NAME));
+
+        // Staged chunks of an interrupted session were never merged
+        try (DirectoryStream<Path> stagingFiles = Files.newDirectoryStream(stagingDirectory)) {
+            for (Path stagingFile : stagingFiles) {
+                Files.delete(stagingFile);
+            }
+        }
+
+        // Recover the reference counts
+        for (DataInfo dataInfo : getDataInfo().values()) {
+            dataInfo.getCompletedChunks()
+                    .forEach(chunkIndex -> chunkReferences.merge(getChunkKey(dataInfo, chunkIndex),
+                                                                 1,
+                                                                 Integer::sum));
+        }
+    }
+
+    /**
+     * @return The number of stored chunks.
+     */
+    public synchronized int getStoredChunkCount() {
+        return chunkReferences.size();
+    }
+
+    /**
+     * @return The number of completed chunks of all data info,
+     * which is larger than the number of stored chunks, if
+     * chunks are shared.
+     */
+    public synchronized int getChunkReferenceCount() {
+        return chunkReferences.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public boolean supportsDeduplication() {
+        return true;
+    }
+
+    @Override
+    protected AbstractDataBaseWriteChannel openWriteChannel(DataInfo writeDataInfo) throws IOException {
+        return new ChunkStoreDataBaseWriteChannel(this,
+                                                  writeDataInfo,
+                                                  getDurability() == FileDataBaseDurability.CHUNK);
+    }
+
+    @Override
+    protected AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException {
+        return new ChunkStoreDataBaseReadChannel(this, readDataInfo, get(readDataInfo.getHash()));
+    }
+}
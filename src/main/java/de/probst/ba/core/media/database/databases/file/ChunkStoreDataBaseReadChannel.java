@@ -0,0 +1,96 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A read channel of a chunk store data base, which keeps
+ * only the file of the chunk read last open. Positional
+ * reads of this channel are serialized, because they
+ * share the open chunk file.
+ */
+public final class ChunkStoreDataBaseReadChannel extends AbstractDataBaseReadChannel {
+
+    private final ChunkStoreDataBase chunkStoreDataBase;
+
+    // The stored data info, which the chunk keys are derived from
+    private final DataInfo keyDataInfo;
+
+    // Guards the open chunk file
+    private final Object chunkLock = new Object();
+
+    // The file of the chunk, which is read
+    private int openChunkIndex = -1;
+    private FileChannel openChunk;
+
+    private FileChannel getChunk(int chunkIndex) throws IOException {
+        if (openChunkIndex != chunkIndex) {
+            closeChunk();
+            String chunkKey = ChunkStoreDataBase.getChunkKey(keyDataInfo, chunkIndex);
+            openChunk = FileChannel.open(chunkStoreDataBase.getChunkFile(chunkKey), StandardOpenOption.READ);
+            openChunkIndex = chunkIndex;
+        }
+        return openChunk;
+    }
+
+    private void closeChunk() throws IOException {
+        if (openChunk != null) {
+            try {
+                openChunk.close();
+            } finally {
+                openChunk = null;
+                openChunkIndex = -1;
+            }
+        }
+    }
+
+    ChunkStoreDataBaseReadChannel(ChunkStoreDataBase chunkStoreDataBase, DataInfo dataInfo, DataInfo keyDataInfo) {
+        super(chunkStoreDataBase, dataInfo);
+        Objects.requireNonNull(keyDataInfo);
+        this.chunkStoreDataBase = chunkStoreDataBase;
+        this.keyDataInfo = keyDataInfo;
+    }
+
+    @Override
+    protected int doRead(ByteBuffer dst,
+                         int chunkIndex,
+                         long totalChunkOffset,
+                         long relativeChunkOffset,
+                         long chunkSize) throws IOException {
+
+        synchronized (chunkLock) {
+            return getChunk(chunkIndex).read(dst, relativeChunkOffset);
+        }
+    }
+
+    @Override
+    protected long doTransferTo(WritableByteChannel target,
+                                int chunkIndex,
+                                long totalChunkOffset,
+                                long relativeChunkOffset,
+                                long length) throws IOException {
+
+        synchronized (chunkLock) {
+            return getChunk(chunkIndex).transferTo(relativeChunkOffset, length, target);
+        }
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return true;
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        synchronized (chunkLock) {
+            closeChunk();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A write channel of a chunk store data base, which
+ * writes every chunk into its own staging file.
+ */
+public final class ChunkStoreDataBaseWriteChannel extends AbstractDataBaseWriteChannel {
+
+    private final ChunkStoreDataBase chunkStoreDataBase;
+    private final boolean force;
+
+    // The staging file of the chunk, which is written
+    private int stagedChunkIndex = -1;
+    private FileChannel stagedChunk;
+
+    private FileChannel getStagedChunk(int chunkIndex) throws IOException {
+        if (stagedChunkIndex != chunkIndex) {
+            closeStagedChunk();
+            stagedChunk = FileChannel.open(chunkStoreDataBase.getStagingFile(getDataInfo().getHash(), chunkIndex),
+                                           StandardOpenOption.CREATE,
+                                           StandardOpenOption.WRITE);
+            stagedChunkIndex = chunkIndex;
+        }
+        return stagedChunk;
+    }
+
+    private void closeStagedChunk() throws IOException {
+        if (stagedChunk != null) {
+            try {
+                // The chunks must be durable before they are journaled
+                if (force) {
+                    stagedChunk.force(false);
+                }
+            } finally {
+                stagedChunk.close();
+                stagedChunk = null;
+                stagedChunkIndex = -1;
+            }
+        }
+    }
+
+    ChunkStoreDataBaseWriteChannel(ChunkStoreDataBase chunkStoreDataBase, DataInfo dataInfo, boolean force) {
+        super(chunkStoreDataBase, dataInfo);
+        this.chunkStoreDataBase = chunkStoreDataBase;
+        this.force = force;
+    }
+
+    @Override
+    protected int doWrite(ByteBuffer src,
+                          int chunkIndex,
+                          long totalChunkOffset,
+                          long relativeChunkOffset,
+                          long chunkSize) throws IOException {
+
+        return getStagedChunk(chunkIndex).write(src, relativeChunkOffset);
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        closeStagedChunk();
+
+        // Hashing the staged chunks is slow, so it
+        // must not happen while the chunks are merged
+        try {
+            if (isCompleted()) {
+                chunkStoreDataBase.verifyStagedChunks(getDataInfo());
+            }
+            super.doClose();
+        } finally {
+            chunkStoreDataBase.forgetVerifiedStagedChunks(getDataInfo());
+        }
+    }
+}
@@ -1,84 +1,256 @@
 package de.probst.ba.core.media.database.databases.file;
 
 import de.probst.ba.core.media.database.DataInfo;
-import de.probst.ba.core.media.database.databases.AbstractDataBase;
 import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
 import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
 import de.probst.ba.core.util.io.IOUtil;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by chrisprobst on 09.10.14.
+ * <p>
+ * Full preallocation fills the data files in the background,
+ * so inserting a new hash never waits for the disk. The write
+ * channels of the hash wait for the filled file before their
+ * first write, which happens on the thread writing the data.
+ * <p>
+ * The direct write-behind buffers of the write channels
+ * are pooled, so a transfer does not allocate a new one.
  */
-public final class FileDataBase extends AbstractDataBase {
+public final class FileDataBase extends AbstractFileDataBase {
+
+    // The default size of the write-behind buffer of each write channel
+    public static final int DEFAULT_WRITE_BUFFER_SIZE = 256 * 1024;
+
+    // The size of the zero blocks, which fill preallocated data files
+    public static final int PREALLOCATION_BLOCK_SIZE = 1024 * 1024;
+
+    // The maximal number of pooled write-behind buffers
+    public static final int MAX_POOLED_WRITE_BUFFERS = 64;
+
+    private final Logger logger = LoggerFactory.getLogger(FileDataBase.class);
+    private final int writeBufferSize;
+    private final FileDataBasePreallocation preallocation;
+
+    // The file channels by hash, so compatible data info
+    // with and without chunk hashes share the same file,
+    // concurrent because group commits force them unlocked
+    private final Map<String, FileChannel> fileChannels = new ConcurrentHashMap<>();
+
+    // The pending full preallocations by hash
+    private final Map<String, Future<?>> preallocations = new HashMap<>();
+
+    // Fills the data files with zeros, created lazily
+    private ExecutorService preallocationExecutor;
+
+    // The write-behind buffers of closed write channels
+    private final Deque<ByteBuffer> writeBuffers = new ArrayDeque<>();
+
+    private FileChannel getFileChannel(String hash) throws IOException {
+        FileChannel fileChannel = fileChannels.get(hash);
+        if (fileChannel == null) {
+            fileChannels.put(hash, fileChannel = FileChannel.open(getDataFile(hash),
+                                                                  StandardOpenOption.CREATE,
+                                                                  StandardOpenOption.WRITE,
+                                                                  StandardOpenOption.READ));
+        }
+        return fileChannel;
+    }
+
+    private static void extendSparse(FileChannel fileChannel, long size) throws IOException {
+        if (fileChannel.size() < size) {
+            fileChannel.write(ByteBuffer.allocate(1), size - 1);
+        }
+    }
+
+    private void fill(String hash, FileChannel fileChannel, long position, long size) {
+        try {
+            ByteBuffer zeros = ByteBuffer.allocateDirect((int) Math.min(PREALLOCATION_BLOCK_SIZE, size - position));
+            while (position < size) {
+                zeros.clear().limit((int) Math.min(zeros.capacity(), size - position));
+                position += fileChannel.write(zeros, position);
+            }
+        } catch (IOException e) {
+            // The data base was closed
+            if (!fileChannel.isOpen()) {
+                return;
+            }
+
+            logger.warn("Preallocation of " + hash + " failed, falling back to a sparse file", e);
+            try {
+                extendSparse(fileChannel, size);
+            } catch (IOException sparseException) {
+                logger.warn("Sparse preallocation of " + hash + " failed", sparseException);
+            }
+        }
+    }
+
+    private Future<?> preallocate(String hash, FileChannel fileChannel, long size) throws IOException {
+        // The file of the hash might still be filled
+        Future<?> pendingPreallocation = preallocations.get(hash);
+        if (pendingPreallocation != null) {
+            if (!pendingPreallocation.isDone()) {
+                return pendingPreallocation;
+            }
+            preallocations.remove(hash);
+        }
 
-    public static final String LOCK_FILE_NAME = "db.lock";
+        long position = fileChannel.size();
+        if (position >= size || preallocation == FileDataBasePreallocation.NONE) {
+            return CompletableFuture.completedFuture(null);
+        } else if (preallocation == FileDataBasePreallocation.SPARSE) {
+            extendSparse(fileChannel, size);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (preallocationExecutor == null) {
+            preallocationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "preallocation-" + getDirectory().getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingPreallocation = preallocationExecutor.submit(() -> fill(hash, fileChannel, position, size));
+        preallocations.put(hash, pendingPreallocation);
+        return pendingPreallocation;
+    }
+
+    /**
+     * @return A cleared write-behind buffer or null, if disabled.
+     */
+    ByteBuffer acquireWriteBuffer() {
+        if (writeBufferSize == 0) {
+            return null;
+        }
+
+        synchronized (writeBuffers) {
+            ByteBuffer writeBuffer = writeBuffers.poll();
+            if (writeBuffer != null) {
+                writeBuffer.clear();
+                return writeBuffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(writeBufferSize);
+    }
 
-    private final Path directory;
-    private final FileChannel lockFile;
-    private final Map<DataInfo, FileChannel> fileChannels = new HashMap<>();
+    /**
+     * Returns a write-behind buffer, which must not be used anymore.
+     *
+     * @param writeBuffer
+     */
+    void releaseWriteBuffer(ByteBuffer writeBuffer) {
+        Objects.requireNonNull(writeBuffer);
+        synchronized (writeBuffers) {
+            if (writeBuffers.size() < MAX_POOLED_WRITE_BUFFERS) {
+                writeBuffers.push(writeBuffer);
+            }
+        }
+    }
 
     @Override
-    protected void doClose() throws IOException {
+    protected void doForceDataFiles() throws IOException {
+        for (FileChannel fileChannel : fileChannels.values()) {
+            fileChannel.force(false);
+        }
+    }
+
+    @Override
+    protected void doCloseDataFiles() throws IOException {
+        // Pending preallocations stop, when the files are closed
+        if (preallocationExecutor != null) {
+            preallocationExecutor.shutdown();
+        }
+        preallocations.clear();
+
         try {
             IOUtil.closeAllAndThrow(fileChannels.values());
         } finally {
             fileChannels.clear();
-            lockFile.close();
         }
     }
 
     public FileDataBase(boolean allowOverwrite, Path directory) throws IOException {
-        super(allowOverwrite);
-        Objects.requireNonNull(directory);
+        this(allowOverwrite, directory, FileDataBaseDurability.CHUNK);
+    }
 
-        // Make sure the directory exists
-        Files.createDirectories(directory);
+    public FileDataBase(boolean allowOverwrite,
+                        Path directory,
+                        FileDataBaseDurability durability) throws IOException {
+        this(allowOverwrite, directory, durability, DEFAULT_WRITE_BUFFER_SIZE);
+    }
 
-        // Open lock file
-        lockFile = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
-                                    StandardOpenOption.CREATE,
-                                    StandardOpenOption.WRITE,
-                                    StandardOpenOption.SYNC);
+    public FileDataBase(boolean allowOverwrite,
+                        Path directory,
+                        FileDataBaseDurability durability,
+                        int writeBufferSize) throws IOException {
+        this(allowOverwrite, directory, durability, writeBufferSize, FileDataBasePreallocation.NONE);
+    }
 
-        // Try to lock the file
-        FileLock fileLock = lockFile.tryLock();
-        if (fileLock == null || !fileLock.isValid()) {
-            try {
-                throw new IOException("fileLock == null || !fileLock.isValid()");
-            } finally {
-                lockFile.close();
-            }
+    /**
+     * Creates a file data base.
+     *
+     * @param allowOverwrite
+     * @param directory
+     * @param durability
+     * @param writeBufferSize The size of the buffer, which coalesces
+     *                        sequential writes, 0 disables the buffer.
+     * @param preallocation   How the data file of a new hash is reserved.
+     * @throws IOException
+     */
+    public FileDataBase(boolean allowOverwrite,
+                        Path directory,
+                        FileDataBaseDurability durability,
+                        int writeBufferSize,
+                        FileDataBasePreallocation preallocation) throws IOException {
+        super(allowOverwrite, directory, durability);
+        Objects.requireNonNull(preallocation);
+
+        if (writeBufferSize < 0) {
+            throw new IllegalArgumentException("writeBufferSize < 0");
         }
+        this.writeBufferSize = writeBufferSize;
+        this.preallocation = preallocation;
+    }
 
-        // Save the database directory
-        this.directory = directory;
+    /**
+     * @return How the data file of a new hash is reserved.
+     */
+    public FileDataBasePreallocation getPreallocation() {
+        return preallocation;
     }
 
     @Override
     protected AbstractDataBaseWriteChannel openWriteChannel(DataInfo writeDataInfo) throws IOException {
-        DataInfo full = writeDataInfo.full();
-        FileChannel fileChannel = fileChannels.get(full);
-        if (fileChannel == null) {
-            fileChannels.put(full, fileChannel = FileChannel.open(directory.resolve(full.getHash()),
-                                                                  StandardOpenOption.CREATE,
-                                                                  StandardOpenOption.WRITE,
-                                                                  StandardOpenOption.READ));
-        }
-        return new FileDataBaseWriteChannel(this, writeDataInfo, fileChannel);
+        FileChannel fileChannel = getFileChannel(writeDataInfo.getHash());
+        return new FileDataBaseWriteChannel(this,
+                                            writeDataInfo,
+                                            fileChannel,
+                                            getDurability() == FileDataBaseDurability.CHUNK,
+                                            preallocate(writeDataInfo.getHash(),
+                                                        fileChannel,
+                                                        writeDataInfo.getSize()));
     }
 
     @Override
     protected AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException {
-        return new FileDataBaseReadChannel(this, readDataInfo, fileChannels.get(readDataInfo.full()));
+        return new FileDataBaseReadChannel(this, readDataInfo, getFileChannel(readDataInfo.getHash()));
     }
 }
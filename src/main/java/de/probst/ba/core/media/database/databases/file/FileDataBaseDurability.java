@@ -0,0 +1,28 @@
+package de.probst.ba.core.media.database.databases.file;
+
+/**
+ * Defines when a file data base forces written chunks
+ * and their journal records to disk.
+ */
+public enum FileDataBaseDurability {
+
+    /**
+     * Every closed write channel forces its data file and the
+     * journal record. No merged chunk is lost after a crash.
+     */
+    CHUNK,
+
+    /**
+     * All data files and the journal records of the merged chunks
+     * are forced together periodically. At most the chunks merged
+     * since the last commit are lost after a crash.
+     */
+    GROUP,
+
+    /**
+     * Nothing is forced, the operating system decides when to write
+     * to disk. After a crash, the journal might contain chunks whose
+     * data was lost.
+     */
+    OS
+}
@@ -0,0 +1,506 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the data info of a file data base.
+ * <p>
+ * The first merge of a hash appends the whole data info,
+ * later merges only append the indices of the merged chunks.
+ * Proven chunk hashes of data info without chunk hashes are
+ * appended as records of their own.
+ * Every record is framed with its length and a checksum, so
+ * a torn record at the end of the journal is detected and
+ * discarded on recovery. The records are written in an explicit
+ * binary form, a record which cannot be decoded is discarded
+ * like a torn record. If the journal grows too large, it
+ * is compacted by atomically replacing it with one record
+ * per data info.
+ * <p>
+ * Appends only write the record. Forcing and compacting the
+ * journal never hold the monitor of the journal while forcing
+ * the records, so appends of other threads do not wait for
+ * the disk, except for the short swap of a compaction.
+ */
+final class FileDataBaseJournal implements Closeable {
+
+    public static final String JOURNAL_FILE_NAME = "db.journal";
+    public static final String COMPACT_JOURNAL_FILE_NAME = "db.journal.compact";
+
+    // The record types
+    private static final byte DATA_INFO_RECORD = 1;
+    private static final byte CHUNKS_RECORD = 2;
+    private static final byte CHUNK_HASH_PROOFS_RECORD = 3;
+
+    // The size of type and length
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
+
+    // The size of the checksum
+    private static final int TRAILER_SIZE = Integer.BYTES;
+
+    // The minimal number of records before compacting
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
+    private static byte[] frame(byte type, byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(type);
+        crc32.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE);
+        record.put(type).putInt(payload.length).put(payload).putInt((int) crc32.getValue());
+        return record.array();
+    }
+
+    private static byte[] dataInfoRecord(DataInfo dataInfo) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+            dataInfo.write(dataOutputStream);
+        }
+        return frame(DATA_INFO_RECORD, byteArrayOutputStream.toByteArray());
+    }
+
+    private static byte[] chunksRecord(DataInfo dataInfo) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+            dataOutputStream.writeUTF(dataInfo.getHash());
+            dataOutputStream.writeInt(dataInfo.getCompletedChunkCount());
+            for (int chunkIndex : dataInfo.getCompletedChunks().toArray()) {
+                dataOutputStream.writeInt(chunkIndex);
+            }
+        }
+        return frame(CHUNKS_RECORD, byteArrayOutputStream.toByteArray());
+    }
+
+    private static byte[] chunkHashProofsRecord(String hash,
+                                                Collection<ChunkHashProof> chunkHashProofs) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+            dataOutputStream.writeUTF(hash);
+            dataOutputStream.writeInt(chunkHashProofs.size());
+            for (ChunkHashProof chunkHashProof : chunkHashProofs) {
+                chunkHashProof.write(dataOutputStream);
+            }
+        }
+        return frame(CHUNK_HASH_PROOFS_RECORD, byteArrayOutputStream.toByteArray());
+    }
+
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (AccessDeniedException e) {
+            // Some platforms, like windows, cannot open directories
+            // and make renames durable without forcing the directory
+        }
+    }
+
+    private static void writeFully(FileChannel fileChannel, byte[] record) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(record);
+        while (byteBuffer.hasRemaining()) {
+            fileChannel.write(byteBuffer);
+        }
+    }
+
+    private final Path directory;
+    private final Path journalFile;
+    private final Path compactJournalFile;
+
+    // Only one compaction runs at a time
+    private final Object compactLock = new Object();
+
+    // The recovered or journaled data info by hash
+    private final Map<String, DataInfo> dataInfo = new HashMap<>();
+
+    // The recovered or journaled chunk hash proofs by hash and chunk index
+    private final Map<String, Map<Integer, ChunkHashProof>> chunkHashProofs = new HashMap<>();
+
+    // The number of records in the journal
+    private int recordCount;
+
+    private volatile FileChannel fileChannel;
+
+    private boolean closed;
+
+    /**
+     * Reads all valid records of the journal and cuts
+     * off everything after the last valid record.
+     *
+     * @throws IOException
+     */
+    private void recover() throws IOException {
+        // The chunks of all chunks records, applied once at the end
+        Map<String, BitSet> recoveredChunks = new HashMap<>();
+
+        long validSize = 0;
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+        while (journal.remaining() >= HEADER_SIZE + TRAILER_SIZE) {
+            byte type = journal.get();
+            int length = journal.getInt();
+            if (length < 0 || journal.remaining() < length + TRAILER_SIZE) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            journal.get(payload);
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(type);
+            crc32.update(payload);
+            if ((int) crc32.getValue() != journal.getInt()) {
+                break;
+            }
+
+            // A record, which cannot be decoded, is handled like a torn record
+            try (DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(payload))) {
+                apply(type, dataInputStream, recoveredChunks);
+                if (dataInputStream.available() != 0) {
+                    throw new IOException("dataInputStream.available() != 0");
+                }
+            } catch (IOException e) {
+                break;
+            }
+
+            validSize = journal.position();
+            recordCount++;
+        }
+
+        recoveredChunks.forEach((hash, chunks) -> dataInfo.put(hash, dataInfo.get(hash).withChunks(chunks.stream())));
+
+        // Discard a torn record
+        fileChannel = FileChannel.open(journalFile, StandardOpenOption.WRITE);
+        fileChannel.truncate(validSize);
+        fileChannel.position(validSize);
+    }
+
+    private void apply(byte type, DataInputStream dataInputStream, Map<String, BitSet> recoveredChunks)
+            throws IOException {
+        if (type == DATA_INFO_RECORD) {
+            DataInfo recoveredDataInfo = DataInfo.read(dataInputStream);
+            dataInfo.put(recoveredDataInfo.getHash(), recoveredDataInfo);
+            recoveredChunks.remove(recoveredDataInfo.getHash());
+        } else if (type == CHUNKS_RECORD) {
+            String hash = dataInputStream.readUTF();
+            DataInfo existingDataInfo = dataInfo.get(hash);
+            int count = dataInputStream.readInt();
+            if (existingDataInfo == null || count < 0) {
+                throw new IOException("existingDataInfo == null || count < 0");
+            }
+
+            BitSet chunks = recoveredChunks.computeIfAbsent(hash, h -> new BitSet());
+            for (int i = 0; i < count; i++) {
+                int chunkIndex = dataInputStream.readInt();
+                if (chunkIndex < 0 || chunkIndex >= existingDataInfo.getChunkCount()) {
+                    throw new IOException("chunkIndex < 0 || chunkIndex >= existingDataInfo.getChunkCount()");
+                }
+                chunks.set(chunkIndex);
+            }
+        } else if (type == CHUNK_HASH_PROOFS_RECORD) {
+            String hash = dataInputStream.readUTF();
+            int count = dataInputStream.readInt();
+            if (count < 0) {
+                throw new IOException("count < 0");
+            }
+
+            List<ChunkHashProof> recoveredChunkHashProofs = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                recoveredChunkHashProofs.add(ChunkHashProof.read(dataInputStream));
+            }
+            putChunkHashProofs(hash, recoveredChunkHashProofs);
+        } else {
+            throw new IOException("Unknown record type: " + type);
+        }
+    }
+
+    private void putChunkHashProofs(String hash, Collection<ChunkHashProof> putChunkHashProofs) {
+        Map<Integer, ChunkHashProof> hashChunkHashProofs = chunkHashProofs.computeIfAbsent(hash, h -> new HashMap<>());
+        for (ChunkHashProof chunkHashProof : putChunkHashProofs) {
+            hashChunkHashProofs.put(chunkHashProof.getChunkIndex(), chunkHashProof);
+        }
+    }
+
+    private void append(byte[] record) throws IOException {
+        writeFully(fileChannel, record);
+        recordCount++;
+    }
+
+    private synchronized boolean isCompactionNecessary() {
+        return !closed && recordCount > Math.max(MIN_COMPACT_RECORDS, (dataInfo.size() + chunkHashProofs.size()) * 4);
+    }
+
+    private synchronized List<byte[]> compactRecords() throws IOException {
+        List<byte[]> records = new ArrayList<>(dataInfo.size() + chunkHashProofs.size());
+        for (DataInfo journaledDataInfo : dataInfo.values()) {
+            records.add(dataInfoRecord(journaledDataInfo));
+        }
+        for (Map.Entry<String, Map<Integer, ChunkHashProof>> entry : chunkHashProofs.entrySet()) {
+            records.add(chunkHashProofsRecord(entry.getKey(), entry.getValue().values()));
+        }
+        return records;
+    }
+
+    /**
+     * Copies the records, which were appended to the journal
+     * since the given position, to the compacted journal.
+     *
+     * @param compactChannel
+     * @param position
+     * @throws IOException
+     */
+    private void copyAppendedRecords(FileChannel compactChannel, long position) throws IOException {
+        long size = fileChannel.position();
+        if (size == position) {
+            return;
+        }
+
+        try (FileChannel journalChannel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            while (position < size) {
+                position += compactChannel.transferFrom(journalChannel.position(position),
+                                                        compactChannel.position(),
+                                                        size - position);
+                compactChannel.position(compactChannel.size());
+            }
+        }
+        compactChannel.force(false);
+    }
+
+    /**
+     * Replaces the journal with the compacted journal, whose
+     * channel is used for appending afterwards. If the journal
+     * cannot be replaced, the old journal is appended again.
+     *
+     * @param compactChannel
+     * @param compactRecordCount
+     * @throws IOException
+     */
+    private void swap(FileChannel compactChannel, int compactRecordCount) throws IOException {
+        // Some platforms cannot replace open files
+        fileChannel.close();
+
+        boolean moved = false;
+        try {
+            Files.move(compactJournalFile, journalFile, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+
+            // The move itself must be durable, before the journal is appended again
+            forceDirectory(directory);
+        } finally {
+            if (moved) {
+                fileChannel = compactChannel;
+                recordCount = compactRecordCount;
+            } else {
+                try {
+                    compactChannel.close();
+                } finally {
+                    fileChannel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+            }
+        }
+    }
+
+    FileDataBaseJournal(Path directory) throws IOException {
+        Objects.requireNonNull(directory);
+        this.directory = directory;
+        journalFile = directory.resolve(JOURNAL_FILE_NAME);
+        compactJournalFile = directory.resolve(COMPACT_JOURNAL_FILE_NAME);
+
+        // A compaction might have been interrupted
+        Files.deleteIfExists(compactJournalFile);
+
+        if (Files.exists(journalFile)) {
+            recover();
+        } else {
+            fileChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        compactIfNecessary();
+    }
+
+    /**
+     * @return The recovered data info.
+     */
+    Collection<DataInfo> getDataInfo() {
+        return dataInfo.values();
+    }
+
+    /**
+     * @return The recovered chunk hash proofs by hash.
+     */
+    Map<String, Collection<ChunkHashProof>> getChunkHashProofs() {
+        Map<String, Collection<ChunkHashProof>> recoveredChunkHashProofs = new HashMap<>();
+        chunkHashProofs.forEach((hash, proofs) -> recoveredChunkHashProofs.put(hash, proofs.values()));
+        return recoveredChunkHashProofs;
+    }
+
+    /**
+     * Appends the proven chunk hashes of merged chunks.
+     *
+     * @param hash
+     * @param appendChunkHashProofs
+     * @throws IOException
+     */
+    synchronized void append(String hash, Collection<ChunkHashProof> appendChunkHashProofs) throws IOException {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(appendChunkHashProofs);
+
+        append(chunkHashProofsRecord(hash, appendChunkHashProofs));
+        putChunkHashProofs(hash, appendChunkHashProofs);
+    }
+
+    /**
+     * Appends the chunks of the merged data info.
+     *
+     * @param mergeDataInfo
+     * @param mergedDataInfo
+     * @throws IOException
+     */
+    synchronized void append(DataInfo mergeDataInfo, DataInfo mergedDataInfo) throws IOException {
+        Objects.requireNonNull(mergeDataInfo);
+        Objects.requireNonNull(mergedDataInfo);
+
+        if (dataInfo.containsKey(mergedDataInfo.getHash())) {
+            append(chunksRecord(mergeDataInfo));
+        } else {
+            append(dataInfoRecord(mergedDataInfo));
+        }
+        dataInfo.put(mergedDataInfo.getHash(), mergedDataInfo);
+    }
+
+    /**
+     * Forces all appended records to disk without
+     * blocking concurrent appends.
+     *
+     * @throws IOException
+     */
+    void force() throws IOException {
+        while (true) {
+            FileChannel forcedChannel = fileChannel;
+            try {
+                forcedChannel.force(false);
+                return;
+            } catch (ClosedChannelException e) {
+                synchronized (this) {
+                    // The records were forced on close
+                    if (closed) {
+                        return;
+                    }
+
+                    // A compaction swapped the channel, force the new one
+                    if (forcedChannel == fileChannel) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compacts the journal, if there are much more
+     * records than data info.
+     *
+     * @throws IOException
+     */
+    void compactIfNecessary() throws IOException {
+        synchronized (compactLock) {
+            if (isCompactionNecessary()) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Writes one record per data info into a new journal,
+     * which atomically replaces the old journal.
+     * <p>
+     * The compacted journal is written and forced without
+     * blocking appends. Only the records appended in the
+     * meantime are copied while appends wait.
+     *
+     * @throws IOException
+     */
+    void compact() throws IOException {
+        synchronized (compactLock) {
+            List<byte[]> compactRecords;
+            long compactPosition;
+            int compactRecordCount;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                compactRecords = compactRecords();
+                compactPosition = fileChannel.position();
+                compactRecordCount = recordCount;
+            }
+
+            FileChannel compactChannel = FileChannel.open(compactJournalFile,
+                                                          StandardOpenOption.CREATE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING,
+                                                          StandardOpenOption.WRITE);
+            try {
+                for (byte[] compactRecord : compactRecords) {
+                    writeFully(compactChannel, compactRecord);
+                }
+                compactChannel.force(true);
+
+                synchronized (this) {
+                    if (closed) {
+                        compactChannel.close();
+                        return;
+                    }
+                    copyAppendedRecords(compactChannel, compactPosition);
+                    swap(compactChannel, compactRecords.size() + recordCount - compactRecordCount);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (compactChannel != fileChannel) {
+                    try {
+                        compactChannel.close();
+                    } catch (IOException closeException) {
+                        e.addSuppressed(closeException);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Forces and closes the journal.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            fileChannel.force(false);
+        } finally {
+            fileChannel.close();
+        }
+    }
+}
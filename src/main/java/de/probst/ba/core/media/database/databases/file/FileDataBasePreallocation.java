@@ -0,0 +1,33 @@
+package de.probst.ba.core.media.database.databases.file;
+
+/**
+ * Defines how a file data base reserves the data file
+ * of a hash, when the hash is inserted the first time.
+ */
+public enum FileDataBasePreallocation {
+
+    /**
+     * The data file grows with the written chunks. Chunks
+     * written in random order fragment the file.
+     */
+    NONE,
+
+    /**
+     * The data file is extended to its full size without
+     * allocating disk space, the file system allocates the
+     * blocks when the chunks are written.
+     */
+    SPARSE,
+
+    /**
+     * The data file is filled with zeros up to its full size,
+     * so the file system allocates mostly contiguous blocks.
+     * If the file cannot be filled, it is extended sparse.
+     * <p>
+     * The file is filled in the background and the first write
+     * waits until it is filled. Every byte of a new hash is
+     * written twice, once as zero and once with the data, so
+     * this doubles the write volume of new data.
+     */
+    FULL
+}
@@ -7,6 +7,7 @@ import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Objects;
 
 public final class FileDataBaseReadChannel extends AbstractDataBaseReadChannel {
@@ -30,4 +31,19 @@ public final class FileDataBaseReadChannel extends AbstractDataBaseReadChannel {
 
         return fileChannel.read(dst, totalChunkOffset + relativeChunkOffset);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected long doTransferTo(WritableByteChannel target,
+                                int chunkIndex,
+                                long totalChunkOffset,
+                                long relativeChunkOffset,
+                                long length) throws IOException {
+
+        return fileChannel.transferTo(totalChunkOffset + relativeChunkOffset, length, target);
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return true;
+    }
+}
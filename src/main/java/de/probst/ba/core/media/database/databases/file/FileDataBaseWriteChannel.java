@@ -1,24 +1,85 @@
 package de.probst.ba.core.media.database.databases.file;
 
 import de.probst.ba.core.media.database.DataInfo;
-import de.probst.ba.core.media.database.databases.AbstractDataBase;
 import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+/**
+ * A write channel of a file data base.
+ * <p>
+ * Sequential writes are coalesced in a write-behind buffer, so
+ * many small network buffers become few large positional writes.
+ * The buffer is flushed, before the written chunks are merged,
+ * and returned to the pool of the data base afterwards.
+ * <p>
+ * If the data file is still preallocated, the first write
+ * waits until the preallocation completed.
+ */
 public final class FileDataBaseWriteChannel extends AbstractDataBaseWriteChannel {
 
+    private final FileDataBase fileDataBase;
     private final FileChannel fileChannel;
+    private final boolean force;
 
-    public FileDataBaseWriteChannel(AbstractDataBase dataBase,
-                                    DataInfo dataInfo,
-                                    FileChannel fileChannel) {
-        super(dataBase, dataInfo);
+    // The pooled write-behind buffer, if enabled
+    private ByteBuffer writeBuffer;
+
+    // The file position of the write-behind buffer
+    private long writeBufferPosition;
+
+    // The pending preallocation of the data file
+    // (Null if the preallocation completed)
+    private Future<?> preallocation;
+
+    private void awaitPreallocation() throws IOException {
+        try {
+            preallocation.get();
+            preallocation = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the preallocation");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            fileChannel.write(writeBuffer, writeBufferPosition + writeBuffer.position());
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * Creates a write channel.
+     *
+     * @param fileDataBase
+     * @param dataInfo
+     * @param fileChannel
+     * @param force
+     * @param preallocation The pending preallocation of the data file or null.
+     */
+    FileDataBaseWriteChannel(FileDataBase fileDataBase,
+                             DataInfo dataInfo,
+                             FileChannel fileChannel,
+                             boolean force,
+                             Future<?> preallocation) {
+        super(fileDataBase, dataInfo);
         Objects.requireNonNull(fileChannel);
+
+        this.fileDataBase = fileDataBase;
         this.fileChannel = fileChannel;
+        this.force = force;
+        writeBuffer = fileDataBase.acquireWriteBuffer();
+        this.preallocation = preallocation;
     }
 
     @Override
@@ -28,12 +89,59 @@ public final class FileDataBaseWriteChannel extends AbstractDataBaseWriteChannel
                           long relativeChunkOffset,
                           long chunkSize) throws IOException {
 
-        return fileChannel.write(src, totalChunkOffset + relativeChunkOffset);
+        if (preallocation != null) {
+            awaitPreallocation();
+        }
+
+        long position = totalChunkOffset + relativeChunkOffset;
+        if (writeBuffer == null) {
+            return fileChannel.write(src, position);
+        }
+
+        // Only sequential writes are coalesced
+        if (writeBuffer.position() > 0 && writeBufferPosition + writeBuffer.position() != position) {
+            flush();
+        }
+
+        int written = 0;
+        while (src.hasRemaining()) {
+            // Large writes bypass the buffer
+            if (writeBuffer.position() == 0) {
+                if (src.remaining() >= writeBuffer.capacity()) {
+                    return written + fileChannel.write(src, position + written);
+                }
+                writeBufferPosition = position + written;
+            }
+
+            int length = Math.min(src.remaining(), writeBuffer.remaining());
+            ByteBuffer slice = src.duplicate();
+            slice.limit(slice.position() + length);
+            writeBuffer.put(slice);
+            src.position(src.position() + length);
+            written += length;
+
+            if (!writeBuffer.hasRemaining()) {
+                flush();
+            }
+        }
+        return written;
     }
 
     @Override
     protected void doClose() throws IOException {
+        if (writeBuffer != null) {
+            try {
+                flush();
+            } finally {
+                fileDataBase.releaseWriteBuffer(writeBuffer);
+                writeBuffer = null;
+            }
+        }
+
+        // The chunks must be durable before they are journaled
+        if (force) {
+            fileChannel.force(false);
+        }
         super.doClose();
-        fileChannel.force(true);
     }
-}
\ No newline at end of file
+}
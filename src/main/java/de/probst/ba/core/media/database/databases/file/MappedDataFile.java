@@ -0,0 +1,178 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A data file which is mapped into memory in windows
+ * of a fixed size, so files above 2 GB can be mapped.
+ * <p>
+ * Windows are mapped lazily on first access and stay
+ * mapped until the file is closed.
+ */
+final class MappedDataFile implements Channel {
+
+    // The default size of a window, 64 MB
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+    private final FileChannel fileChannel;
+    private final long size;
+    private final int windowSize;
+    private final MappedByteBuffer[] windows;
+
+    private synchronized ByteBuffer getWindow(long offset) throws IOException {
+        int index = getWindowIndex(offset);
+        MappedByteBuffer window = windows[index];
+        if (window == null) {
+            long position = (long) index * windowSize;
+            windows[index] = window = fileChannel.map(FileChannel.MapMode.READ_WRITE,
+                                                      position,
+                                                      Math.min(windowSize, size - position));
+        }
+
+        // Independent position and limit
+        ByteBuffer duplicate = window.duplicate();
+        duplicate.position((int) (offset - (long) index * windowSize));
+        return duplicate;
+    }
+
+    MappedDataFile(Path file, long size, int windowSize) throws IOException {
+        Objects.requireNonNull(file);
+
+        if (size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize <= 0");
+        }
+
+        long windowCount = (size + windowSize - 1) / windowSize;
+        if (windowCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("windowCount > Integer.MAX_VALUE");
+        }
+
+        fileChannel = FileChannel.open(file,
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.READ);
+        this.size = size;
+        this.windowSize = windowSize;
+        windows = new MappedByteBuffer[(int) windowCount];
+    }
+
+    /**
+     * @return The size of the data.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns a read-only slice of the data at the given offset,
+     * which ends at the given length or the end of the window.
+     *
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    ByteBuffer slice(long offset, int length) throws IOException {
+        ByteBuffer window = getWindow(offset);
+        window.limit(window.position() + Math.min(length, window.remaining()));
+        return window.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies bytes into the destination buffer.
+     *
+     * @param dst
+     * @param offset
+     * @return The number of copied bytes.
+     * @throws IOException
+     */
+    int read(ByteBuffer dst, long offset) throws IOException {
+        ByteBuffer slice = slice(offset, dst.remaining());
+        int length = slice.remaining();
+        dst.put(slice);
+        return length;
+    }
+
+    /**
+     * Copies bytes from the source buffer directly
+     * into the mapped pages. Writes never cross windows.
+     *
+     * @param src
+     * @param offset
+     * @return The number of copied bytes.
+     * @throws IOException
+     */
+    int write(ByteBuffer src, long offset) throws IOException {
+        ByteBuffer window = getWindow(offset);
+        int length = Math.min(src.remaining(), window.remaining());
+        window.put((ByteBuffer) src.duplicate().limit(src.position() + length));
+        src.position(src.position() + length);
+        return length;
+    }
+
+    /**
+     * @param offset
+     * @return The index of the window, which contains the given offset.
+     */
+    int getWindowIndex(long offset) {
+        return (int) (offset / windowSize);
+    }
+
+    /**
+     * @param windowIndices
+     * @return The mapped windows of the given indices.
+     */
+    private synchronized List<MappedByteBuffer> getMappedWindows(IntStream windowIndices) {
+        return windowIndices.mapToObj(index -> windows[index])
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes all modified pages of the given windows to disk.
+     * <p>
+     * The windows are forced without holding the monitor,
+     * so reads and writes of this file never wait for the disk.
+     *
+     * @param windowIndices
+     */
+    void force(BitSet windowIndices) {
+        getMappedWindows(windowIndices.stream()).forEach(MappedByteBuffer::force);
+    }
+
+    /**
+     * Writes all modified pages of all mapped windows to disk.
+     */
+    void force() {
+        getMappedWindows(IntStream.range(0, windows.length)).forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return fileChannel.isOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // Mappings are released by the garbage collector
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = null;
+        }
+        fileChannel.close();
+    }
+}
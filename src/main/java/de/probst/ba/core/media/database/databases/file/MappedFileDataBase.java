@@ -0,0 +1,93 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+import de.probst.ba.core.util.io.IOUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A file data base which maps the data files into memory.
+ * <p>
+ * Writes land directly in the page cache and read
+ * channels hand out slices of the mapped windows.
+ */
+public final class MappedFileDataBase extends AbstractFileDataBase {
+
+    private final int windowSize;
+
+    // The mapped files by hash, so compatible data info
+    // with and without chunk hashes share the same file,
+    // concurrent because group commits force them unlocked
+    private final Map<String, MappedDataFile> mappedDataFiles = new ConcurrentHashMap<>();
+
+    private MappedDataFile getMappedDataFile(DataInfo dataInfo) throws IOException {
+        String hash = dataInfo.getHash();
+        MappedDataFile mappedDataFile = mappedDataFiles.get(hash);
+        if (mappedDataFile == null) {
+            mappedDataFiles.put(hash, mappedDataFile = new MappedDataFile(getDataFile(hash),
+                                                                          dataInfo.getSize(),
+                                                                          windowSize));
+        }
+        return mappedDataFile;
+    }
+
+    @Override
+    protected void doForceDataFiles() throws IOException {
+        for (MappedDataFile mappedDataFile : mappedDataFiles.values()) {
+            mappedDataFile.force();
+        }
+    }
+
+    @Override
+    protected void doCloseDataFiles() throws IOException {
+        try {
+            IOUtil.closeAllAndThrow(mappedDataFiles.values());
+        } finally {
+            mappedDataFiles.clear();
+        }
+    }
+
+    public MappedFileDataBase(boolean allowOverwrite, Path directory) throws IOException {
+        this(allowOverwrite, directory, MappedDataFile.DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFileDataBase(boolean allowOverwrite,
+                              Path directory,
+                              FileDataBaseDurability durability) throws IOException {
+        this(allowOverwrite, directory, durability, MappedDataFile.DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFileDataBase(boolean allowOverwrite, Path directory, int windowSize) throws IOException {
+        this(allowOverwrite, directory, FileDataBaseDurability.CHUNK, windowSize);
+    }
+
+    public MappedFileDataBase(boolean allowOverwrite,
+                              Path directory,
+                              FileDataBaseDurability durability,
+                              int windowSize) throws IOException {
+        super(allowOverwrite, directory, durability);
+
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize <= 0");
+        }
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    protected AbstractDataBaseWriteChannel openWriteChannel(DataInfo writeDataInfo) throws IOException {
+        return new MappedFileDataBaseWriteChannel(this,
+                                                  writeDataInfo,
+                                                  getMappedDataFile(writeDataInfo),
+                                                  getDurability() == FileDataBaseDurability.CHUNK);
+    }
+
+    @Override
+    protected AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException {
+        return new MappedFileDataBaseReadChannel(this, readDataInfo, getMappedDataFile(readDataInfo));
+    }
+}
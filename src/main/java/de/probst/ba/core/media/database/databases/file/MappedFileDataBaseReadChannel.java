@@ -0,0 +1,64 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+public final class MappedFileDataBaseReadChannel extends AbstractDataBaseReadChannel {
+
+    private final MappedDataFile mappedDataFile;
+
+    MappedFileDataBaseReadChannel(AbstractDataBase dataBase,
+                                  DataInfo dataInfo,
+                                  MappedDataFile mappedDataFile) {
+        super(dataBase, dataInfo);
+        Objects.requireNonNull(mappedDataFile);
+        this.mappedDataFile = mappedDataFile;
+    }
+
+    @Override
+    protected int doRead(ByteBuffer dst,
+                         int chunkIndex,
+                         long totalChunkOffset,
+                         long relativeChunkOffset,
+                         long chunkSize) throws IOException {
+
+        return mappedDataFile.read(dst, totalChunkOffset + relativeChunkOffset);
+    }
+
+    @Override
+    protected ByteBuffer doReadSlice(int chunkIndex,
+                                     long totalChunkOffset,
+                                     long relativeChunkOffset,
+                                     int length) throws IOException {
+
+        return mappedDataFile.slice(totalChunkOffset + relativeChunkOffset, length);
+    }
+
+    @Override
+    protected long doTransferTo(WritableByteChannel target,
+                                int chunkIndex,
+                                long totalChunkOffset,
+                                long relativeChunkOffset,
+                                long length) throws IOException {
+
+        // Written straight from the mapped pages
+        int sliceLength = (int) Math.min(length, Integer.MAX_VALUE);
+        return target.write(mappedDataFile.slice(totalChunkOffset + relativeChunkOffset, sliceLength));
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsSlices() {
+        return true;
+    }
+}
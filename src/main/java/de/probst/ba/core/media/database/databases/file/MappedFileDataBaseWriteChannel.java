@@ -0,0 +1,52 @@
+package de.probst.ba.core.media.database.databases.file;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Objects;
+
+public final class MappedFileDataBaseWriteChannel extends AbstractDataBaseWriteChannel {
+
+    private final MappedDataFile mappedDataFile;
+    private final boolean force;
+
+    // The windows of the mapped data file,
+    // which were written by this channel
+    private final BitSet writtenWindows = new BitSet();
+
+    MappedFileDataBaseWriteChannel(AbstractDataBase dataBase,
+                                   DataInfo dataInfo,
+                                   MappedDataFile mappedDataFile,
+                                   boolean force) {
+        super(dataBase, dataInfo);
+        Objects.requireNonNull(mappedDataFile);
+        this.mappedDataFile = mappedDataFile;
+        this.force = force;
+    }
+
+    @Override
+    protected int doWrite(ByteBuffer src,
+                          int chunkIndex,
+                          long totalChunkOffset,
+                          long relativeChunkOffset,
+                          long chunkSize) throws IOException {
+
+        long offset = totalChunkOffset + relativeChunkOffset;
+        writtenWindows.set(mappedDataFile.getWindowIndex(offset));
+        return mappedDataFile.write(src, offset);
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        // The chunks must be durable before they are journaled,
+        // other windows might be written by other channels
+        if (force) {
+            mappedDataFile.force(writtenWindows);
+        }
+        super.doClose();
+    }
+}
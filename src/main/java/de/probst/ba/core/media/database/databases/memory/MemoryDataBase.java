@@ -16,21 +16,24 @@ import java.util.Map;
  */
 public final class MemoryDataBase extends AbstractDataBase {
 
-    private final Map<DataInfo, ByteBuf> data = new HashMap<>();
+    // The data by hash, so compatible data info
+    // with and without chunk hashes share the same buffer
+    private final Map<String, ByteBuf> data = new HashMap<>();
 
     @Override
     protected AbstractDataBaseWriteChannel openWriteChannel(DataInfo writeDataInfo) throws IOException {
-        DataInfo full = writeDataInfo.full();
-        ByteBuf byteBuf = data.get(full);
+        String hash = writeDataInfo.getHash();
+        ByteBuf byteBuf = data.get(hash);
         if (byteBuf == null) {
-            data.put(full, byteBuf = Unpooled.buffer((int) full.getSize(), (int) full.getSize()));
+            int size = (int) writeDataInfo.getSize();
+            data.put(hash, byteBuf = Unpooled.buffer(size, size));
         }
         return new MemoryDataBaseWriteChannel(this, writeDataInfo, byteBuf);
     }
 
     @Override
     protected AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException {
-        return new MemoryDataBaseReadChannel(this, readDataInfo, data.get(readDataInfo.full()));
+        return new MemoryDataBaseReadChannel(this, readDataInfo, data.get(readDataInfo.getHash()));
     }
 
     public MemoryDataBase(boolean allowOverwrite) {
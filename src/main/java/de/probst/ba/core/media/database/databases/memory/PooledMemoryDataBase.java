@@ -0,0 +1,80 @@
+package de.probst.ba.core.media.database.databases.memory;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.DataInsertException;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+
+/**
+ * A memory data base, which stores every chunk in its own
+ * direct buffer.
+ * <p>
+ * The buffers are taken from a pooled allocator when a chunk
+ * is inserted for the first time and released when this data
+ * base is closed. The data does not live on the heap and the
+ * size of a data info is only limited by the available memory,
+ * only a single chunk must not be larger than 2 GB.
+ */
+public final class PooledMemoryDataBase extends AbstractDataBase {
+
+    private final ByteBufAllocator allocator;
+
+    // The chunks by hash, so compatible data info
+    // with and without chunk hashes share the same buffers
+    private final Map<String, ByteBuf[]> chunks = new HashMap<>();
+
+    @Override
+    protected AbstractDataBaseWriteChannel openWriteChannel(DataInfo writeDataInfo) throws IOException {
+        ByteBuf[] byteBufs = chunks.computeIfAbsent(writeDataInfo.getHash(),
+                                                    hash -> new ByteBuf[writeDataInfo.getChunkCount()]);
+
+        // Allocate the chunks, which are written for the first time
+        for (PrimitiveIterator.OfInt it = writeDataInfo.getCompletedChunks().iterator(); it.hasNext(); ) {
+            int chunkIndex = it.nextInt();
+            long chunkSize = writeDataInfo.getChunkSize(chunkIndex);
+            if (chunkSize > Integer.MAX_VALUE) {
+                throw new DataInsertException("chunkSize > Integer.MAX_VALUE");
+            } else if (byteBufs[chunkIndex] == null) {
+                byteBufs[chunkIndex] = allocator.directBuffer((int) chunkSize, (int) chunkSize);
+            }
+        }
+        return new PooledMemoryDataBaseWriteChannel(this, writeDataInfo, byteBufs);
+    }
+
+    @Override
+    protected AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException {
+        return new PooledMemoryDataBaseReadChannel(this, readDataInfo, chunks.get(readDataInfo.getHash()));
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        for (ByteBuf[] byteBufs : chunks.values()) {
+            for (ByteBuf byteBuf : byteBufs) {
+                if (byteBuf != null) {
+                    byteBuf.release();
+                }
+            }
+        }
+        chunks.clear();
+    }
+
+    public PooledMemoryDataBase(boolean allowOverwrite) {
+        this(allowOverwrite, PooledByteBufAllocator.DEFAULT);
+    }
+
+    public PooledMemoryDataBase(boolean allowOverwrite, ByteBufAllocator allocator) {
+        super(allowOverwrite);
+        Objects.requireNonNull(allocator);
+        this.allocator = allocator;
+    }
+}
@@ -0,0 +1,66 @@
+package de.probst.ba.core.media.database.databases.memory;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+public final class PooledMemoryDataBaseReadChannel extends AbstractDataBaseReadChannel {
+
+    private final ByteBuf[] byteBufs;
+
+    public PooledMemoryDataBaseReadChannel(AbstractDataBase dataBase,
+                                           DataInfo dataInfo,
+                                           ByteBuf[] byteBufs) {
+        super(dataBase, dataInfo);
+        Objects.requireNonNull(byteBufs);
+        this.byteBufs = byteBufs;
+    }
+
+    @Override
+    protected int doRead(ByteBuffer dst,
+                         int chunkIndex,
+                         long totalChunkOffset,
+                         long relativeChunkOffset,
+                         long chunkSize) throws IOException {
+
+        // Reads never span chunks
+        int length = (int) Math.min(dst.remaining(), chunkSize - relativeChunkOffset);
+        dst.put(doReadSlice(chunkIndex, totalChunkOffset, relativeChunkOffset, length));
+        return length;
+    }
+
+    @Override
+    protected ByteBuffer doReadSlice(int chunkIndex,
+                                     long totalChunkOffset,
+                                     long relativeChunkOffset,
+                                     int length) throws IOException {
+
+        return byteBufs[chunkIndex].nioBuffer((int) relativeChunkOffset, length).asReadOnlyBuffer();
+    }
+
+    @Override
+    protected long doTransferTo(WritableByteChannel target,
+                                int chunkIndex,
+                                long totalChunkOffset,
+                                long relativeChunkOffset,
+                                long length) throws IOException {
+
+        return target.write(doReadSlice(chunkIndex, totalChunkOffset, relativeChunkOffset, (int) length));
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsSlices() {
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package de.probst.ba.core.media.database.databases.memory;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+public final class PooledMemoryDataBaseWriteChannel extends AbstractDataBaseWriteChannel {
+
+    private final ByteBuf[] byteBufs;
+
+    public PooledMemoryDataBaseWriteChannel(AbstractDataBase dataBase,
+                                            DataInfo dataInfo,
+                                            ByteBuf[] byteBufs) {
+        super(dataBase, dataInfo);
+        Objects.requireNonNull(byteBufs);
+        this.byteBufs = byteBufs;
+    }
+
+    @Override
+    protected int doWrite(ByteBuffer src,
+                          int chunkIndex,
+                          long totalChunkOffset,
+                          long relativeChunkOffset,
+                          long chunkSize) throws IOException {
+
+        int position = src.position();
+        byteBufs[chunkIndex].setBytes((int) relativeChunkOffset, src);
+        return src.position() - position;
+    }
+}
@@ -0,0 +1,116 @@
+package de.probst.ba.core.media.database.databases.memory;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.DataInsertException;
+import de.probst.ba.core.media.database.databases.AbstractDataBase;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseReadChannel;
+import de.probst.ba.core.media.database.databases.AbstractDataBaseWriteChannel;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+
+/**
+ * A memory data base, which shares its completed chunks with all
+ * other data bases using the same store, so many peers in one
+ * process only hold a single copy of the same data.
+ * <p>
+ * Chunks are written into private buffers and shared, when they
+ * are merged. Every data base keeps its own data info, so the
+ * completed chunks are still independent per data base, while
+ * the interned descriptors are shared anyway.
+ */
+public final class SharedMemoryDataBase extends AbstractDataBase {
+
+    private final SharedMemoryStore sharedMemoryStore;
+
+    // The completed chunks by hash, mostly shared
+    private final Map<String, ByteBuf[]> chunks = new HashMap<>();
+
+    // The private chunks by hash, which are written but not merged yet
+    private final Map<String, ByteBuf[]> writtenChunks = new HashMap<>();
+
+    @Override
+    protected AbstractDataBaseWriteChannel openWriteChannel(DataInfo writeDataInfo) throws IOException {
+        ByteBuf[] byteBufs = writtenChunks.computeIfAbsent(writeDataInfo.getHash(),
+                                                           hash -> new ByteBuf[writeDataInfo.getChunkCount()]);
+
+        // Allocate the private chunks, completed chunks are never written
+        for (PrimitiveIterator.OfInt it = writeDataInfo.getCompletedChunks().iterator(); it.hasNext(); ) {
+            int chunkIndex = it.nextInt();
+            long chunkSize = writeDataInfo.getChunkSize(chunkIndex);
+            if (chunkSize > Integer.MAX_VALUE) {
+                throw new DataInsertException("chunkSize > Integer.MAX_VALUE");
+            } else if (byteBufs[chunkIndex] == null) {
+                byteBufs[chunkIndex] = sharedMemoryStore.allocate((int) chunkSize);
+            }
+        }
+        return new PooledMemoryDataBaseWriteChannel(this, writeDataInfo, byteBufs);
+    }
+
+    @Override
+    protected AbstractDataBaseReadChannel openReadChannel(DataInfo readDataInfo) throws IOException {
+        return new PooledMemoryDataBaseReadChannel(this, readDataInfo, chunks.get(readDataInfo.getHash()));
+    }
+
+    @Override
+    protected void doMerge(DataInfo mergeDataInfo, DataInfo mergedDataInfo) throws IOException {
+        String hash = mergeDataInfo.getHash();
+        ByteBuf[] byteBufs = writtenChunks.get(hash);
+        ByteBuf[] completedChunks = chunks.computeIfAbsent(hash, h -> new ByteBuf[mergeDataInfo.getChunkCount()]);
+
+        // Share the written chunks and replace overwritten ones
+        for (PrimitiveIterator.OfInt it = mergeDataInfo.getCompletedChunks().iterator(); it.hasNext(); ) {
+            int chunkIndex = it.nextInt();
+            ByteBuf written = byteBufs[chunkIndex];
+            byteBufs[chunkIndex] = null;
+
+            ByteBuf completed = completedChunks[chunkIndex];
+            completedChunks[chunkIndex] = sharedMemoryStore.share(hash,
+                                                                  mergeDataInfo.getChunkCount(),
+                                                                  chunkIndex,
+                                                                  written);
+            if (completed != null) {
+                sharedMemoryStore.release(hash, chunkIndex, completed);
+            }
+        }
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        for (Map.Entry<String, ByteBuf[]> entry : chunks.entrySet()) {
+            ByteBuf[] byteBufs = entry.getValue();
+            for (int chunkIndex = 0; chunkIndex < byteBufs.length; chunkIndex++) {
+                if (byteBufs[chunkIndex] != null) {
+                    sharedMemoryStore.release(entry.getKey(), chunkIndex, byteBufs[chunkIndex]);
+                }
+            }
+        }
+        chunks.clear();
+
+        for (ByteBuf[] byteBufs : writtenChunks.values()) {
+            for (ByteBuf byteBuf : byteBufs) {
+                if (byteBuf != null) {
+                    byteBuf.release();
+                }
+            }
+        }
+        writtenChunks.clear();
+    }
+
+    public SharedMemoryDataBase(boolean allowOverwrite, SharedMemoryStore sharedMemoryStore) {
+        super(allowOverwrite);
+        Objects.requireNonNull(sharedMemoryStore);
+        this.sharedMemoryStore = sharedMemoryStore;
+    }
+
+    /**
+     * @return The store, which holds the shared chunks.
+     */
+    public SharedMemoryStore getSharedMemoryStore() {
+        return sharedMemoryStore;
+    }
+}
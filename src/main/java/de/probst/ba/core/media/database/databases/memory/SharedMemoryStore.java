@@ -0,0 +1,140 @@
+package de.probst.ba.core.media.database.databases.memory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The chunks of all shared memory data bases, which use this store.
+ * <p>
+ * A chunk is shared, after a data base completed it. Every other
+ * data base, which completes the same chunk with the same content,
+ * drops its private copy and references the shared chunk instead.
+ * Shared chunks are never written again, a data base which overwrites
+ * a chunk always writes into a private copy first.
+ * <p>
+ * The shared chunks are reference counted and released as
+ * soon as the last data base stops using them.
+ */
+public final class SharedMemoryStore {
+
+    private final ByteBufAllocator allocator;
+
+    // The shared chunks by hash
+    private final Map<String, ByteBuf[]> chunks = new HashMap<>();
+
+    // The number of chunks, which were not shared because they
+    // were already shared by another data base
+    private long deduplicatedChunkCount;
+
+    public SharedMemoryStore() {
+        this(PooledByteBufAllocator.DEFAULT);
+    }
+
+    public SharedMemoryStore(ByteBufAllocator allocator) {
+        Objects.requireNonNull(allocator);
+        this.allocator = allocator;
+    }
+
+    /**
+     * @param chunkSize
+     * @return A new private chunk.
+     */
+    ByteBuf allocate(int chunkSize) {
+        return allocator.directBuffer(chunkSize, chunkSize);
+    }
+
+    /**
+     * Shares the written chunk. If the same chunk is already shared
+     * with the same content, the written chunk is released.
+     *
+     * @param hash
+     * @param chunkCount
+     * @param chunkIndex
+     * @param written
+     * @return The retained chunk, which should be used instead
+     * of the written chunk.
+     */
+    synchronized ByteBuf share(String hash, int chunkCount, int chunkIndex, ByteBuf written) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(written);
+
+        ByteBuf[] sharedChunks = chunks.computeIfAbsent(hash, h -> new ByteBuf[chunkCount]);
+        ByteBuf shared = sharedChunks[chunkIndex];
+        if (shared == null) {
+            // The store keeps its own reference
+            sharedChunks[chunkIndex] = written.retain();
+            return written;
+        } else if (shared != written &&
+                   shared.capacity() == written.capacity() &&
+                   ByteBufUtil.equals(shared, 0, written, 0, written.capacity())) {
+            // Chunks are written by index, so compare the whole chunk
+            written.release();
+            deduplicatedChunkCount++;
+            return shared.retain();
+        } else {
+            // A different content stays private
+            return written;
+        }
+    }
+
+    /**
+     * Releases a chunk, which was returned by share. The
+     * last release of a shared chunk removes it from this store.
+     *
+     * @param hash
+     * @param chunkIndex
+     * @param chunk
+     */
+    synchronized void release(String hash, int chunkIndex, ByteBuf chunk) {
+        Objects.requireNonNull(hash);
+        Objects.requireNonNull(chunk);
+
+        chunk.release();
+        ByteBuf[] sharedChunks = chunks.get(hash);
+        if (sharedChunks != null && sharedChunks[chunkIndex] == chunk && chunk.refCnt() == 1) {
+            sharedChunks[chunkIndex] = null;
+            chunk.release();
+
+            // Forget the hash, if no chunk is shared anymore
+            boolean empty = true;
+            for (ByteBuf sharedChunk : sharedChunks) {
+                if (sharedChunk != null) {
+                    empty = false;
+                    break;
+                }
+            }
+            if (empty) {
+                chunks.remove(hash);
+            }
+        }
+    }
+
+    /**
+     * @return The number of shared chunks.
+     */
+    public synchronized long getSharedChunkCount() {
+        long sharedChunkCount = 0;
+        for (ByteBuf[] sharedChunks : chunks.values()) {
+            for (ByteBuf sharedChunk : sharedChunks) {
+                if (sharedChunk != null) {
+                    sharedChunkCount++;
+                }
+            }
+        }
+        return sharedChunkCount;
+    }
+
+    /**
+     * @return The number of completed chunks, which
+     * were replaced by an already shared chunk.
+     */
+    public synchronized long getDeduplicatedChunkCount() {
+        return deduplicatedChunkCount;
+    }
+}
@@ -0,0 +1,75 @@
+package de.probst.ba.core.media.database.databases.sharded;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The I/O statistics of a single shard of a sharded data base.
+ * <p>
+ * The counters are updated by the channels of the shard, which
+ * might be used by multiple threads, so they are atomic.
+ */
+public final class ShardStatistics {
+
+    private final AtomicLong lookupCount = new AtomicLong();
+    private final AtomicLong insertCount = new AtomicLong();
+    private final AtomicLong readBytes = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+
+    void recordLookup() {
+        lookupCount.incrementAndGet();
+    }
+
+    void recordInsert() {
+        insertCount.incrementAndGet();
+    }
+
+    void recordRead(long bytes) {
+        if (bytes > 0) {
+            readBytes.addAndGet(bytes);
+        }
+    }
+
+    void recordWrite(long bytes) {
+        if (bytes > 0) {
+            writtenBytes.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * @return The number of opened read channels.
+     */
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * @return The number of opened write channels.
+     */
+    public long getInsertCount() {
+        return insertCount.get();
+    }
+
+    /**
+     * @return The number of bytes read, sliced or transferred.
+     */
+    public long getReadBytes() {
+        return readBytes.get();
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardStatistics{" +
+               "lookupCount=" + lookupCount +
+               ", insertCount=" + insertCount +
+               ", readBytes=" + readBytes +
+               ", writtenBytes=" + writtenBytes +
+               '}';
+    }
+}
@@ -0,0 +1,270 @@
+package de.probst.ba.core.media.database.databases.sharded;
+
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.util.io.IOUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A data base, which spreads the hashes over multiple data
+ * bases, e.g. file data bases on different devices.
+ * <p>
+ * New hashes are placed on a consistent hash ring with
+ * virtual nodes, so adding a shard only moves a fraction of
+ * the placements. Hashes, which already exist in a shard,
+ * stay in that shard, so the placement can be changed without
+ * moving data. The placement of a hash is remembered, so only
+ * the first access probes the shards.
+ * <p>
+ * All chunks of a hash are stored in the same shard, so a single
+ * channel never spans shards. The partitions of a name have different
+ * hashes though, so a cumulative channel over several partitions
+ * can still span shards and devices.
+ */
+public final class ShardedDataBase implements DataBase {
+
+    // The default number of ring positions per shard
+    public static final int DEFAULT_VIRTUAL_NODE_COUNT = 128;
+
+    private static final class Shard {
+
+        private final DataBase dataBase;
+        private final ShardStatistics shardStatistics = new ShardStatistics();
+
+        private Shard(DataBase dataBase) {
+            this.dataBase = dataBase;
+        }
+    }
+
+    /**
+     * A 64-bit FNV-1a hash with a final avalanche step, which is
+     * stable across runs, unlike the placement of hash maps.
+     *
+     * @param key
+     * @return The ring position of the key.
+     */
+    private static long ringPosition(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private final List<Shard> shards;
+
+    // The shard indices by ring position
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+
+    // The shard indices of the hashes, which were found or inserted
+    private final Map<String, Integer> placements = new ConcurrentHashMap<>();
+
+    // The merged data info and the version they were merged at
+    private Map<String, DataInfo> mergedDataInfo;
+    private long mergedVersion = -1;
+
+    private Map<String, DataInfo> merge(boolean estimated) {
+        Map<String, DataInfo> dataInfo = new HashMap<>();
+        for (Shard shard : shards) {
+            dataInfo.putAll(estimated ? shard.dataBase.getEstimatedDataInfo() : shard.dataBase.getDataInfo());
+        }
+        return Collections.unmodifiableMap(dataInfo);
+    }
+
+    private Shard getShard(String hash) {
+        return shards.get(getShardIndex(hash));
+    }
+
+    public ShardedDataBase(List<DataBase> dataBases) {
+        this(dataBases, DEFAULT_VIRTUAL_NODE_COUNT);
+    }
+
+    public ShardedDataBase(List<DataBase> dataBases, int virtualNodeCount) {
+        Objects.requireNonNull(dataBases);
+
+        if (dataBases.isEmpty()) {
+            throw new IllegalArgumentException("dataBases.isEmpty()");
+        }
+
+        if (virtualNodeCount <= 0) {
+            throw new IllegalArgumentException("virtualNodeCount <= 0");
+        }
+
+        List<Shard> shards = new ArrayList<>(dataBases.size());
+        for (int i = 0; i < dataBases.size(); i++) {
+            shards.add(new Shard(Objects.requireNonNull(dataBases.get(i))));
+            for (int j = 0; j < virtualNodeCount; j++) {
+                ring.put(ringPosition("shard-" + i + "-" + j), i);
+            }
+        }
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param shardIndex
+     * @return The data base of the shard.
+     */
+    public DataBase getShard(int shardIndex) {
+        return shards.get(shardIndex).dataBase;
+    }
+
+    /**
+     * @param shardIndex
+     * @return The I/O statistics of the shard.
+     */
+    public ShardStatistics getShardStatistics(int shardIndex) {
+        return shards.get(shardIndex).shardStatistics;
+    }
+
+    /**
+     * @param hash
+     * @return The index of the shard, which contains the hash
+     * or which the hash is placed on by the hash ring.
+     */
+    public int getShardIndex(String hash) {
+        Objects.requireNonNull(hash);
+        Integer shardIndex = placements.get(hash);
+        if (shardIndex != null) {
+            return shardIndex;
+        }
+
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i).dataBase.get(hash) != null) {
+                placements.put(hash, i);
+                return i;
+            }
+        }
+
+        // Unknown hashes are not remembered, because
+        // remote peers could ask for arbitrary hashes
+
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(ringPosition(hash));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    @Override
+    public synchronized Map<String, DataInfo> getDataInfo() {
+        // Only merge again, if any shard changed
+        long version = getVersion();
+        if (mergedVersion != version) {
+            mergedDataInfo = merge(false);
+            mergedVersion = version;
+        }
+        return mergedDataInfo;
+    }
+
+    @Override
+    public long getVersion() {
+        long version = 0;
+        for (Shard shard : shards) {
+            version += shard.dataBase.getVersion();
+        }
+        return version;
+    }
+
+    @Override
+    public Map<String, DataInfo> getEstimatedDataInfo() {
+        return merge(true);
+    }
+
+    @Override
+    public DataInfo get(String hash) {
+        return getShard(hash).dataBase.get(hash);
+    }
+
+    @Override
+    public Optional<ChunkHashProof> getChunkHashProof(String hash, int chunkIndex) {
+        return getShard(hash).dataBase.getChunkHashProof(hash, chunkIndex);
+    }
+
+    @Override
+    public NavigableMap<Long, DataInfo> getPartitions(String name) {
+        Objects.requireNonNull(name);
+        NavigableMap<Long, DataInfo> partitions = new TreeMap<>();
+        for (Shard shard : shards) {
+            partitions.putAll(shard.dataBase.getPartitions(name));
+        }
+        return partitions;
+    }
+
+    @Override
+    public Optional<DataBaseReadChannel> lookup(DataInfo lookupDataInfo) throws IOException {
+        Shard shard = getShard(lookupDataInfo.getHash());
+        Optional<DataBaseReadChannel> readChannel = shard.dataBase.lookup(lookupDataInfo);
+        if (readChannel.isPresent()) {
+            shard.shardStatistics.recordLookup();
+            return Optional.of(new ShardedDataBaseReadChannel(this, shard.shardStatistics, readChannel.get()));
+        } else {
+            return readChannel;
+        }
+    }
+
+    @Override
+    public Optional<DataBaseWriteChannel> insert(DataInfo dataInfo) throws IOException {
+        int shardIndex = getShardIndex(dataInfo.getHash());
+        Shard shard = shards.get(shardIndex);
+        Optional<DataBaseWriteChannel> writeChannel = shard.dataBase.insert(dataInfo);
+        if (writeChannel.isPresent()) {
+            placements.put(dataInfo.getHash(), shardIndex);
+            shard.shardStatistics.recordInsert();
+            return Optional.of(new ShardedDataBaseWriteChannel(this, shard.shardStatistics, writeChannel.get()));
+        } else {
+            return writeChannel;
+        }
+    }
+
+    @Override
+    public boolean supportsDeduplication() {
+        for (Shard shard : shards) {
+            if (shard.dataBase.supportsDeduplication()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Only chunks stored in the shard of the
+     * given data info can be deduplicated.
+     *
+     * @param dataInfo
+     * @return The completed chunks, which might be empty.
+     * @throws IOException
+     */
+    @Override
+    public DataInfo deduplicate(DataInfo dataInfo) throws IOException {
+        return getShard(dataInfo.getHash()).dataBase.deduplicate(dataInfo);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOUtil.closeAllAndThrow(shards.stream().map(shard -> shard.dataBase).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,129 @@
+package de.probst.ba.core.media.database.databases.sharded;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A read channel of a shard, which counts the read bytes.
+ */
+public final class ShardedDataBaseReadChannel implements DataBaseReadChannel {
+
+    private final DataBase dataBase;
+    private final ShardStatistics shardStatistics;
+    private final DataBaseReadChannel readChannel;
+
+    ShardedDataBaseReadChannel(DataBase dataBase,
+                               ShardStatistics shardStatistics,
+                               DataBaseReadChannel readChannel) {
+        Objects.requireNonNull(dataBase);
+        Objects.requireNonNull(shardStatistics);
+        Objects.requireNonNull(readChannel);
+        this.dataBase = dataBase;
+        this.shardStatistics = shardStatistics;
+        this.readChannel = readChannel;
+    }
+
+    @Override
+    public DataBase getDataBase() {
+        return dataBase;
+    }
+
+    @Override
+    public DataInfo getDataInfo() {
+        return readChannel.getDataInfo();
+    }
+
+    @Override
+    public boolean isCumulative() {
+        return readChannel.isCumulative();
+    }
+
+    @Override
+    public List<DataInfo> getCumulativeDataInfo() {
+        return readChannel.getCumulativeDataInfo();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return readChannel.size();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return readChannel.position();
+    }
+
+    @Override
+    public DataBaseReadChannel position(long position) throws IOException {
+        readChannel.position(position);
+        return this;
+    }
+
+    @Override
+    public boolean supportsSlices() {
+        return readChannel.supportsSlices();
+    }
+
+    @Override
+    public Optional<ByteBuffer> readSlice(int maxLength) throws IOException {
+        Optional<ByteBuffer> slice = readChannel.readSlice(maxLength);
+        slice.ifPresent(byteBuffer -> shardStatistics.recordRead(byteBuffer.remaining()));
+        return slice;
+    }
+
+    @Override
+    public boolean supportsTransfer() {
+        return readChannel.supportsTransfer();
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        long transferred = readChannel.transferTo(position, count, target);
+        shardStatistics.recordRead(transferred);
+        return transferred;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int read = readChannel.read(dst);
+        shardStatistics.recordRead(read);
+        return read;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        int read = readChannel.read(dst, position);
+        shardStatistics.recordRead(read);
+        return read;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long read = readChannel.read(dsts, offset, length);
+        shardStatistics.recordRead(read);
+        return read;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return readChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        readChannel.close();
+    }
+}
@@ -0,0 +1,113 @@
+package de.probst.ba.core.media.database.databases.sharded;
+
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A write channel of a shard, which counts the written bytes.
+ */
+public final class ShardedDataBaseWriteChannel implements DataBaseWriteChannel {
+
+    private final DataBase dataBase;
+    private final ShardStatistics shardStatistics;
+    private final DataBaseWriteChannel writeChannel;
+
+    ShardedDataBaseWriteChannel(DataBase dataBase,
+                                ShardStatistics shardStatistics,
+                                DataBaseWriteChannel writeChannel) {
+        Objects.requireNonNull(dataBase);
+        Objects.requireNonNull(shardStatistics);
+        Objects.requireNonNull(writeChannel);
+        this.dataBase = dataBase;
+        this.shardStatistics = shardStatistics;
+        this.writeChannel = writeChannel;
+    }
+
+    @Override
+    public DataBase getDataBase() {
+        return dataBase;
+    }
+
+    @Override
+    public DataInfo getDataInfo() {
+        return writeChannel.getDataInfo();
+    }
+
+    @Override
+    public boolean isCumulative() {
+        return writeChannel.isCumulative();
+    }
+
+    @Override
+    public List<DataInfo> getCumulativeDataInfo() {
+        return writeChannel.getCumulativeDataInfo();
+    }
+
+    @Override
+    public Optional<DataInfo> getMergedDataInfo() {
+        return writeChannel.getMergedDataInfo();
+    }
+
+    @Override
+    public Optional<DataInfo> getRejectedDataInfo() {
+        return writeChannel.getRejectedDataInfo();
+    }
+
+    @Override
+    public boolean addChunkHashProof(ChunkHashProof chunkHashProof) {
+        return writeChannel.addChunkHashProof(chunkHashProof);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return writeChannel.size();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return writeChannel.position();
+    }
+
+    @Override
+    public DataBaseWriteChannel position(long position) throws IOException {
+        writeChannel.position(position);
+        return this;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int written = writeChannel.write(src);
+        shardStatistics.recordWrite(written);
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long written = writeChannel.write(srcs, offset, length);
+        shardStatistics.recordWrite(written);
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return writeChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeChannel.close();
+    }
+}
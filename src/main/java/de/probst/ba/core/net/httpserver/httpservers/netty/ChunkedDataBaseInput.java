@@ -1,10 +1,12 @@
 package de.probst.ba.core.net.httpserver.httpservers.netty;
 
+import de.probst.ba.core.media.database.AsyncDataBaseIO;
 import de.probst.ba.core.media.database.DataBase;
 import de.probst.ba.core.media.database.DataBaseReadChannel;
 import de.probst.ba.core.media.database.DataInfo;
 import de.probst.ba.core.net.peer.peers.netty.NettyConfig;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.stream.ChunkedInput;
@@ -13,9 +15,11 @@ import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 
 import java.io.EOFException;
+import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
 
 /**
  * Created by chrisprobst on 11.10.14.
@@ -23,13 +27,15 @@ import java.util.function.Predicate;
 public final class ChunkedDataBaseInput
         implements ChunkedInput<ByteBuf>, GenericFutureListener<ChannelFuture>, Runnable {
 
+    private final AsyncDataBaseIO asyncDataBaseIO;
     private final DataBase dataBase;
-    private final Predicate<DataInfo> predicate;
+    private final String name;
     private final long offset;
     private final long length;
     private ChunkedWriteHandler chunkedWriteHandler;
     private DataBaseReadChannel readChannel;
     private Future<?> scheduleFuture;
+    private CompletableFuture<ByteBuf> pendingRead;
     private long completed;
     private boolean registered;
     private boolean closed;
@@ -37,12 +43,11 @@ public final class ChunkedDataBaseInput
     private boolean configureReadChannel() throws Exception {
         // Lookup new read channel
         if (readChannel == null) {
-            readChannel = dataBase.findIncremental(predicate).get();
+            readChannel = dataBase.findIncremental(name, DataInfo::isCompleted).get();
         }
 
         // Validate opened channel
         if (readChannel != null && readChannel.isOpen() && readChannel.size() > offset + completed) {
-            readChannel.position(offset + completed);
             return true;
         }
 
@@ -56,12 +61,21 @@ public final class ChunkedDataBaseInput
     }
 
     public ChunkedDataBaseInput(DataBase dataBase,
-                                Predicate<DataInfo> predicate,
+                                String name,
                                 long offset,
                                 long length) {
+        this(AsyncDataBaseIO.getDefault(), dataBase, name, offset, length);
+    }
 
+    public ChunkedDataBaseInput(AsyncDataBaseIO asyncDataBaseIO,
+                                DataBase dataBase,
+                                String name,
+                                long offset,
+                                long length) {
+
+        Objects.requireNonNull(asyncDataBaseIO);
         Objects.requireNonNull(dataBase);
-        Objects.requireNonNull(predicate);
+        Objects.requireNonNull(name);
 
         if (offset < 0) {
             throw new IllegalArgumentException("offset < 0");
@@ -69,8 +83,9 @@ public final class ChunkedDataBaseInput
             throw new IllegalArgumentException("length < 0");
         }
 
+        this.asyncDataBaseIO = asyncDataBaseIO;
         this.dataBase = dataBase;
-        this.predicate = predicate;
+        this.name = name;
         this.offset = offset;
         this.length = length;
     }
@@ -90,9 +105,19 @@ public final class ChunkedDataBaseInput
                 scheduleFuture.cancel(false);
             }
 
-            // Clean up channel
+            // Clean up channel, after the pending read completed
             if (readChannel != null) {
-                readChannel.close();
+                DataBaseReadChannel closeReadChannel = readChannel;
+                CompletableFuture<ByteBuf> read = pendingRead != null ?
+                                                  pendingRead :
+                                                  CompletableFuture.completedFuture(null);
+                read.handle((byteBuf, cause) -> {
+                    if (byteBuf != null) {
+                        byteBuf.release();
+                    }
+                    return asyncDataBaseIO.close(closeReadChannel);
+                });
+                pendingRead = null;
                 readChannel = null;
             }
         }
@@ -111,20 +136,57 @@ public final class ChunkedDataBaseInput
             ctx.channel().closeFuture().addListener(this);
         }
 
+        // Return the read chunk
+        if (pendingRead != null) {
+            if (!pendingRead.isDone()) {
+                return null;
+            }
+
+            ByteBuf byteBuf;
+            try {
+                byteBuf = pendingRead.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                pendingRead = null;
+            }
+            completed += byteBuf.readableBytes();
+            return byteBuf;
+        }
+
         // Make sure the channel has enough data
         if (!configureReadChannel()) {
             scheduleFuture = ctx.executor().schedule(this, NettyConfig.getHttpRetryDelay(), TimeUnit.MILLISECONDS);
             return null;
         }
 
-        // Read from channel and return chunk
-        ByteBuf byteBuf = ctx.alloc().buffer();
-        int read = byteBuf.writeBytes(readChannel, NettyConfig.getHttpBufferSize());
-        if (read == -1) {
-            throw new EOFException();
+        // Read from channel without blocking and resume, when the chunk is read
+        int bufferSize = (int) Math.min(NettyConfig.getHttpBufferSize(), length - completed);
+        long position = offset + completed;
+        if (readChannel.supportsSlices()) {
+            // Hand out the stored data without copying
+            pendingRead = asyncDataBaseIO.submit(readChannel, c -> Unpooled.wrappedBuffer(
+                    c.position(position)
+                     .readSlice(bufferSize)
+                     .orElseThrow(EOFException::new)));
+        } else {
+            ByteBuf byteBuf = ctx.alloc().buffer(bufferSize);
+            pendingRead = asyncDataBaseIO.submit(readChannel, c -> {
+                try {
+                    // Positional read, the position of the channel is never touched
+                    int read = c.read(byteBuf.nioBuffer(0, bufferSize), position);
+                    if (read == -1) {
+                        throw new EOFException();
+                    }
+                    return byteBuf.writerIndex(read);
+                } catch (IOException | RuntimeException e) {
+                    byteBuf.release();
+                    throw e;
+                }
+            });
         }
-        completed += read;
-        return byteBuf;
+        pendingRead.whenCompleteAsync((b, e) -> chunkedWriteHandler.resumeTransfer(), ctx.executor());
+        return null;
     }
 
     @Override
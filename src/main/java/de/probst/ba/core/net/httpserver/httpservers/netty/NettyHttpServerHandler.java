@@ -36,7 +36,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Scanner;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static io.netty.handler.codec.http.HttpHeaders.Names.ACCEPT_RANGES;
@@ -58,12 +57,6 @@ public final class NettyHttpServerHandler extends SimpleChannelInboundHandler<Fu
     public static final String TOTAL_SIZE_KEY = "total-size";
     public static final String PARTITIONS_KEY = "partitions";
 
-    private static Predicate<DataInfo> byName(String name) {
-        Objects.requireNonNull(name);
-        return dataInfo -> dataInfo.isCompleted() && dataInfo.getName().isPresent() &&
-                           dataInfo.getName().get().equals(name);
-    }
-
     private final Logger logger = LoggerFactory.getLogger(NettyHttpServerHandler.class);
     private final DataBase dataBase;
     private final MimetypesFileTypeMap mimetypesFileTypeMap = new MimetypesFileTypeMap();
@@ -129,7 +122,11 @@ public final class NettyHttpServerHandler extends SimpleChannelInboundHandler<Fu
 
         try {
             // Lookup data info
-            Optional<DataInfo> dataInfo = dataBase.getDataInfo().values().stream().filter(byName(name)).findAny();
+            Optional<DataInfo> dataInfo = dataBase.getPartitions(name)
+                                                  .values()
+                                                  .stream()
+                                                  .filter(DataInfo::isCompleted)
+                                                  .findFirst();
             if (!dataInfo.isPresent()) {
                 throw new DataLookupException("Not found");
             }
@@ -175,7 +172,7 @@ public final class NettyHttpServerHandler extends SimpleChannelInboundHandler<Fu
             ctx.write(response);
 
             // Create chunked database input and write it
-            ctx.writeAndFlush(new ChunkedDataBaseInput(dataBase, byName(name), offset, length))
+            ctx.writeAndFlush(new ChunkedDataBaseInput(dataBase, name, offset, length))
                .addListener(ChannelFutureListener.CLOSE);
         } catch (DataLookupException e) {
             sendError(ctx, NOT_FOUND, e);
@@ -11,6 +11,7 @@ import de.probst.ba.core.util.concurrent.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,8 +31,51 @@ public abstract class AbstractLeecher extends AbstractPeer implements Leecher {
     private final Task leecherDistributionAlgorithmWorkerTask;
     private final boolean autoConnect;
 
+    // The remote data info, which were deduplicated since the
+    // data base version changed (Only used by the algorithm task)
+    private Set<DataInfo> deduplicatedDataInfo = new HashSet<>();
+    private long deduplicatedVersion = -1;
+
+    private void deduplicateRemoteDataInfo() {
+        // Other data info might have completed the missing chunks
+        long version = getDataBase().getVersion();
+        if (version != deduplicatedVersion) {
+            deduplicatedDataInfo.clear();
+            deduplicatedVersion = version;
+        }
+
+        // Only new or changed remote data info are deduplicated,
+        // the attempts of vanished remote data info are forgotten
+        Set<DataInfo> previouslyDeduplicatedDataInfo = deduplicatedDataInfo;
+        deduplicatedDataInfo = new HashSet<>();
+        for (Map<String, DataInfo> remoteDataInfo : getRemoteDataInfo().values()) {
+            for (DataInfo dataInfo : remoteDataInfo.values()) {
+                if (!deduplicatedDataInfo.add(dataInfo) || previouslyDeduplicatedDataInfo.contains(dataInfo)) {
+                    continue;
+                }
+
+                try {
+                    DataInfo deduplicated = getDataBase().deduplicate(dataInfo);
+                    if (!deduplicated.isEmpty()) {
+                        logger.debug("Leecher " + getPeerId() + " completed " + deduplicated.getCompletedChunkCount() +
+                                     " chunks of " + dataInfo.getHash() + " from the local data base");
+                    }
+                } catch (IOException e) {
+                    // Try again with the next run
+                    deduplicatedDataInfo.remove(dataInfo);
+                    logger.warn("Leecher " + getPeerId() + " failed to deduplicate " + dataInfo.getHash(), e);
+                }
+            }
+        }
+    }
+
     private void runLeecherDistributionAlgorithm(CancelableRunnable cancelableRunnable) {
         try {
+            // Complete chunks, which are already stored under other data info
+            if (getDataBase().supportsDeduplication()) {
+                deduplicateRemoteDataInfo();
+            }
+
             // Let the algorithm generate transfers
             List<Transfer> transfers = getDistributionAlgorithm().requestDownloads(AbstractLeecher.this);
 
@@ -146,8 +146,12 @@ public final class NettyConfig {
 
     public static Collection<ChannelHandler> getCodecPipeline() {
         if (useCodec) {
-            return Arrays.asList(new LengthFieldBasedFrameDecoder(1024 * 1024, 0, 4, 0, 4),
-                                 new LengthFieldPrepender(4),
+            return Arrays.asList(new LengthFieldBasedFrameDecoder(1024 * 1024,
+                                                                  0,
+                                                                  SimpleCodec.LENGTH_FIELD_SIZE,
+                                                                  0,
+                                                                  SimpleCodec.LENGTH_FIELD_SIZE),
+                                 new LengthFieldPrepender(SimpleCodec.LENGTH_FIELD_SIZE),
                                  new SimpleCodec());
         } else {
             return Collections.emptyList();
@@ -11,6 +11,7 @@ import de.probst.ba.core.net.peer.handler.LeecherPeerHandler;
 import de.probst.ba.core.net.peer.peers.netty.handlers.datainfo.CollectDataInfoHandler;
 import de.probst.ba.core.net.peer.peers.netty.handlers.discovery.AnnounceSocketAddressHandler;
 import de.probst.ba.core.net.peer.peers.netty.handlers.group.ChannelGroupHandler;
+import de.probst.ba.core.net.peer.peers.netty.handlers.traffic.AutoReadSuspender;
 import de.probst.ba.core.net.peer.peers.netty.handlers.traffic.TrafficHandler;
 import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.DownloadHandler;
 import de.probst.ba.core.net.peer.state.BandwidthStatisticState;
@@ -61,12 +62,16 @@ public final class NettyLeecher extends AbstractLeecher {
 
         @Override
         public void initChannel(Channel ch) {
+            // The traffic shaper and the download handler both suspend reading
+            AutoReadSuspender autoReadSuspender = new AutoReadSuspender(ch);
+
             // Create message sinks for channel
             MessageSink<Object> uploadMessageSink =
                     uploadTrafficShaper.createMessageSink(Optional.empty(), Optional.empty());
             MessageSink<Object> downloadMessageSink =
-                    downloadTrafficShaper.createMessageSink(Optional.of(() -> ch.config().setAutoRead(false)),
-                                                            Optional.of(() -> ch.config().setAutoRead(true)));
+                    downloadTrafficShaper.createMessageSink(
+                            Optional.of(() -> autoReadSuspender.suspend(downloadTrafficShaper)),
+                            Optional.of(() -> autoReadSuspender.resume(downloadTrafficShaper)));
 
             // Traffic
             ch.pipeline().addLast(new TrafficHandler(uploadMessageSink, downloadMessageSink));
@@ -79,7 +84,7 @@ public final class NettyLeecher extends AbstractLeecher {
             if (NettyConfig.isUseAutoConnect()) {
                 ch.pipeline().addLast(new AnnounceSocketAddressHandler(NettyLeecher.this, announceSocketAddress));
             }
-            ch.pipeline().addLast(new DownloadHandler(NettyLeecher.this, getLeechRunnable()),
+            ch.pipeline().addLast(new DownloadHandler(NettyLeecher.this, getLeechRunnable(), autoReadSuspender),
                                   new CollectDataInfoHandler(NettyLeecher.this, getLeechRunnable()));
         }
     };
@@ -0,0 +1,88 @@
+package de.probst.ba.core.net.peer.peers.netty.handlers.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * A file region, which transfers a prefix buffer
+ * before the bytes of the wrapped file region.
+ */
+final class PrefixedFileRegion extends AbstractReferenceCounted implements FileRegion {
+
+    private final ByteBuf prefix;
+    private final FileRegion fileRegion;
+    private long transfered;
+
+    PrefixedFileRegion(ByteBuf prefix, FileRegion fileRegion) {
+        Objects.requireNonNull(prefix);
+        Objects.requireNonNull(fileRegion);
+        this.prefix = prefix;
+        this.fileRegion = fileRegion;
+    }
+
+    @Override
+    public long position() {
+        return fileRegion.position();
+    }
+
+    @Override
+    public long transfered() {
+        return transfered;
+    }
+
+    @Override
+    public long count() {
+        return prefix.readableBytes() + fileRegion.count();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        if (position < 0 || position > count()) {
+            throw new IllegalArgumentException("position < 0 || position > count()");
+        }
+
+        long written;
+        int prefixLength = prefix.readableBytes();
+        if (position < prefixLength) {
+            written = target.write(prefix.nioBuffer(prefix.readerIndex() + (int) position,
+                                                    prefixLength - (int) position));
+        } else {
+            written = fileRegion.transferTo(target, position - prefixLength);
+        }
+        transfered += written;
+        return written;
+    }
+
+    @Override
+    protected void deallocate() {
+        prefix.release();
+        fileRegion.release();
+    }
+
+    @Override
+    public FileRegion retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FileRegion retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FileRegion touch() {
+        return this;
+    }
+
+    @Override
+    public FileRegion touch(Object hint) {
+        return this;
+    }
+}
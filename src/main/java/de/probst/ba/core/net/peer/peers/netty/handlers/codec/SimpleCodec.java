@@ -4,6 +4,7 @@ import de.probst.ba.core.util.io.IOUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
 import io.netty.handler.codec.MessageToMessageCodec;
 
 import java.io.Serializable;
@@ -15,15 +16,27 @@ import java.util.List;
  * Raw bytes are going straight through,
  * objects are serialized.
  * <p>
+ * File regions bypass the length field prepender,
+ * so they are framed here.
+ * <p>
  * Created by chrisprobst on 31.08.14.
  */
 public class SimpleCodec extends MessageToMessageCodec<ByteBuf, Object> {
 
+    // The size of the length field of the frames
+    public static final int LENGTH_FIELD_SIZE = 4;
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
         if (msg instanceof Serializable) {
             out.add(Unpooled.wrappedBuffer(Unpooled.buffer(1).writeByte(0),
                                            Unpooled.wrappedBuffer(IOUtil.serialize(msg))));
+        } else if (msg instanceof FileRegion) {
+            FileRegion fileRegion = (FileRegion) msg;
+            out.add(new PrefixedFileRegion(Unpooled.buffer(LENGTH_FIELD_SIZE + 1)
+                                                   .writeInt((int) (1 + fileRegion.count()))
+                                                   .writeByte(1),
+                                           fileRegion.retain()));
         } else {
             out.add(Unpooled.wrappedBuffer(Unpooled.buffer(1).writeByte(1), ((ByteBuf) msg).retain()));
         }
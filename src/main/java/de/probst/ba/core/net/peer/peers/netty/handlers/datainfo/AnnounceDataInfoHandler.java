@@ -1,5 +1,6 @@
 package de.probst.ba.core.net.peer.peers.netty.handlers.datainfo;
 
+import de.probst.ba.core.distribution.SeederDistributionAlgorithm;
 import de.probst.ba.core.media.database.DataInfo;
 import de.probst.ba.core.net.peer.PeerId;
 import de.probst.ba.core.net.peer.Seeder;
@@ -15,6 +16,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public final class AnnounceDataInfoHandler extends ChannelHandlerAdapter implements Runnable {
 
@@ -26,6 +28,7 @@ public final class AnnounceDataInfoHandler extends ChannelHandlerAdapter impleme
     private PeerId peerId;
     private ScheduledFuture<?> timer;
     private Map<String, DataInfo> lastDataInfo = Collections.emptyMap();
+    private long lastVersion = -1;
 
     private void schedule() {
         timer = ctx.channel().eventLoop().schedule(this, NettyConfig.getAnnounceDelay(), TimeUnit.MILLISECONDS);
@@ -58,17 +61,39 @@ public final class AnnounceDataInfoHandler extends ChannelHandlerAdapter impleme
 
     @Override
     public void run() {
-        Map<String, DataInfo> transformedDataInfo = seeder.getDistributionAlgorithm()
-                                                          .transformUploadDataInfo(seeder,
-                                                                                   seeder.getDataBase().getDataInfo(),
-                                                                                   peerId);
+        // Read the version before the snapshot, so a newer
+        // snapshot is never remembered with an older version
+        long version = seeder.getDataBase().getVersion();
+        SeederDistributionAlgorithm distributionAlgorithm = seeder.getDistributionAlgorithm();
+
+        // A stable algorithm transforms the same version always
+        // the same way, so nothing has changed since the last run
+        if (version == lastVersion && distributionAlgorithm.isUploadDataInfoStable()) {
+            schedule();
+            return;
+        }
+
+        Map<String, DataInfo> algorithmDataInfo = distributionAlgorithm.transformUploadDataInfo(seeder,
+                                                                                                seeder.getDataBase()
+                                                                                                      .getDataInfo(),
+                                                                                                peerId);
 
-        if (transformedDataInfo == null) {
+        if (algorithmDataInfo == null) {
             logger.warn("Seeder " + seeder.getPeerId() +
                         " has an algorithm which returned null for the transformed data info");
             schedule();
             return;
         }
+        lastVersion = version;
+
+        // Data info with merkle hashes are announced without chunk hashes,
+        // the chunk hashes are proven when the chunks are uploaded
+        Map<String, DataInfo> transformedDataInfo =
+                Collections.unmodifiableMap(algorithmDataInfo.entrySet()
+                                                             .stream()
+                                                             .collect(Collectors.toMap(Map.Entry::getKey,
+                                                                                       p -> p.getValue()
+                                                                                             .withoutChunkHashes())));
 
         if (transformedDataInfo.equals(lastDataInfo)) {
             schedule();
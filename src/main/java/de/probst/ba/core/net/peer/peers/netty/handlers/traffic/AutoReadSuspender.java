@@ -0,0 +1,54 @@
+package de.probst.ba.core.net.peer.peers.netty.handlers.traffic;
+
+import io.netty.channel.Channel;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Suspends reading of a channel for multiple independent reasons.
+ * <p>
+ * Reading is only resumed, when every reason, which suspended
+ * it, has resumed it again. So a traffic shaper and a slow data
+ * base can both suspend the same channel without resuming
+ * the reads, which the other one suspended.
+ * <p>
+ * Suspending and resuming are idempotent per reason
+ * and can be called from any thread.
+ */
+public final class AutoReadSuspender {
+
+    private final Channel channel;
+    private final Set<Object> reasons = new HashSet<>();
+
+    public AutoReadSuspender(Channel channel) {
+        Objects.requireNonNull(channel);
+        this.channel = channel;
+    }
+
+    /**
+     * Suspends reading for the given reason.
+     *
+     * @param reason
+     */
+    public synchronized void suspend(Object reason) {
+        Objects.requireNonNull(reason);
+        if (reasons.add(reason) && reasons.size() == 1) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * Resumes reading for the given reason. Reading is
+     * resumed, if no other reason suspends it.
+     *
+     * @param reason
+     */
+    public synchronized void resume(Object reason) {
+        Objects.requireNonNull(reason);
+        if (reasons.remove(reason) && reasons.isEmpty()) {
+            channel.config().setAutoRead(true);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package de.probst.ba.core.net.peer.peers.netty.handlers.transfer;
+
+import de.probst.ba.core.media.database.AsyncDataBaseIO;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A chunked input, which reads a data base read channel
+ * asynchronously, so the event loop never waits for the disk.
+ * The channel is read with positional reads, starting at
+ * its position when this input is created. Channels, which
+ * support slices, hand out their data without copying.
+ * <p>
+ * While a chunk is sent, the next chunk is already read. If
+ * the next chunk is not read yet, the transfer is suspended
+ * and resumed as soon as the read completes.
+ */
+public final class AsyncChunkedDataBaseInput implements ChunkedInput<ByteBuf> {
+
+    private final AsyncDataBaseIO asyncDataBaseIO;
+    private final DataBaseReadChannel dataBaseReadChannel;
+    private final int chunkSize;
+    private final long startPosition;
+    private final long length;
+    private CompletableFuture<ByteBuf> pendingRead;
+    private long progress;
+    private boolean closed;
+
+    private void read(ChannelHandlerContext ctx) {
+        ChunkedWriteHandler chunkedWriteHandler = (ChunkedWriteHandler) ctx.handler();
+        int bufferSize = (int) Math.min(chunkSize, length - progress);
+        long position = startPosition + progress;
+        if (dataBaseReadChannel.supportsSlices()) {
+            pendingRead = asyncDataBaseIO.submit(dataBaseReadChannel, c -> Unpooled.wrappedBuffer(
+                    c.position(position)
+                     .readSlice(bufferSize)
+                     .orElseThrow(() -> new EOFException("Unexpected EOF detected"))));
+        } else {
+            ByteBuf byteBuf = ctx.alloc().buffer(bufferSize);
+            pendingRead = asyncDataBaseIO.submit(dataBaseReadChannel, c -> {
+                try {
+                    int read = c.read(byteBuf.nioBuffer(0, bufferSize), position);
+                    if (read == -1) {
+                        throw new EOFException("Unexpected EOF detected");
+                    }
+                    return byteBuf.writerIndex(read);
+                } catch (IOException | RuntimeException e) {
+                    byteBuf.release();
+                    throw e;
+                }
+            });
+        }
+        pendingRead.whenCompleteAsync((b, e) -> chunkedWriteHandler.resumeTransfer(), ctx.executor());
+    }
+
+    public AsyncChunkedDataBaseInput(AsyncDataBaseIO asyncDataBaseIO,
+                                     DataBaseReadChannel dataBaseReadChannel,
+                                     int chunkSize) throws IOException {
+        Objects.requireNonNull(asyncDataBaseIO);
+        Objects.requireNonNull(dataBaseReadChannel);
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize <= 0");
+        }
+
+        this.asyncDataBaseIO = asyncDataBaseIO;
+        this.dataBaseReadChannel = dataBaseReadChannel;
+        this.chunkSize = chunkSize;
+        startPosition = dataBaseReadChannel.position();
+        length = dataBaseReadChannel.remaining();
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return progress >= length || closed;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (!closed) {
+            closed = true;
+
+            // Close the channel, after the pending read completed
+            CompletableFuture<ByteBuf> read = pendingRead != null ?
+                                              pendingRead :
+                                              CompletableFuture.completedFuture(null);
+            pendingRead = null;
+            read.handle((byteBuf, cause) -> {
+                if (byteBuf != null) {
+                    byteBuf.release();
+                }
+                return asyncDataBaseIO.close(dataBaseReadChannel);
+            });
+        }
+    }
+
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        if (isEndOfInput()) {
+            return null;
+        }
+
+        if (pendingRead == null) {
+            read(ctx);
+        }
+
+        // Suspend the transfer until the read completes
+        if (!pendingRead.isDone()) {
+            return null;
+        }
+
+        ByteBuf byteBuf;
+        try {
+            byteBuf = pendingRead.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pendingRead = null;
+        }
+        progress += byteBuf.readableBytes();
+
+        // Read ahead
+        if (!isEndOfInput()) {
+            read(ctx);
+        }
+        return byteBuf;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return progress;
+    }
+}
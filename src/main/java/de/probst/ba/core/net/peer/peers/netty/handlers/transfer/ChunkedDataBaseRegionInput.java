@@ -0,0 +1,73 @@
+package de.probst.ba.core.net.peer.peers.netty.handlers.transfer;
+
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A chunked input, which splits a data base read channel
+ * into file regions.
+ * <p>
+ * The regions are not larger than the chunk size, so the
+ * traffic shaper and the progress notifications work the
+ * same way as with a chunked stream.
+ */
+public final class ChunkedDataBaseRegionInput implements ChunkedInput<FileRegion> {
+
+    private final DataBaseReadChannel dataBaseReadChannel;
+    private final int chunkSize;
+    private final long length;
+    private long offset;
+
+    public ChunkedDataBaseRegionInput(DataBaseReadChannel dataBaseReadChannel, int chunkSize) throws IOException {
+        Objects.requireNonNull(dataBaseReadChannel);
+
+        if (!dataBaseReadChannel.supportsTransfer()) {
+            throw new IllegalArgumentException("!dataBaseReadChannel.supportsTransfer()");
+        }
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize <= 0");
+        }
+
+        this.dataBaseReadChannel = dataBaseReadChannel;
+        this.chunkSize = chunkSize;
+        length = dataBaseReadChannel.size();
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return offset >= length || !dataBaseReadChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws Exception {
+        dataBaseReadChannel.close();
+    }
+
+    @Override
+    public FileRegion readChunk(ChannelHandlerContext ctx) throws Exception {
+        if (isEndOfInput()) {
+            return null;
+        }
+
+        long count = Math.min(chunkSize, length - offset);
+        FileRegion fileRegion = new DataBaseFileRegion(dataBaseReadChannel, offset, count);
+        offset += count;
+        return fileRegion;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return offset;
+    }
+}
@@ -0,0 +1,94 @@
+package de.probst.ba.core.net.peer.peers.netty.handlers.transfer;
+
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * A file region of a data base read channel, which is
+ * transferred directly into the socket, if the data base
+ * supports it.
+ * <p>
+ * Unlike the default file region, releasing this region
+ * does not close the underlying channel, which is shared
+ * by all regions of an upload.
+ */
+public final class DataBaseFileRegion extends AbstractReferenceCounted implements FileRegion {
+
+    private final DataBaseReadChannel dataBaseReadChannel;
+    private final long position;
+    private final long count;
+    private long transfered;
+
+    public DataBaseFileRegion(DataBaseReadChannel dataBaseReadChannel, long position, long count) {
+        Objects.requireNonNull(dataBaseReadChannel);
+
+        if (position < 0) {
+            throw new IllegalArgumentException("position < 0");
+        }
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        this.dataBaseReadChannel = dataBaseReadChannel;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long transfered() {
+        return transfered;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        if (position < 0 || position > count) {
+            throw new IllegalArgumentException("position < 0 || position > count");
+        }
+
+        long transfered = dataBaseReadChannel.transferTo(this.position + position, count - position, target);
+        this.transfered += transfered;
+        return transfered;
+    }
+
+    @Override
+    protected void deallocate() {
+    }
+
+    @Override
+    public FileRegion retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FileRegion retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FileRegion touch() {
+        return this;
+    }
+
+    @Override
+    public FileRegion touch(Object hint) {
+        return this;
+    }
+}
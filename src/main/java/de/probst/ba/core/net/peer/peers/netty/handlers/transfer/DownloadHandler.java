@@ -1,11 +1,15 @@
 package de.probst.ba.core.net.peer.peers.netty.handlers.transfer;
 
+import de.probst.ba.core.media.database.AsyncDataBaseIO;
+import de.probst.ba.core.media.database.ChunkHashProof;
 import de.probst.ba.core.media.database.DataBaseWriteChannel;
 import de.probst.ba.core.media.database.DataInfo;
 import de.probst.ba.core.net.peer.Leecher;
 import de.probst.ba.core.net.peer.PeerId;
 import de.probst.ba.core.net.peer.Transfer;
 import de.probst.ba.core.net.peer.peers.netty.handlers.datainfo.CollectDataInfoHandler;
+import de.probst.ba.core.net.peer.peers.netty.handlers.traffic.AutoReadSuspender;
+import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages.ChunkHashProofMessage;
 import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages.UploadRejectedMessage;
 import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages.UploadRequestMessage;
 import io.netty.buffer.ByteBuf;
@@ -16,11 +20,12 @@ import io.netty.channel.group.ChannelGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -63,18 +68,38 @@ public final class DownloadHandler extends ChannelHandlerAdapter {
         remoteChannel.pipeline().fireUserEventTriggered(transfer);
     }
 
+    // The number of buffers, which can be written
+    // to the data base before reading is suspended
+    private static final int MAX_PENDING_WRITES = 4;
+
     private final Logger logger = LoggerFactory.getLogger(DownloadHandler.class);
     private final Leecher leecher;
     private final Runnable leech;
+    private final AutoReadSuspender autoReadSuspender;
+    private final AsyncDataBaseIO asyncDataBaseIO;
     private final AtomicReference<Transfer> transfer = new AtomicReference<>();
     private DataBaseWriteChannel dataBaseWriteChannel;
+    private CompletableFuture<Optional<DataBaseWriteChannel>> pendingSetup;
+    private CompletableFuture<?> pendingWrite = CompletableFuture.completedFuture(null);
+    private int pendingWriteCount;
     private boolean receivedBuffer;
 
-    public DownloadHandler(Leecher leecher, Runnable leech) {
+    public DownloadHandler(Leecher leecher, Runnable leech, AutoReadSuspender autoReadSuspender) {
+        this(leecher, leech, autoReadSuspender, AsyncDataBaseIO.getDefault());
+    }
+
+    public DownloadHandler(Leecher leecher,
+                           Runnable leech,
+                           AutoReadSuspender autoReadSuspender,
+                           AsyncDataBaseIO asyncDataBaseIO) {
         Objects.requireNonNull(leecher);
         Objects.requireNonNull(leech);
+        Objects.requireNonNull(autoReadSuspender);
+        Objects.requireNonNull(asyncDataBaseIO);
         this.leecher = leecher;
         this.leech = leech;
+        this.autoReadSuspender = autoReadSuspender;
+        this.asyncDataBaseIO = asyncDataBaseIO;
     }
 
     private void download(Transfer transfer) {
@@ -85,29 +110,168 @@ public final class DownloadHandler extends ChannelHandlerAdapter {
         }
     }
 
-    private void setup() throws IOException {
+    /**
+     * Opens the write channel without blocking the event loop
+     * and requests the download afterwards.
+     *
+     * @param ctx
+     * @param transfer
+     */
+    private void setup(ChannelHandlerContext ctx, Transfer transfer) {
         receivedBuffer = false;
-        Transfer transfer = this.transfer.get();
-        dataBaseWriteChannel = leecher.getDataBase()
-                                      .insert(transfer.getDataInfo())
-                                      .orElseThrow(() -> new IllegalStateException(
-                                              "Database write channel locked for: " + transfer));
+
+        CompletableFuture<Optional<DataBaseWriteChannel>> setup =
+                asyncDataBaseIO.insert(leecher.getDataBase(), transfer.getDataInfo());
+        pendingSetup = setup;
+        setup.whenCompleteAsync((writeChannel, cause) -> {
+            // Ignore setups of failed downloads
+            if (setup != pendingSetup) {
+                return;
+            }
+            pendingSetup = null;
+
+            try {
+                if (cause != null) {
+                    throw cause;
+                }
+                dataBaseWriteChannel = writeChannel.orElseThrow(() -> new IllegalStateException(
+                        "Database write channel locked for: " + transfer));
+                requested(ctx, transfer);
+            } catch (Throwable e) {
+                ctx.fireExceptionCaught(e);
+            }
+        }, ctx.executor());
+    }
+
+    private void requested(ChannelHandlerContext ctx, Transfer transfer) {
+        // Write the download request
+        ctx.writeAndFlush(new UploadRequestMessage(transfer.getDataInfo()));
+
+        logger.debug("Leecher " + leecher.getPeerId() + " requested download " + transfer);
+
+        // HANDLER
+        leecher.getPeerHandler().downloadRequested(leecher, transfer);
     }
 
-    private Transfer update(ByteBuf buffer) throws IOException {
+    /**
+     * Writes the buffer after all previous buffers
+     * were written, without blocking the event loop.
+     *
+     * @param ctx
+     * @param buffer
+     */
+    private void write(ChannelHandlerContext ctx, ByteBuf buffer) {
+        DataBaseWriteChannel writeChannel = dataBaseWriteChannel;
         int total = buffer.readableBytes();
-        while (buffer.readableBytes() > 0) {
-            buffer.readBytes(dataBaseWriteChannel, buffer.readableBytes());
+
+        // Suspend reading, if the data base can not keep up
+        // (Buffers, which were already read, might exceed the limit)
+        if (++pendingWriteCount == MAX_PENDING_WRITES) {
+            autoReadSuspender.suspend(this);
+        }
+
+        CompletableFuture<Integer> write = pendingWrite.thenCompose(v -> asyncDataBaseIO.submit(writeChannel, c -> {
+            while (buffer.readableBytes() > 0) {
+                buffer.readBytes(c, buffer.readableBytes());
+            }
+            return total;
+        }));
+        pendingWrite = write;
+        write.whenCompleteAsync((written, cause) -> {
+            // Nobody is gonna use this
+            buffer.release();
+
+            // Resume reading, if the data base caught up again
+            if (--pendingWriteCount == MAX_PENDING_WRITES - 1) {
+                autoReadSuspender.resume(this);
+            }
+
+            // Ignore writes of failed downloads
+            if (writeChannel != dataBaseWriteChannel) {
+                return;
+            }
+
+            try {
+                if (cause != null) {
+                    throw cause;
+                }
+                written(ctx, writeChannel, transfer.updateAndGet(t -> t.update(t.getCompletedSize() + written)));
+            } catch (Throwable e) {
+                ctx.fireExceptionCaught(e);
+            }
+        }, ctx.executor());
+    }
+
+    private void written(ChannelHandlerContext ctx, DataBaseWriteChannel writeChannel, Transfer transfer) {
+        logger.debug("Leecher " + leecher.getPeerId() + " progressed download " + transfer);
+
+        // HANDLER
+        leecher.getPeerHandler().downloadProgressed(leecher, transfer);
+
+        if (!transfer.isCompleted()) {
+            return;
         }
 
-        return transfer.updateAndGet(t -> t.update(t.getCompletedSize() + total));
+        // Closing merges the chunks, which might force them to disk
+        asyncDataBaseIO.close(writeChannel).whenCompleteAsync((v, cause) -> {
+            // Ignore closes of failed downloads
+            if (writeChannel != dataBaseWriteChannel) {
+                return;
+            }
+
+            try {
+                if (cause != null) {
+                    throw cause;
+                }
+                completed(ctx, writeChannel, transfer);
+            } catch (Throwable e) {
+                ctx.fireExceptionCaught(e);
+            }
+        }, ctx.executor());
     }
 
-    private Optional<DataInfo> reset() throws IOException {
-        dataBaseWriteChannel.close();
-        Optional<DataInfo> merged = dataBaseWriteChannel.getMergedDataInfo();
+    private void completed(ChannelHandlerContext ctx, DataBaseWriteChannel writeChannel, Transfer transfer) {
+        // Reset and prepare for next transfer
+        Optional<DataInfo> mergedDataInfo = reset(ctx.channel(), writeChannel);
+
+        logger.debug("Leecher " + leecher.getPeerId() + " succeeded download " + transfer);
+
+        // HANDLER
+        leecher.getPeerHandler().downloadSucceeded(leecher, transfer);
+
+        // Only if the data info is completed
+        // (Nothing is merged if all chunks were rejected)
+        if (mergedDataInfo.isPresent() && mergedDataInfo.get().isCompleted()) {
+            logger.info("Leecher " + leecher.getPeerId() + " completed the data " + mergedDataInfo.get() +
+                        " with " + transfer);
+
+            // HANDLER
+            leecher.getPeerHandler().dataCompleted(leecher, mergedDataInfo.get(), transfer);
+        }
+    }
+
+    /**
+     * Resets the download, after the given write channel was closed.
+     *
+     * @param remotePeer
+     * @param writeChannel
+     * @return The merged data info.
+     */
+    private Optional<DataInfo> reset(Channel remotePeer, DataBaseWriteChannel writeChannel) {
+        Optional<DataInfo> merged = writeChannel.getMergedDataInfo();
+        Optional<DataInfo> rejected = writeChannel.getRejectedDataInfo();
         dataBaseWriteChannel = null;
-        transfer.set(null);
+        Transfer transfer = this.transfer.getAndSet(null);
+
+        if (rejected.isPresent()) {
+            logger.warn("Leecher " + leecher.getPeerId() + " rejected corrupted chunks " + rejected.get() +
+                        " of " + transfer);
+
+            // Very important:
+            // Do not download the corrupted chunks from this peer again
+            CollectDataInfoHandler.get(remotePeer).removeDataInfo(rejected.get());
+        }
+
         leech.run();
         return merged;
     }
@@ -118,9 +282,16 @@ public final class DownloadHandler extends ChannelHandlerAdapter {
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        // Make sure the channel is definitely closed
+        // Make sure a channel, which is still opened, is closed
+        if (pendingSetup != null) {
+            pendingSetup.thenAccept(writeChannel -> writeChannel.ifPresent(asyncDataBaseIO::close));
+            pendingSetup = null;
+        }
+
+        // Make sure the channel is definitely closed, after pending writes
         if (dataBaseWriteChannel != null) {
-            dataBaseWriteChannel.close();
+            DataBaseWriteChannel writeChannel = dataBaseWriteChannel;
+            pendingWrite.handle((v, e) -> asyncDataBaseIO.close(writeChannel));
             dataBaseWriteChannel = null;
         }
 
@@ -129,23 +300,15 @@ public final class DownloadHandler extends ChannelHandlerAdapter {
 
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-        if (dataBaseWriteChannel != null) {
-            throw new IllegalStateException("dataBaseWriteChannel != null");
+        if (dataBaseWriteChannel != null || pendingSetup != null) {
+            throw new IllegalStateException("dataBaseWriteChannel != null || pendingSetup != null");
         }
 
         Transfer transfer = this.transfer.get();
         if (transfer.equals(evt)) {
 
-            // Setup vars
-            setup();
-
-            // Write the download request
-            ctx.writeAndFlush(new UploadRequestMessage(transfer.getDataInfo()));
-
-            logger.debug("Leecher " + leecher.getPeerId() + " requested download " + transfer);
-
-            // HANDLER
-            leecher.getPeerHandler().downloadRequested(leecher, transfer);
+            // Setup vars and request the download
+            setup(ctx, transfer);
         }
 
         super.userEventTriggered(ctx, evt);
@@ -167,7 +330,47 @@ public final class DownloadHandler extends ChannelHandlerAdapter {
             // Remove the rejected data info from the remote data info
             CollectDataInfoHandler.get(ctx.channel()).removeDataInfo(transfer.getDataInfo());
 
-            reset();
+            // Close the unused channel without blocking the event loop
+            DataBaseWriteChannel writeChannel = dataBaseWriteChannel;
+            asyncDataBaseIO.close(writeChannel).whenCompleteAsync((v, cause) -> {
+                // Ignore closes of failed downloads
+                if (writeChannel != dataBaseWriteChannel) {
+                    return;
+                }
+
+                try {
+                    if (cause != null) {
+                        throw cause;
+                    }
+                    reset(ctx.channel(), writeChannel);
+                } catch (Throwable e) {
+                    ctx.fireExceptionCaught(e);
+                }
+            }, ctx.executor());
+        } else if (msg instanceof ChunkHashProofMessage) {
+            ChunkHashProofMessage chunkHashProofMessage = (ChunkHashProofMessage) msg;
+
+            if (receivedBuffer) {
+                throw new IllegalStateException("receivedBuffer");
+            }
+
+            // Every requested chunk must be proven against the merkle hash,
+            // the write channel verifies the received chunks with the proofs
+            DataInfo dataInfo = transfer.getDataInfo();
+            BitSet provenChunks = new BitSet(dataInfo.getChunkCount());
+            for (ChunkHashProof chunkHashProof : chunkHashProofMessage.getChunkHashProofs()) {
+                if (!dataBaseWriteChannel.addChunkHashProof(chunkHashProof)) {
+                    throw new IllegalStateException("Invalid chunk hash proof " + chunkHashProof + " for " + transfer);
+                }
+                provenChunks.set(chunkHashProof.getChunkIndex());
+            }
+
+            if (provenChunks.cardinality() != dataInfo.getCompletedChunkCount()) {
+                throw new IllegalStateException("provenChunks.cardinality() != dataInfo.getCompletedChunkCount()");
+            }
+
+            logger.debug("Leecher " + leecher.getPeerId() + " verified " + provenChunks.cardinality() +
+                         " chunk hash proofs for " + transfer);
         } else if (msg instanceof ByteBuf) {
             ByteBuf buffer = (ByteBuf) msg;
 
@@ -180,35 +383,8 @@ public final class DownloadHandler extends ChannelHandlerAdapter {
                 leecher.getPeerHandler().downloadStarted(leecher, transfer);
             }
 
-            // Process the buffer and check for completion
-            boolean completed = (transfer = update(buffer)).isCompleted();
-
-            logger.debug("Leecher " + leecher.getPeerId() + " progressed download " + transfer);
-
-            // HANDLER
-            leecher.getPeerHandler().downloadProgressed(leecher, transfer);
-
-            if (completed) {
-                // Reset and prepare for next transfer
-                DataInfo mergedDataInfo = reset().get();
-
-                logger.debug("Leecher " + leecher.getPeerId() + " succeeded download " + transfer);
-
-                // HANDLER
-                leecher.getPeerHandler().downloadSucceeded(leecher, transfer);
-
-                // Only if the data info is completed
-                if (mergedDataInfo.isCompleted()) {
-                    logger.info("Leecher " + leecher.getPeerId() + " completed the data " + mergedDataInfo + " with " +
-                                transfer);
-
-                    // HANDLER
-                    leecher.getPeerHandler().dataCompleted(leecher, mergedDataInfo, transfer);
-                }
-            }
-
-            // Nobody is gonna use this
-            buffer.release();
+            // Process the buffer asynchronously
+            write(ctx, buffer);
         } else {
             super.channelRead(ctx, msg);
         }
@@ -1,24 +1,34 @@
 package de.probst.ba.core.net.peer.peers.netty.handlers.transfer;
 
+import de.probst.ba.core.media.database.AsyncDataBaseIO;
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataBase;
 import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
 import de.probst.ba.core.net.peer.PeerId;
 import de.probst.ba.core.net.peer.Seeder;
 import de.probst.ba.core.net.peer.Transfer;
 import de.probst.ba.core.net.peer.peers.netty.NettyConfig;
+import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages.ChunkHashProofMessage;
 import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages.UploadRejectedMessage;
 import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages.UploadRequestMessage;
+import de.probst.ba.core.util.collections.Tuple;
+import de.probst.ba.core.util.collections.Tuple2;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelProgressiveFuture;
 import io.netty.channel.ChannelProgressiveFutureListener;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.group.ChannelGroup;
-import io.netty.handler.stream.ChunkedNioStream;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.stream.ChunkedInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -48,6 +58,7 @@ public final class UploadHandler extends SimpleChannelInboundHandler<UploadReque
     private final Logger logger = LoggerFactory.getLogger(UploadHandler.class);
     private final Seeder seeder;
     private final Object allowLock;
+    private final AsyncDataBaseIO asyncDataBaseIO;
     private ChannelHandlerContext ctx;
     private volatile Transfer transfer;
 
@@ -78,11 +89,73 @@ public final class UploadHandler extends SimpleChannelInboundHandler<UploadReque
         return allowed;
     }
 
+    private ChunkedInput<?> chunkedInput(DataBaseReadChannel dataBaseReadChannel) throws IOException {
+        // Only socket channels can transfer file regions
+        if (dataBaseReadChannel.supportsTransfer() && ctx.channel() instanceof SocketChannel) {
+            return new ChunkedDataBaseRegionInput(dataBaseReadChannel, NettyConfig.getUploadBufferSize());
+        } else {
+            return new AsyncChunkedDataBaseInput(asyncDataBaseIO,
+                                                 dataBaseReadChannel,
+                                                 NettyConfig.getUploadBufferSize());
+        }
+    }
+
     private void reset() {
         transfer = null;
         ctx.channel().config().setAutoRead(true);
     }
 
+    /**
+     * Opens the read channel and collects the proofs of the chunk
+     * hashes, which are unknown to the leecher, either from the
+     * chunk hashes or from proofs received earlier. Both take the
+     * monitor of the data base, so this never runs on the event loop.
+     *
+     * @param dataBase
+     * @param uploadDataInfo
+     * @return The read channel and the chunk hash proofs, if any.
+     * @throws IOException
+     */
+    private static Tuple2<Optional<DataBaseReadChannel>, List<Optional<ChunkHashProof>>> lookup(
+            DataBase dataBase, DataInfo uploadDataInfo) throws IOException {
+        Optional<DataBaseReadChannel> dataBaseReadChannel = dataBase.lookup(uploadDataInfo);
+        List<Optional<ChunkHashProof>> chunkHashProofs = Collections.emptyList();
+        if (dataBaseReadChannel.isPresent() && uploadDataInfo.hasMerkleHash() && !uploadDataInfo.hasChunkHashes()) {
+            chunkHashProofs = uploadDataInfo.getCompletedChunks()
+                                            .mapToObj(i -> dataBase.getChunkHashProof(uploadDataInfo.getHash(), i))
+                                            .collect(Collectors.toList());
+        }
+        return Tuple.of(dataBaseReadChannel, chunkHashProofs);
+    }
+
+    private void upload(ChannelHandlerContext ctx,
+                        Transfer transfer,
+                        DataBaseReadChannel dataBaseReadChannel,
+                        List<Optional<ChunkHashProof>> chunkHashProofs) throws IOException {
+        if (!chunkHashProofs.isEmpty()) {
+            // The leecher would reject every unproven chunk, so do not send them at all
+            if (!chunkHashProofs.stream().allMatch(Optional::isPresent)) {
+                asyncDataBaseIO.close(dataBaseReadChannel);
+                reject("Missing chunk hash proofs", transfer, logger::warn);
+                reset();
+                return;
+            }
+
+            ctx.write(new ChunkHashProofMessage(chunkHashProofs.stream()
+                                                               .map(Optional::get)
+                                                               .collect(Collectors.toList())));
+        }
+
+        // Upload chunked input
+        ctx.writeAndFlush(chunkedInput(dataBaseReadChannel),
+                          ctx.newProgressivePromise()).addListener(this);
+
+        logger.debug("Seeder " + seeder.getPeerId() + " started upload " + transfer);
+
+        // HANDLER
+        seeder.getPeerHandler().uploadStarted(seeder, transfer);
+    }
+
     @Override
     protected void messageReceived(ChannelHandlerContext ctx, UploadRequestMessage msg) throws Exception {
 
@@ -93,33 +166,46 @@ public final class UploadHandler extends SimpleChannelInboundHandler<UploadReque
             Transfer transfer =
                     Transfer.upload(new PeerId(ctx.channel().remoteAddress(), ctx.channel().id()), msg.getDataInfo());
 
-            // The byte channel
-            Optional<DataBaseReadChannel> dataBaseReadChannel;
-
             // If the upload is not allowed, reject it!
             if (!setup(transfer)) {
                 reject("Upload denied", transfer, logger::debug);
-            } else if (!(dataBaseReadChannel = seeder.getDataBase().lookup(transfer.getDataInfo())).isPresent()) {
-                reject("Failed to open database channel", transfer, logger::warn);
             } else {
-
-                // Upload chunked input
-                ctx.writeAndFlush(new ChunkedNioStream(dataBaseReadChannel.get(), NettyConfig.getUploadBufferSize()),
-                                  ctx.newProgressivePromise()).addListener(this);
-
-                logger.debug("Seeder " + seeder.getPeerId() + " started upload " + transfer);
-
-                // HANDLER
-                seeder.getPeerHandler().uploadStarted(seeder, transfer);
+                // Open the byte channel without blocking the event loop
+                asyncDataBaseIO.submit(seeder.getDataBase(), dataBase -> lookup(dataBase, transfer.getDataInfo()))
+                               .whenCompleteAsync((lookup, cause) -> {
+                                   try {
+                                       if (cause != null) {
+                                           throw cause;
+                                       }
+
+                                       Optional<DataBaseReadChannel> dataBaseReadChannel = lookup.first();
+                                       if (!ctx.channel().isActive()) {
+                                           dataBaseReadChannel.ifPresent(asyncDataBaseIO::close);
+                                       } else if (!dataBaseReadChannel.isPresent()) {
+                                           reject("Failed to open database channel", transfer, logger::warn);
+                                           reset();
+                                       } else {
+                                           upload(ctx, transfer, dataBaseReadChannel.get(), lookup.second());
+                                       }
+                                   } catch (Throwable e) {
+                                       ctx.fireExceptionCaught(e);
+                                   }
+                               }, ctx.executor());
             }
         }
     }
 
     public UploadHandler(Seeder seeder, Object allowLock) {
+        this(seeder, allowLock, AsyncDataBaseIO.getDefault());
+    }
+
+    public UploadHandler(Seeder seeder, Object allowLock, AsyncDataBaseIO asyncDataBaseIO) {
         Objects.requireNonNull(seeder);
         Objects.requireNonNull(allowLock);
+        Objects.requireNonNull(asyncDataBaseIO);
         this.seeder = seeder;
         this.allowLock = allowLock;
+        this.asyncDataBaseIO = asyncDataBaseIO;
     }
 
     public Optional<Transfer> getTransfer() {
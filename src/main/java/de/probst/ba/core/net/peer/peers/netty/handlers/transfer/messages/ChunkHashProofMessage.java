@@ -0,0 +1,27 @@
+package de.probst.ba.core.net.peer.peers.netty.handlers.transfer.messages;
+
+import de.probst.ba.core.media.database.ChunkHashProof;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sent in front of an upload whose data info
+ * has a merkle hash but no chunk hashes.
+ */
+public final class ChunkHashProofMessage implements Serializable {
+
+    private final List<ChunkHashProof> chunkHashProofs;
+
+    public ChunkHashProofMessage(List<ChunkHashProof> chunkHashProofs) {
+        Objects.requireNonNull(chunkHashProofs);
+        this.chunkHashProofs = Collections.unmodifiableList(new ArrayList<>(chunkHashProofs));
+    }
+
+    public List<ChunkHashProof> getChunkHashProofs() {
+        return chunkHashProofs;
+    }
+}
@@ -1,6 +1,7 @@
 package de.probst.ba.core.util.concurrent.trafficshaper;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
 
 /**
  * Created by chrisprobst on 13.09.14.
@@ -25,6 +26,8 @@ public final class MessageSizeEstimator {
             return 0;
         } else if (msg instanceof ByteBuf) {
             return ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
         } else if (msg instanceof byte[]) {
             return ((byte[]) msg).length;
         } else if (msg.getClass().isAnnotationPresent(EstimatedMessageSize.class)) {
@@ -2,6 +2,7 @@ package de.probst.ba.core.util.io;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -9,7 +10,6 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.Collection;
@@ -28,20 +28,20 @@ public final class IOUtil {
 
     }
 
-    public static void closeAllAndThrow(Collection<? extends Channel> channels) throws IOException {
+    public static void closeAllAndThrow(Collection<? extends Closeable> channels) throws IOException {
         IOException any = closeAllAndGetException(channels, null);
         if (any != null) {
             throw any;
         }
     }
 
-    public static IOException closeAllAndGetException(Collection<? extends Channel> channels, Exception suppressed) {
+    public static IOException closeAllAndGetException(Collection<? extends Closeable> channels, Exception suppressed) {
         Objects.requireNonNull(channels);
         IOException any = null;
         if (suppressed != null) {
             any = suppressed instanceof IOException ? (IOException) suppressed : new IOException(suppressed);
         }
-        for (Channel channel : channels) {
+        for (Closeable channel : channels) {
             try {
                 channel.close();
             } catch (IOException e) {
@@ -0,0 +1,249 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.DataLookupException;
+import de.probst.ba.core.media.database.databases.DataBases;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractDataBaseTest {
+
+    @Test
+    public void partitionIndex() throws IOException, NoSuchAlgorithmException {
+        // Every partition has different data, so a different hash
+        byte[][] data = new byte[4][100];
+        for (int i = 0; i < data.length; i++) {
+            for (int j = 0; j < data[i].length; j++) {
+                data[i][j] = (byte) (i * 7 + j * 31);
+            }
+        }
+
+        DataBase dataBase = DataBases.memoryDataBase();
+        List<DataInfo> partitions = new ArrayList<>();
+        for (int id : new int[]{0, 1, 3, 2}) {
+            partitions.add(DataInfo.fromChannel(id,
+                                                data[id].length,
+                                                Optional.of(id != 2 ? "movie" : "other"),
+                                                Optional.empty(),
+                                                10,
+                                                DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                Channels.newChannel(new ByteArrayInputStream(data[id]))));
+            assertTrue(dataBase.insertFromChannel(partitions.get(partitions.size() - 1),
+                                                  Channels.newChannel(new ByteArrayInputStream(data[id])),
+                                                  true));
+        }
+
+        assertEquals(Arrays.asList(0L, 1L, 3L), new ArrayList<>(dataBase.getPartitions("movie").keySet()));
+        assertEquals(partitions.get(2), dataBase.getPartitions("movie").get(3L));
+        assertEquals(Collections.singleton(2L), dataBase.getPartitions("other").keySet());
+        assertTrue(dataBase.getPartitions("missing").isEmpty());
+
+        // Only the coherent partitions are opened
+        DataBaseReadChannel readChannel = dataBase.findIncremental("movie", DataInfo::isCompleted).get();
+        assertEquals(200, readChannel.size());
+        assertEquals(partitions.subList(0, 2), readChannel.getCumulativeDataInfo());
+        readChannel.close();
+        dataBase.close();
+    }
+
+    @Test
+    public void batchedInsertAndLookup() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[200];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 17);
+        }
+
+        DataInfo first = DataInfo.fromChannel(0,
+                                              100,
+                                              Optional.empty(),
+                                              Optional.empty(),
+                                              10,
+                                              DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                              Channels.newChannel(new ByteArrayInputStream(data, 0, 100)));
+        DataInfo second = DataInfo.fromChannel(1,
+                                               100,
+                                               Optional.empty(),
+                                               Optional.empty(),
+                                               10,
+                                               DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                               Channels.newChannel(new ByteArrayInputStream(data, 100, 100)));
+        List<DataInfo> both = Arrays.asList(first, second);
+
+        DataBase dataBase = DataBases.memoryDataBase(true);
+
+        // A single locked region fails the whole batch
+        DataBaseWriteChannel blocker = dataBase.insert(second.empty().withChunk(5)).get();
+        assertFalse(dataBase.insertMany(both).isPresent());
+        assertTrue(dataBase.get(first.getHash()) == null);
+        assertFalse(dataBase.getEstimatedDataInfo().containsKey(first.getHash()));
+        blocker.close();
+
+        assertTrue(dataBase.insertManyFromChannel(both, Channels.newChannel(new ByteArrayInputStream(data)), true));
+        assertEquals(first, dataBase.get(first.getHash()));
+        assertEquals(second, dataBase.get(second.getHash()));
+
+        // Nothing is locked, if one data info does not exist
+        DataInfo missing = DataInfo.fromChannel(2,
+                                                100,
+                                                Optional.empty(),
+                                                Optional.empty(),
+                                                10,
+                                                DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                Channels.newChannel(new ByteArrayInputStream(data, 50, 100)));
+        try {
+            dataBase.lookupMany(Arrays.asList(first, missing));
+            assertTrue(false);
+        } catch (DataLookupException e) {
+            // Expected
+        }
+        dataBase.insert(first).get().close();
+
+        blocker = dataBase.insert(second.empty().withChunk(5)).get();
+        assertFalse(dataBase.lookupMany(both).isPresent());
+        blocker.close();
+
+        // Incompatible data info with the same hash unlock all regions again
+        DataInfo incompatible = new DataInfo(0,
+                                             100,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             missing.getHash(),
+                                             Arrays.asList("a", "b")).full();
+        try {
+            dataBase.insertMany(Arrays.asList(missing, incompatible));
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertEquals(null, dataBase.get(missing.getHash()));
+        dataBase.insert(missing).get().close();
+
+        // The read region of the first data info was unlocked again
+        dataBase.insert(first).get().close();
+
+        List<DataBaseReadChannel> readChannels = dataBase.lookupMany(both).get();
+        ByteBuffer copied = ByteBuffer.allocate(data.length);
+        for (DataBaseReadChannel readChannel : readChannels) {
+            while (readChannel.read(copied) > 0) {
+            }
+            readChannel.close();
+        }
+        assertTrue(Arrays.equals(data, copied.array()));
+        dataBase.close();
+    }
+
+    @Test
+    public void dataBaseSnapshots() throws IOException {
+        DataInfo dataInfo = DataInfo.generate(0,
+                                              100,
+                                              Optional.empty(),
+                                              Optional.empty(),
+                                              "123Hash123",
+                                              11,
+                                              String::valueOf);
+
+        DataBase dataBase = DataBases.fakeDataBase();
+        Map<String, DataInfo> empty = dataBase.getDataInfo();
+        assertEquals(0, dataBase.getVersion());
+
+        // Empty data info are not part of the snapshot
+        DataBaseWriteChannel writeChannel = dataBase.insert(dataInfo.withChunk(1)).get();
+        assertEquals(0, dataBase.getVersion());
+        assertTrue(empty == dataBase.getDataInfo());
+        assertEquals(dataInfo.empty(), dataBase.get(dataInfo.getHash()));
+
+        writeChannel.write(ByteBuffer.allocate((int) dataInfo.getChunkSize(1)));
+        writeChannel.close();
+        Map<String, DataInfo> snapshot = dataBase.getDataInfo();
+        assertEquals(1, dataBase.getVersion());
+        assertEquals(Collections.singletonMap(dataInfo.getHash(), dataInfo.withChunk(1)), snapshot);
+        assertTrue(snapshot == dataBase.getDataInfo());
+        assertTrue(empty.isEmpty());
+    }
+
+    @Test
+    public void verifiedWrites() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 3);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             ChunkHashAlgorithm.CRC32,
+                                             Channels.newChannel(new ByteArrayInputStream(data))).withMerkleHash();
+        DataInfo stripped = full.withoutChunkHashes();
+
+        // Corrupt chunk 3 and write in pieces which cross chunks
+        byte[] corrupted = data.clone();
+        corrupted[350]++;
+
+        DataBase dataBase = DataBases.memoryDataBase();
+        DataBaseWriteChannel writeChannel = dataBase.insert(full).get();
+        for (int i = 0; i < corrupted.length; i += 7) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(corrupted, i, Math.min(7, corrupted.length - i));
+            while (byteBuffer.hasRemaining()) {
+                writeChannel.write(byteBuffer);
+            }
+        }
+        writeChannel.close();
+
+        assertEquals(full.empty().withChunk(3), writeChannel.getRejectedDataInfo().get());
+        assertEquals(full.withoutChunk(3), writeChannel.getMergedDataInfo().get());
+
+        // The rejected chunk can be downloaded again, this time
+        // without chunk hashes, but with a proof from the uploader
+        writeChannel = dataBase.insert(stripped.empty().withChunk(3)).get();
+        assertTrue(writeChannel.addChunkHashProof(full.getChunkHashProof(3)));
+        assertFalse(writeChannel.addChunkHashProof(full.getChunkHashProof(4)));
+        writeChannel.write(ByteBuffer.wrap(data, 300, 100));
+        writeChannel.close();
+
+        assertFalse(writeChannel.getRejectedDataInfo().isPresent());
+        assertTrue(writeChannel.getMergedDataInfo().get().isCompleted());
+
+        // Chunks of a merkle hash without a proof are rejected
+        dataBase = DataBases.memoryDataBase();
+        writeChannel = dataBase.insert(stripped.empty().withChunk(3)).get();
+        writeChannel.write(ByteBuffer.wrap(data, 300, 100));
+        writeChannel.close();
+
+        assertEquals(stripped.empty().withChunk(3), writeChannel.getRejectedDataInfo().get());
+        assertFalse(writeChannel.getMergedDataInfo().isPresent());
+
+        // Chunks which are not written sequentially cannot be verified
+        dataBase = DataBases.memoryDataBase();
+        writeChannel = dataBase.insert(full.empty().withChunk(5)).get();
+        writeChannel.position(50);
+        writeChannel.write(ByteBuffer.wrap(data, 550, 50));
+        writeChannel.position(0);
+        writeChannel.write(ByteBuffer.wrap(data, 500, 50));
+        writeChannel.position(100);
+        writeChannel.close();
+
+        assertEquals(full.empty().withChunk(5), writeChannel.getRejectedDataInfo().get());
+        assertFalse(writeChannel.getMergedDataInfo().isPresent());
+    }
+}
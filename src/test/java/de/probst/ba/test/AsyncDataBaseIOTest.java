@@ -0,0 +1,74 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.AsyncDataBaseIO;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDataBaseIOTest {
+
+    @Test
+    public void asyncDataBaseIOBackpressure() throws Exception {
+        AsyncDataBaseIO asyncDataBaseIO = new AsyncDataBaseIO(1, 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        Channel channel = Channels.newChannel(new ByteArrayInputStream(new byte[0]));
+
+        // Block the only thread and fill the queue
+        List<CompletableFuture<Thread>> futures = new ArrayList<>();
+        futures.add(asyncDataBaseIO.submit(channel, c -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return Thread.currentThread();
+        }));
+        for (int i = 0; i < 4; i++) {
+            futures.add(asyncDataBaseIO.submit(channel, c -> Thread.currentThread()));
+        }
+
+        // The operations are deferred and never run on the calling thread
+        assertEquals(3, asyncDataBaseIO.getDeferredOperationCount());
+        blocked.countDown();
+        for (CompletableFuture<Thread> future : futures) {
+            assertTrue(future.get() != Thread.currentThread());
+        }
+        assertEquals(0, asyncDataBaseIO.getDeferredOperationCount());
+    }
+
+    @Test
+    public void asyncDataBaseIOErrors() throws Exception {
+        AsyncDataBaseIO asyncDataBaseIO = new AsyncDataBaseIO(1, 1);
+        Channel channel = Channels.newChannel(new ByteArrayInputStream(new byte[0]));
+
+        // More errors than the executor can hold at once
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<Thread> future = asyncDataBaseIO.submit(channel, c -> {
+                throw new AssertionError();
+            });
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+        }
+
+        // The errors released their slots
+        assertTrue(asyncDataBaseIO.submit(channel, c -> Thread.currentThread()).get(10, TimeUnit.SECONDS) != null);
+        assertEquals(0, asyncDataBaseIO.getDeferredOperationCount());
+    }
+}
@@ -0,0 +1,72 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.media.database.databases.cached.CachedDataBase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachedDataBaseTest {
+
+    @Test
+    public void cachedDataBase() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 17);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        // Room for three chunks
+        CachedDataBase dataBase = new CachedDataBase(DataBases.memoryDataBase(true), 300);
+        try {
+            assertTrue(dataBase.insertFromChannel(full, Channels.newChannel(new ByteArrayInputStream(data)), true));
+
+            DataInfo hot = full.empty().withChunk(1).withChunk(2);
+            for (int i = 0; i < 3; i++) {
+                byte[] copied = DataBaseTestUtil.readFully(dataBase, hot);
+                assertTrue(Arrays.equals(Arrays.copyOfRange(data, 100, 300), copied));
+            }
+            assertEquals(2, dataBase.getMissCount());
+            assertEquals(4, dataBase.getHitCount());
+            assertEquals(200, dataBase.getCacheSize());
+
+            // Reading everything evicts the least recently used chunks
+            byte[] copied = DataBaseTestUtil.readFully(dataBase, full);
+            assertTrue(Arrays.equals(data, copied));
+            assertEquals(300, dataBase.getCacheSize());
+
+            // Inserted chunks are removed from the cache
+            DataInfo last = full.empty().withChunk(9);
+            DataBaseWriteChannel writeChannel = dataBase.insert(last).get();
+            assertEquals(200, dataBase.getCacheSize());
+            writeChannel.write(ByteBuffer.wrap(data, 900, 100));
+            writeChannel.close();
+
+            long missCount = dataBase.getMissCount();
+            byte[] reread = DataBaseTestUtil.readFully(dataBase, last);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 900, 1000), reread));
+            assertEquals(missCount + 1, dataBase.getMissCount());
+        } finally {
+            dataBase.close();
+        }
+        assertEquals(0, dataBase.getCacheSize());
+    }
+}
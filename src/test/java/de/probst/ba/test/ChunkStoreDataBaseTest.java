@@ -0,0 +1,84 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.file.ChunkStoreDataBase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkStoreDataBaseTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void chunkStoreDataBase() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 19);
+        }
+
+        // A second release, which only differs in the last chunks
+        byte[] other = data.clone();
+        Arrays.fill(other, 700, other.length, (byte) 42);
+
+        DataInfo first = DataInfo.fromChannel(0,
+                                              data.length,
+                                              Optional.empty(),
+                                              Optional.empty(),
+                                              10,
+                                              DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                              Channels.newChannel(new ByteArrayInputStream(data)));
+        DataInfo second = DataInfo.fromChannel(1,
+                                               other.length,
+                                               Optional.empty(),
+                                               Optional.empty(),
+                                               10,
+                                               DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                               Channels.newChannel(new ByteArrayInputStream(other)));
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        try (ChunkStoreDataBase dataBase = new ChunkStoreDataBase(false, directory)) {
+            assertTrue(dataBase.supportsDeduplication());
+            assertTrue(dataBase.insertFromChannel(first,
+                                                  Channels.newChannel(new ByteArrayInputStream(data)),
+                                                  true));
+
+            // The shared chunks are completed without transferring them
+            DataInfo deduplicated = dataBase.deduplicate(second);
+            assertEquals(second.empty().withChunks(IntStream.range(0, 7)), deduplicated);
+            assertEquals(deduplicated, dataBase.get(second.getHash()));
+            assertTrue(dataBase.deduplicate(second).isEmpty());
+
+            DataInfo missing = second.subtract(deduplicated);
+            assertTrue(dataBase.insertFromChannel(missing,
+                                                  Channels.newChannel(new ByteArrayInputStream(other, 700, 300)),
+                                                  true));
+            // The last three chunks of the second release are identical, too
+            assertEquals(11, dataBase.getStoredChunkCount());
+            assertEquals(20, dataBase.getChunkReferenceCount());
+        }
+
+        try (ChunkStoreDataBase dataBase = new ChunkStoreDataBase(false, directory)) {
+            assertEquals(11, dataBase.getStoredChunkCount());
+            assertEquals(20, dataBase.getChunkReferenceCount());
+
+            for (DataInfo dataInfo : Arrays.asList(first, second)) {
+                byte[] copied = DataBaseTestUtil.readFully(dataBase, dataInfo);
+                assertTrue(Arrays.equals(dataInfo == first ? data : other, copied));
+            }
+        }
+    }
+}
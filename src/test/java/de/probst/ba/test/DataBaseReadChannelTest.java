@@ -0,0 +1,92 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.CumulativeDataBaseReadChannel;
+import de.probst.ba.core.media.database.databases.file.FileDataBase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataBaseReadChannelTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void positionalReads() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 23);
+        }
+
+        DataInfo first = DataInfo.fromChannel(0,
+                                              500,
+                                              Optional.empty(),
+                                              Optional.empty(),
+                                              10,
+                                              DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                              Channels.newChannel(new ByteArrayInputStream(data, 0, 500)));
+        DataInfo second = DataInfo.fromChannel(1,
+                                               500,
+                                               Optional.empty(),
+                                               Optional.empty(),
+                                               10,
+                                               DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                               Channels.newChannel(new ByteArrayInputStream(data, 500, 500)));
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        try (FileDataBase dataBase = new FileDataBase(false, directory)) {
+            assertTrue(dataBase.insertFromChannel(first,
+                                                  Channels.newChannel(new ByteArrayInputStream(data, 0, 500)),
+                                                  true));
+            assertTrue(dataBase.insertFromChannel(second,
+                                                  Channels.newChannel(new ByteArrayInputStream(data, 500, 500)),
+                                                  true));
+
+            DataBaseReadChannel readChannel =
+                    new CumulativeDataBaseReadChannel(dataBase, dataBase.lookupMany(Arrays.asList(first, second))
+                                                                        .get());
+            readChannel.position(100);
+
+            // Concurrent positional reads never span chunks
+            byte[] copied = new byte[data.length];
+            IntStream.range(0, data.length / 25).parallel().forEach(i -> {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(copied, i * 25, 25);
+                try {
+                    while (byteBuffer.hasRemaining()) {
+                        assertTrue(readChannel.read(byteBuffer, byteBuffer.position()) <= 50);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertTrue(Arrays.equals(data, copied));
+
+            // A vectored read fills the buffers in order
+            ByteBuffer[] byteBuffers = {ByteBuffer.allocate(15), ByteBuffer.allocate(70), ByteBuffer.allocate(30)};
+            assertEquals(100, readChannel.read(byteBuffers, 900));
+            assertEquals(15, byteBuffers[2].position());
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 915, 985), byteBuffers[1].array()));
+            assertEquals(-1, readChannel.read(byteBuffers, 1000));
+            assertEquals(-1, readChannel.read(ByteBuffer.allocate(1), 1000));
+
+            // The position is not touched
+            assertEquals(100, readChannel.position());
+            readChannel.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers shared by the data base tests.
+ */
+final class DataBaseTestUtil {
+
+    private DataBaseTestUtil() {
+
+    }
+
+    /**
+     * Reads the remaining bytes of the read channel
+     * and closes it afterwards.
+     *
+     * @param readChannel
+     * @return The bytes, which were read.
+     * @throws IOException
+     */
+    static byte[] readFully(DataBaseReadChannel readChannel) throws IOException {
+        try {
+            ByteBuffer copied = ByteBuffer.allocate((int) (readChannel.size() - readChannel.position()));
+            while (copied.hasRemaining()) {
+                if (readChannel.read(copied) < 0) {
+                    throw new EOFException();
+                }
+            }
+            return copied.array();
+        } finally {
+            readChannel.close();
+        }
+    }
+
+    /**
+     * Reads the completed chunks of the data info.
+     *
+     * @param dataBase
+     * @param dataInfo
+     * @return The bytes, which were read.
+     * @throws IOException
+     */
+    static byte[] readFully(DataBase dataBase, DataInfo dataInfo) throws IOException {
+        return readFully(dataBase.lookup(dataInfo).get());
+    }
+}
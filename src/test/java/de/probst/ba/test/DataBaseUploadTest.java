@@ -0,0 +1,143 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.AsyncDataBaseIO;
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.AsyncChunkedDataBaseInput;
+import de.probst.ba.core.net.peer.peers.netty.handlers.transfer.ChunkedDataBaseRegionInput;
+import de.probst.ba.core.util.concurrent.trafficshaper.MessageSizeEstimator;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataBaseUploadTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fileRegionUploads() throws Exception {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 13);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            assertTrue(dataBase.insertFromChannel(full, Channels.newChannel(new ByteArrayInputStream(data)), true));
+
+            // Regions are transferred chunk by chunk
+            DataBaseReadChannel readChannel = dataBase.lookup(full.empty().withChunk(2).withChunk(5)).get();
+            assertTrue(readChannel.supportsTransfer());
+            ChunkedDataBaseRegionInput chunkedInput = new ChunkedDataBaseRegionInput(readChannel, 64);
+            ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+            WritableByteChannel target = Channels.newChannel(transferred);
+            FileRegion fileRegion;
+            while ((fileRegion = chunkedInput.readChunk(null)) != null) {
+                assertTrue(fileRegion.count() <= 64);
+                assertEquals(fileRegion.count(), MessageSizeEstimator.estimateMessageSize(fileRegion));
+                while (fileRegion.transfered() < fileRegion.count()) {
+                    fileRegion.transferTo(target, fileRegion.transfered());
+                }
+                assertTrue(fileRegion.release());
+                assertEquals(transferred.size(), chunkedInput.progress());
+            }
+            assertTrue(chunkedInput.isEndOfInput());
+            assertEquals(200, chunkedInput.length());
+            assertTrue(readChannel.isOpen());
+            chunkedInput.close();
+            assertFalse(readChannel.isOpen());
+
+            byte[] expected = new byte[200];
+            System.arraycopy(data, 200, expected, 0, 100);
+            System.arraycopy(data, 500, expected, 100, 100);
+            assertTrue(Arrays.equals(expected, transferred.toByteArray()));
+        }
+    }
+
+    @Test
+    public void asyncUploads() throws Exception {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 19);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        // Operations only run, when the test runs them
+        List<Runnable> operations = new ArrayList<>();
+        AsyncDataBaseIO asyncDataBaseIO = new AsyncDataBaseIO(operations::add);
+
+        try (DataBase dataBase = DataBases.memoryDataBase()) {
+            assertTrue(dataBase.insertFromChannel(full, Channels.newChannel(new ByteArrayInputStream(data)), true));
+
+            DataBaseReadChannel readChannel = dataBase.lookup(full).get();
+            EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler());
+            ChannelFuture future = channel.writeAndFlush(new AsyncChunkedDataBaseInput(asyncDataBaseIO,
+                                                                                       readChannel,
+                                                                                       300));
+
+            // Nothing is written, before the data base is read
+            channel.runPendingTasks();
+            assertTrue(channel.outboundMessages().isEmpty());
+
+            ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+            while (!future.isDone()) {
+                assertFalse(operations.isEmpty());
+                List<Runnable> pending = new ArrayList<>(operations);
+                operations.clear();
+                pending.forEach(Runnable::run);
+                channel.runPendingTasks();
+
+                ByteBuf byteBuf;
+                while ((byteBuf = channel.readOutbound()) != null) {
+                    assertTrue(byteBuf.readableBytes() <= 300);
+                    byteBuf.readBytes(uploaded, byteBuf.readableBytes());
+                    byteBuf.release();
+                }
+            }
+            assertTrue(future.isSuccess());
+            assertTrue(Arrays.equals(data, uploaded.toByteArray()));
+
+            // The read channel is closed asynchronously
+            assertTrue(readChannel.isOpen());
+            operations.forEach(Runnable::run);
+            assertFalse(readChannel.isOpen());
+        }
+    }
+}
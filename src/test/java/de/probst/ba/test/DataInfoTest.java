@@ -1,11 +1,29 @@
 package de.probst.ba.test;
 
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
+import de.probst.ba.core.media.database.ChunkHashProof;
 import de.probst.ba.core.media.database.DataInfo;
 import de.probst.ba.core.media.database.DataInfoRegionRWLock;
+import de.probst.ba.core.util.io.IOUtil;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -60,6 +78,220 @@ public class DataInfoTest {
         assertEquals(a.union(b), c);
     }
 
+    @Test
+    public void serialization() throws IOException, ClassNotFoundException {
+        DataInfo a = dataInfo.withChunk(2).withChunk(7);
+        DataInfo b = IOUtil.deserialize(IOUtil.serialize(a));
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertTrue(b.isCompatibleWith(dataInfo));
+        assertEquals(a.union(dataInfo.withChunk(3)), b.withChunk(3));
+    }
+
+    @Test
+    public void binaryForm() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 3);
+        }
+        DataInfo merkle = DataInfo.fromChannel(3,
+                                               data.length,
+                                               Optional.of("file"),
+                                               Optional.of("description"),
+                                               10,
+                                               ChunkHashAlgorithm.SHA1,
+                                               Channels.newChannel(new ByteArrayInputStream(data))).withMerkleHash();
+
+        for (DataInfo a : Arrays.asList(dataInfo.withChunk(2).withChunk(7),
+                                        merkle.withChunk(4),
+                                        merkle.withoutChunkHashes().withChunk(9))) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            a.write(new DataOutputStream(byteArrayOutputStream));
+            DataInfo b = DataInfo.read(new DataInputStream(new ByteArrayInputStream(
+                    byteArrayOutputStream.toByteArray())));
+
+            assertEquals(a, b);
+            assertEquals(a.hashCode(), b.hashCode());
+            assertEquals(a.hasChunkHashes(), b.hasChunkHashes());
+            assertTrue(b.isCompatibleWith(a));
+        }
+    }
+
+    @Test
+    public void chunkHashes() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        DataInfo a = DataInfo.fromChannel(0,
+                                          data.length,
+                                          Optional.empty(),
+                                          Optional.empty(),
+                                          10,
+                                          DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                          Channels.newChannel(new ByteArrayInputStream(data)));
+        DataInfo b = new DataInfo(0, data.length, Optional.empty(), Optional.empty(), a.getHash(), a.getChunkHashes());
+
+        assertEquals(10, a.getChunkHashes().size());
+        assertEquals(40, a.getChunkHashes().get(9).length());
+        assertEquals(a, b.full());
+        assertTrue(a.isCompatibleWith(b));
+        assertFalse(a.isCompatibleWith(dataInfo));
+    }
+
+    @Test
+    public void merkleHash() throws IOException, NoSuchAlgorithmException, ClassNotFoundException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+
+        // An odd chunk count promotes nodes without siblings
+        DataInfo flat = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             13,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+        DataInfo merkle = flat.withMerkleHash();
+        DataInfo stripped = IOUtil.deserialize(IOUtil.serialize(merkle.withoutChunkHashes().empty().withChunk(4)));
+
+        assertTrue(merkle.hasMerkleHash());
+        assertFalse(flat.isCompatibleWith(merkle));
+        assertFalse(stripped.hasChunkHashes());
+        assertTrue(stripped.isCompatibleWith(merkle));
+        assertEquals(merkle.getHash(), stripped.getHash());
+        assertEquals(flat.getChunkHashes(), merkle.getChunkHashes());
+
+        for (int i = 0; i < merkle.getChunkCount(); i++) {
+            ChunkHashProof chunkHashProof = merkle.getChunkHashProof(i);
+            assertEquals(merkle.getChunkHashes().get(i), chunkHashProof.getChunkHash());
+            assertTrue(stripped.verifyChunkHashProof(IOUtil.deserialize(IOUtil.serialize(chunkHashProof))));
+        }
+
+        // Proofs of other data are rejected
+        data[0]++;
+        DataInfo other = DataInfo.fromChannel(0,
+                                              data.length,
+                                              Optional.empty(),
+                                              Optional.empty(),
+                                              13,
+                                              DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                              Channels.newChannel(new ByteArrayInputStream(data))).withMerkleHash();
+        assertFalse(stripped.verifyChunkHashProof(other.getChunkHashProof(0)));
+        assertFalse(stripped.verifyChunkHashProof(other.getChunkHashProof(12)));
+    }
+
+    @Test
+    public void parallelFileChannel() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[100003];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+
+        Path file = Files.createTempFile("data", ".bin");
+        try {
+            Files.write(file, data);
+
+            List<DataInfo> sequential = DataInfo.fromPartitionedChannel(3,
+                                                                        data.length,
+                                                                        Optional.empty(),
+                                                                        Optional.empty(),
+                                                                        7,
+                                                                        DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                                        Channels.newChannel(new ByteArrayInputStream(
+                                                                                data)));
+
+            List<DataInfo> parallel;
+            try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                parallel = DataInfo.fromPartitionedFileChannel(3,
+                                                               data.length,
+                                                               Optional.empty(),
+                                                               Optional.empty(),
+                                                               7,
+                                                               DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                               fileChannel);
+            }
+
+            assertEquals(sequential, parallel);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void chunkHashAlgorithms() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[100003];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 13);
+        }
+
+        Path file = Files.createTempFile("data", ".bin");
+        try {
+            Files.write(file, data);
+
+            for (ChunkHashAlgorithm chunkHashAlgorithm : ChunkHashAlgorithm.values()) {
+                if (!chunkHashAlgorithm.isSupported()) {
+                    continue;
+                }
+
+                DataInfo sequential = DataInfo.fromChannel(0,
+                                                           data.length,
+                                                           Optional.empty(),
+                                                           Optional.empty(),
+                                                           11,
+                                                           chunkHashAlgorithm,
+                                                           Channels.newChannel(new ByteArrayInputStream(data)));
+
+                List<DataInfo> parallel;
+                try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    parallel = DataInfo.fromPartitionedFileChannel(1,
+                                                                   data.length,
+                                                                   Optional.empty(),
+                                                                   Optional.empty(),
+                                                                   11,
+                                                                   chunkHashAlgorithm,
+                                                                   fileChannel);
+                }
+
+                assertEquals(chunkHashAlgorithm, sequential.getChunkHashAlgorithm());
+                assertEquals(chunkHashAlgorithm.getLength() * 2, sequential.getChunkHashes().get(0).length());
+                assertEquals(sequential, parallel.get(0));
+
+                // Merkle trees accept leaves of any length
+                DataInfo merkle = sequential.withMerkleHash();
+                DataInfo stripped = merkle.withoutChunkHashes();
+                assertEquals(chunkHashAlgorithm, stripped.getChunkHashAlgorithm());
+                for (int i = 0; i < merkle.getChunkCount(); i++) {
+                    assertTrue(stripped.verifyChunkHashProof(merkle.getChunkHashProof(i)));
+                }
+            }
+
+            DataInfo sha1 = DataInfo.fromChannel(0,
+                                                 data.length,
+                                                 Optional.empty(),
+                                                 Optional.empty(),
+                                                 11,
+                                                 ChunkHashAlgorithm.SHA1,
+                                                 Channels.newChannel(new ByteArrayInputStream(data)));
+            DataInfo crc32 = DataInfo.fromChannel(0,
+                                                  data.length,
+                                                  Optional.empty(),
+                                                  Optional.empty(),
+                                                  11,
+                                                  ChunkHashAlgorithm.CRC32,
+                                                  Channels.newChannel(new ByteArrayInputStream(data)));
+            assertEquals(8, crc32.getChunkHashes().get(0).length());
+            assertFalse(sha1.isCompatibleWith(crc32));
+            assertFalse(sha1.withMerkleHash().isCompatibleWith(crc32.withMerkleHash()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @Test
     public void offset() {
         DataInfo a = dataInfo.withChunk(4).withChunk(5).withChunk(6);
@@ -91,6 +323,82 @@ public class DataInfoTest {
         assertEquals(c.getTotalChunkIndex(10 * 9, true), c.getTotalChunkIndex(2 * 9, false));
     }
 
+    @Test
+    public void offsetIndex() {
+        DataInfo large = DataInfo.generate(0,
+                                           100000,
+                                           Optional.empty(),
+                                           Optional.empty(),
+                                           "123Hash123",
+                                           1001,
+                                           String::valueOf).randomize().withChunk(1000);
+
+        long totalOffset = 0, relativeOffset = 0;
+        for (int i = 0; i < large.getChunkCount(); i++) {
+            assertEquals(totalOffset, large.getTotalOffset(i));
+            assertEquals(i, large.getTotalChunkIndex(totalOffset, true));
+            if (large.isChunkCompleted(i)) {
+                assertEquals(relativeOffset, large.getRelativeOffset(i));
+                assertEquals(i, large.getTotalChunkIndex(relativeOffset, false));
+                assertEquals(i, large.getTotalChunkIndex(relativeOffset + large.getChunkSize(i) - 1, false));
+                relativeOffset += large.getChunkSize(i);
+            }
+            totalOffset += large.getChunkSize(i);
+        }
+        assertEquals(large.getSize(), large.getTotalOffset(large.getChunkCount()));
+        assertEquals(relativeOffset, large.getCompletedSize());
+    }
+
+    @Test
+    public void compressedChunks() throws IOException, ClassNotFoundException {
+        // Spans multiple blocks with a partial last block
+        DataInfo plain = DataInfo.generate(0,
+                                           1000000,
+                                           Optional.empty(),
+                                           Optional.empty(),
+                                           "123Hash123",
+                                           200003,
+                                           String::valueOf);
+        DataInfo compressed = plain.withCompressedChunks(true);
+        assertTrue(compressed.hasCompressedChunks());
+
+        Random random = new Random(42);
+        DataInfo sparse = plain.withChunks(random.ints(500, 0, plain.getChunkCount()));
+        DataInfo dense = plain.withChunks(random.ints(150000, 0, plain.getChunkCount()));
+        DataInfo runs = plain.withChunks(IntStream.range(1000, 140000)).withChunk(200002);
+
+        for (DataInfo a : new DataInfo[]{sparse, dense, runs, plain.full()}) {
+            for (DataInfo b : new DataInfo[]{sparse, dense, runs, plain.full()}) {
+                DataInfo ca = a.withCompressedChunks(true), cb = b.withCompressedChunks(true);
+
+                assertEquals(a.union(b), ca.union(cb));
+                assertEquals(a.subtract(b), ca.subtract(cb));
+                assertEquals(a.intersection(b), ca.intersection(cb));
+                assertEquals(a.intersection(b), ca.intersection(b));
+                assertEquals(a.union(b).hashCode(), ca.union(cb).hashCode());
+            }
+
+            DataInfo ca = IOUtil.deserialize(IOUtil.serialize(a.withCompressedChunks(true)));
+            assertEquals(a, ca);
+            assertEquals(a.flip(), ca.flip());
+            assertEquals(a.getCompletedChunkCount(), ca.getCompletedChunkCount());
+            assertEquals(a.getCompletedSize(), ca.getCompletedSize());
+            assertTrue(Arrays.equals(a.getCompletedChunks().toArray(), ca.getCompletedChunks().toArray()));
+            assertEquals(a, ca.withCompressedChunks(false));
+
+            for (int i = 0; i < 1000; i++) {
+                int chunkIndex = random.nextInt(a.getChunkCount());
+                assertEquals(a.isChunkCompleted(chunkIndex), ca.isChunkCompleted(chunkIndex));
+                assertEquals(a.withoutChunk(chunkIndex), ca.withoutChunk(chunkIndex));
+                if (a.isChunkCompleted(chunkIndex)) {
+                    long relativeOffset = a.getRelativeOffset(chunkIndex);
+                    assertEquals(relativeOffset, ca.getRelativeOffset(chunkIndex));
+                    assertEquals(chunkIndex, ca.getTotalChunkIndex(relativeOffset, false));
+                }
+            }
+        }
+    }
+
     @Test
     public void substract() {
         DataInfo a = dataInfo
@@ -335,4 +643,37 @@ public class DataInfoTest {
         assertTrue(dataInfoRegionRWLock.tryLockReadResource(lockD));
         assertTrue(dataInfoRegionRWLock.tryUnlockReadResource(lockD));
     }
+
+    @Test
+    public void regionLockPerHash() {
+        DataInfoRegionRWLock dataInfoRegionRWLock = new DataInfoRegionRWLock();
+        DataInfo other = DataInfo.generate(1,
+                                           100,
+                                           Optional.empty(),
+                                           Optional.empty(),
+                                           "Other hash",
+                                           11,
+                                           String::valueOf);
+
+        // Regions of other hashes never overlap
+        dataInfoRegionRWLock.lockWriteResource(dataInfo.full());
+        dataInfoRegionRWLock.lockWriteResource(other.withChunk(3));
+        assertFalse(dataInfoRegionRWLock.tryLockReadResource(dataInfo.withChunk(3)));
+        assertFalse(dataInfoRegionRWLock.tryLockWriteResource(other.withChunk(2).withChunk(3)));
+        assertFalse(dataInfoRegionRWLock.tryUnlockWriteResource(other.withChunk(2)));
+        assertTrue(dataInfoRegionRWLock.tryUnlockWriteResource(dataInfo.full()));
+
+        // Readers are counted per chunk
+        dataInfoRegionRWLock.lockReadResource(dataInfo.withChunk(3));
+        dataInfoRegionRWLock.lockReadResource(dataInfo.withChunk(3).withChunk(4));
+        assertEquals(Arrays.asList(other.withChunk(3)), dataInfoRegionRWLock.getLockedWriteRegions());
+        assertEquals(2, dataInfoRegionRWLock.getLockedReadRegions().size());
+
+        dataInfoRegionRWLock.unlockReadResource(dataInfo.withChunk(3).withChunk(4));
+        assertTrue(dataInfoRegionRWLock.tryLockWriteResource(dataInfo.withChunk(4)));
+        assertFalse(dataInfoRegionRWLock.tryLockWriteResource(dataInfo.withChunk(3)));
+        dataInfoRegionRWLock.unlockReadResource(dataInfo.withChunk(3));
+        assertFalse(dataInfoRegionRWLock.tryUnlockReadResource(dataInfo.withChunk(3)));
+        assertTrue(dataInfoRegionRWLock.tryLockWriteResource(dataInfo.withChunk(3)));
+    }
 }
@@ -0,0 +1,130 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.ChunkHashAlgorithm;
+import de.probst.ba.core.media.database.ChunkHashProof;
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileDataBaseJournalTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fileDataBaseJournal() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 5);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            for (int chunkIndex : new int[]{2, 3, 7}) {
+                dataBase.insertFromChannel(full.empty().withChunk(chunkIndex),
+                                           Channels.newChannel(new ByteArrayInputStream(
+                                                   data,
+                                                   (int) full.getTotalOffset(chunkIndex),
+                                                   (int) full.getChunkSize(chunkIndex))),
+                                           true);
+            }
+        }
+
+        // A torn record at the end is discarded
+        Path journal = directory.resolve("db.journal");
+        Files.write(journal, new byte[]{2, 0, 0, 1}, StandardOpenOption.APPEND);
+
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            DataInfo recovered = dataBase.get(full.getHash());
+            assertEquals(full.empty().withChunks(IntStream.of(2, 3, 7)), recovered);
+        }
+
+        // A record with a valid checksum, which cannot be decoded, is discarded as well
+        CRC32 crc32 = new CRC32();
+        crc32.update(1);
+        crc32.update(new byte[]{1, 2, 3});
+        ByteBuffer undecodable = ByteBuffer.allocate(12);
+        undecodable.put((byte) 1).putInt(3).put(new byte[]{1, 2, 3}).putInt((int) crc32.getValue());
+        Files.write(journal, undecodable.array(), StandardOpenOption.APPEND);
+
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            DataInfo recovered = dataBase.get(full.getHash());
+            assertEquals(full.empty().withChunks(IntStream.of(2, 3, 7)), recovered);
+
+            dataBase.insertFromChannel(full.empty().withChunk(4),
+                                       Channels.newChannel(new ByteArrayInputStream(data, 400, 100)),
+                                       true);
+        }
+
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            DataInfo recovered = dataBase.get(full.getHash());
+            assertEquals(full.empty().withChunks(IntStream.of(2, 3, 4, 7)), recovered);
+
+            ByteBuffer chunk = ByteBuffer.allocate(100);
+            dataBase.lookup(full.empty().withChunk(4)).get().read(chunk);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 400, 500), chunk.array()));
+        }
+    }
+
+    @Test
+    public void chunkHashProofs() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 3);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             ChunkHashAlgorithm.CRC32,
+                                             Channels.newChannel(new ByteArrayInputStream(data))).withMerkleHash();
+        DataInfo stripped = full.withoutChunkHashes();
+
+        // The leecher keeps the proof, so it can pass it on after a restart
+        Path directory = temporaryFolder.newFolder().toPath();
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            DataBaseWriteChannel writeChannel = dataBase.insert(stripped.empty().withChunk(3)).get();
+            assertTrue(writeChannel.addChunkHashProof(full.getChunkHashProof(3)));
+            writeChannel.write(ByteBuffer.wrap(data, 300, 100));
+            writeChannel.close();
+        }
+
+        try (DataBase dataBase = DataBases.fileDataBase(directory)) {
+            ChunkHashProof chunkHashProof = dataBase.getChunkHashProof(stripped.getHash(), 3).get();
+            assertTrue(stripped.verifyChunkHashProof(chunkHashProof));
+            assertEquals(full.getChunkHashes().get(3), chunkHashProof.getChunkHash());
+            assertFalse(dataBase.getChunkHashProof(stripped.getHash(), 4).isPresent());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseWriteChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.media.database.databases.file.FileDataBase;
+import de.probst.ba.core.media.database.databases.file.FileDataBaseDurability;
+import de.probst.ba.core.media.database.databases.file.FileDataBasePreallocation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileDataBaseTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void fileDataBaseDurability() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 11);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        Path journal = directory.resolve("db.journal");
+        try (FileDataBase dataBase = new FileDataBase(false, directory, FileDataBaseDurability.GROUP, 64)) {
+            // Small writes are coalesced by the write buffer
+            DataBaseWriteChannel writeChannel = dataBase.insert(full).get();
+            for (int offset = 0; offset < data.length; offset += 10) {
+                writeChannel.write(ByteBuffer.wrap(data, offset, 10));
+            }
+            writeChannel.close();
+
+            // Journaled with the next group commit
+            assertEquals(full, dataBase.get(full.getHash()));
+            assertEquals(0, Files.size(journal));
+            dataBase.commit();
+            assertTrue(Files.size(journal) > 0);
+        }
+
+        try (DataBase dataBase = DataBases.fileDataBase(false, directory, FileDataBaseDurability.CHUNK)) {
+            assertEquals(full, dataBase.get(full.getHash()));
+
+            byte[] copied = DataBaseTestUtil.readFully(dataBase, full);
+            assertTrue(Arrays.equals(data, copied));
+        }
+    }
+
+    @Test
+    public void fileDataBasePreallocation() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 13);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        for (FileDataBasePreallocation preallocation : FileDataBasePreallocation.values()) {
+            Path directory = temporaryFolder.newFolder().toPath();
+            try (DataBase dataBase = DataBases.fileDataBase(false,
+                                                            directory,
+                                                            FileDataBaseDurability.OS,
+                                                            preallocation)) {
+                // Only the first chunk is written
+                DataInfo first = full.empty().withChunk(0);
+                assertTrue(dataBase.insertFromChannel(first,
+                                                      Channels.newChannel(new ByteArrayInputStream(data, 0, 100)),
+                                                      true));
+                assertEquals(preallocation == FileDataBasePreallocation.NONE ? 100 : data.length,
+                             Files.size(directory.resolve(full.getHash())));
+
+                DataInfo last = full.empty().withChunk(9);
+                assertTrue(dataBase.insertFromChannel(last,
+                                                      Channels.newChannel(new ByteArrayInputStream(data, 900, 100)),
+                                                      true));
+                assertEquals(data.length, Files.size(directory.resolve(full.getHash())));
+
+                byte[] copied = DataBaseTestUtil.readFully(dataBase, first.union(last));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(data, 0, 100),
+                                         Arrays.copyOfRange(copied, 0, 100)));
+                assertTrue(Arrays.equals(Arrays.copyOfRange(data, 900, 1000),
+                                         Arrays.copyOfRange(copied, 100, 200)));
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.file.MappedFileDataBase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileDataBaseTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void mappedFileDataBase() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 11);
+        }
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        Path directory = temporaryFolder.newFolder().toPath();
+        // Small windows, so chunks span windows
+        try (DataBase dataBase = new MappedFileDataBase(false, directory, 64)) {
+            assertTrue(dataBase.insertFromChannel(full, Channels.newChannel(new ByteArrayInputStream(data)), true));
+        }
+
+        try (DataBase dataBase = new MappedFileDataBase(false, directory, 64)) {
+            assertEquals(full, dataBase.get(full.getHash()));
+
+            byte[] copied = DataBaseTestUtil.readFully(dataBase, full);
+            assertTrue(Arrays.equals(data, copied));
+
+            // Slices never span windows or chunks
+            ByteBuffer sliced = ByteBuffer.allocate(data.length);
+            DataBaseReadChannel readChannel = dataBase.lookup(full.empty().withChunk(2).withChunk(5)).get();
+            assertTrue(readChannel.supportsSlices());
+            Optional<ByteBuffer> slice;
+            while ((slice = readChannel.readSlice(1000)).isPresent()) {
+                assertTrue(slice.get().isReadOnly());
+                assertTrue(slice.get().remaining() <= 64);
+                sliced.put(slice.get());
+            }
+            readChannel.close();
+            assertEquals(200, sliced.position());
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 200, 300),
+                                     Arrays.copyOfRange(sliced.array(), 0, 100)));
+            assertTrue(Arrays.equals(Arrays.copyOfRange(data, 500, 600),
+                                     Arrays.copyOfRange(sliced.array(), 100, 200)));
+        }
+    }
+}
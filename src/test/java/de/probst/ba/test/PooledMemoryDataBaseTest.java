@@ -0,0 +1,71 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.memory.PooledMemoryDataBase;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PooledMemoryDataBaseTest {
+
+    @Test
+    public void pooledMemoryDataBase() throws IOException {
+        // Larger than 2 GB, but only two chunks are stored
+        DataInfo huge = DataInfo.generate(0,
+                                          3L * 1024 * 1024 * 1024,
+                                          Optional.empty(),
+                                          Optional.empty(),
+                                          "hugeHash",
+                                          3 * 1024,
+                                          String::valueOf);
+        long chunkSize = huge.getChunkSize(0);
+        byte[] data = new byte[(int) chunkSize * 2];
+        new Random(7).nextBytes(data);
+
+        List<ByteBuf> allocated = new ArrayList<>();
+        ByteBufAllocator allocator = new PooledByteBufAllocator(true) {
+            @Override
+            public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+                ByteBuf byteBuf = super.directBuffer(initialCapacity, maxCapacity);
+                allocated.add(byteBuf);
+                return byteBuf;
+            }
+        };
+
+        DataInfo stored = huge.empty().withChunk(2000).withChunk(3 * 1024 - 1);
+        try (DataBase dataBase = new PooledMemoryDataBase(false, allocator)) {
+            assertTrue(dataBase.insertFromChannel(stored, Channels.newChannel(new ByteArrayInputStream(data)), true));
+            assertEquals(2, allocated.size());
+            assertTrue(allocated.stream().allMatch(ByteBuf::isDirect));
+
+            byte[] copied = DataBaseTestUtil.readFully(dataBase, stored);
+            assertTrue(Arrays.equals(data, copied));
+
+            // Slices never span chunks
+            DataBaseReadChannel readChannel = dataBase.lookup(stored).get();
+            Optional<ByteBuffer> slice = readChannel.readSlice(data.length);
+            assertEquals(chunkSize, slice.get().remaining());
+            assertTrue(slice.get().isReadOnly());
+            readChannel.close();
+        }
+
+        // Closing the data base releases all chunks
+        assertTrue(allocated.stream().allMatch(byteBuf -> byteBuf.refCnt() == 0));
+    }
+}
@@ -0,0 +1,84 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataBaseReadChannel;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.media.database.databases.sharded.ShardStatistics;
+import de.probst.ba.core.media.database.databases.sharded.ShardedDataBase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedDataBaseTest {
+
+    @Test
+    public void shardedDataBase() throws IOException, NoSuchAlgorithmException {
+        List<DataBase> shards = Arrays.asList(DataBases.memoryDataBase(),
+                                              DataBases.memoryDataBase(),
+                                              DataBases.memoryDataBase());
+        ShardedDataBase dataBase = new ShardedDataBase(shards);
+        try {
+            List<DataInfo> inserted = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                byte[] data = new byte[100];
+                Arrays.fill(data, (byte) i);
+                DataInfo dataInfo = DataInfo.fromChannel(i,
+                                                         data.length,
+                                                         Optional.empty(),
+                                                         Optional.empty(),
+                                                         4,
+                                                         DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                                         Channels.newChannel(new ByteArrayInputStream(data)));
+                assertTrue(dataBase.insertFromChannel(dataInfo,
+                                                      Channels.newChannel(new ByteArrayInputStream(data)),
+                                                      true));
+                inserted.add(dataInfo);
+            }
+
+            // Every hash is stored in exactly the shard it is placed on
+            long usedShards = IntStream.range(0, shards.size())
+                                       .filter(i -> !shards.get(i).getDataInfo().isEmpty())
+                                       .count();
+            assertTrue(usedShards > 1);
+            for (DataInfo dataInfo : inserted) {
+                int shardIndex = dataBase.getShardIndex(dataInfo.getHash());
+                for (int i = 0; i < shards.size(); i++) {
+                    assertEquals(i == shardIndex, shards.get(i).get(dataInfo.getHash()) != null);
+                }
+                assertEquals(dataInfo, dataBase.get(dataInfo.getHash()));
+            }
+            assertEquals(inserted.size(), dataBase.getDataInfo().size());
+
+            long writtenBytes = 0;
+            for (int i = 0; i < shards.size(); i++) {
+                ShardStatistics shardStatistics = dataBase.getShardStatistics(i);
+                assertEquals(shards.get(i).getDataInfo().size(), shardStatistics.getInsertCount());
+                writtenBytes += shardStatistics.getWrittenBytes();
+            }
+            assertEquals(16 * 100, writtenBytes);
+
+            // Reads are counted by the shard of the hash
+            DataInfo last = inserted.get(inserted.size() - 1);
+            ShardStatistics shardStatistics = dataBase.getShardStatistics(dataBase.getShardIndex(last.getHash()));
+            DataBaseReadChannel readChannel = dataBase.lookup(last).get();
+            assertTrue(readChannel.getDataBase() == dataBase);
+            DataBaseTestUtil.readFully(readChannel);
+            assertEquals(1, shardStatistics.getLookupCount());
+            assertEquals(100, shardStatistics.getReadBytes());
+        } finally {
+            dataBase.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.probst.ba.test;
+
+import de.probst.ba.core.media.database.DataBase;
+import de.probst.ba.core.media.database.DataInfo;
+import de.probst.ba.core.media.database.databases.DataBases;
+import de.probst.ba.core.media.database.databases.memory.SharedMemoryStore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharedMemoryDataBaseTest {
+
+    @Test
+    public void sharedMemoryDataBase() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[1000];
+        new Random(7).nextBytes(data);
+
+        DataInfo full = DataInfo.fromChannel(0,
+                                             data.length,
+                                             Optional.empty(),
+                                             Optional.empty(),
+                                             10,
+                                             DataInfo.DEFAULT_CHUNK_HASH_ALGORITHM,
+                                             Channels.newChannel(new ByteArrayInputStream(data)));
+
+        SharedMemoryStore sharedMemoryStore = new SharedMemoryStore();
+        List<DataBase> dataBases = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            dataBases.add(DataBases.sharedMemoryDataBase(sharedMemoryStore));
+        }
+
+        // Every data base completes a different part
+        for (int i = 0; i < dataBases.size(); i++) {
+            DataInfo part = full.empty().withChunks(IntStream.rangeClosed(0, i % 10));
+            ByteArrayInputStream partData = new ByteArrayInputStream(data, 0, (int) part.getCompletedSize());
+            assertTrue(dataBases.get(i).insertFromChannel(part, Channels.newChannel(partData), true));
+            assertEquals(part, dataBases.get(i).get(full.getHash()));
+        }
+        assertEquals(10, sharedMemoryStore.getSharedChunkCount());
+        assertEquals(550 - 10, sharedMemoryStore.getDeduplicatedChunkCount());
+
+        // The shared chunks are read by every data base
+        DataBase last = dataBases.get(dataBases.size() - 1);
+        assertEquals(full, last.get(full.getHash()));
+        byte[] copied = DataBaseTestUtil.readFully(last, full);
+        assertTrue(Arrays.equals(data, copied));
+
+        // The shared chunks are released with the last data base
+        for (DataBase dataBase : dataBases) {
+            dataBase.close();
+        }
+        assertEquals(0, sharedMemoryStore.getSharedChunkCount());
+    }
+
+    @Test
+    public void differentContentStaysPrivate() throws IOException {
+        // Unverifiable data info, so different content is accepted for the same hash
+        DataInfo dataInfo = DataInfo.generate(0, 100, Optional.empty(), Optional.empty(), "123Hash123", 10, String::valueOf);
+        byte[] firstData = new byte[(int) dataInfo.getSize()];
+        byte[] secondData = new byte[(int) dataInfo.getSize()];
+        new Random(7).nextBytes(firstData);
+        new Random(8).nextBytes(secondData);
+
+        SharedMemoryStore sharedMemoryStore = new SharedMemoryStore();
+        DataBase first = DataBases.sharedMemoryDataBase(sharedMemoryStore);
+        DataBase second = DataBases.sharedMemoryDataBase(sharedMemoryStore);
+        assertTrue(first.insertFromChannel(dataInfo, Channels.newChannel(new ByteArrayInputStream(firstData)), true));
+        assertTrue(second.insertFromChannel(dataInfo, Channels.newChannel(new ByteArrayInputStream(secondData)), true));
+        assertEquals(10, sharedMemoryStore.getSharedChunkCount());
+        assertEquals(0, sharedMemoryStore.getDeduplicatedChunkCount());
+
+        // Every data base still reads its own content
+        List<DataBase> dataBases = Arrays.asList(first, second);
+        List<byte[]> datas = Arrays.asList(firstData, secondData);
+        for (int i = 0; i < dataBases.size(); i++) {
+            byte[] copied = DataBaseTestUtil.readFully(dataBases.get(i), dataInfo);
+            assertTrue(Arrays.equals(datas.get(i), copied));
+        }
+
+        first.close();
+        second.close();
+        assertEquals(0, sharedMemoryStore.getSharedChunkCount());
+    }
+}